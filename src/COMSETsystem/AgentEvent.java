@@ -1,8 +1,5 @@
 package COMSETsystem;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 /**
  * @author TijanaKlimovic
  * <p>
@@ -69,11 +66,15 @@ public class AgentEvent extends Event {
 		this.lastAppearLocation = loc;
 	}
 
+	// The move planned by planNavigation() and completed by completeNavigation().
+	private LocationOnRoad pendingLocation;
+	private State pendingState;
+	private LocationOnRoad pendingLastAppearLocation;
+	private long pendingTravelTime;
+
 	@Override
 	Event trigger() throws Exception {
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** AgentEvent id = " + id+
-				" triggered at time " + getTime(), this);
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Loc = " + loc, this);
+		logTrigger();
 
 		switch (state) {
 			case INITIAL:
@@ -131,24 +132,33 @@ public class AgentEvent extends Event {
 		simulator.addEvent(this);
 	}
 
-	void navigate() throws Exception {
-		assert loc.atEndIntersection() : "Agent not at an intersection.";
+	void logTrigger() {
+		SimulationTrace.logTrigger(SimulationTrace.AGENT_EVENTS, "AgentEvent", this, loc);
+	}
 
-		if (isArrivingPickupLoc()) {
-			long travelTime = fleetManager.trafficPattern.roadTravelTimeFromStartIntersection(getTime(), assignedResource.pickupLoc);
-			long nextEventTime = getTime() + travelTime;
-			update(nextEventTime, assignedResource.pickupLoc, State.PICKING_UP, getTime(), loc);
-			return;
-		}
+	/**
+	 * @return whether triggering the event moves the agent on from the intersection it reached
+	 */
+	boolean isNavigating() {
+		return state == State.INTERSECTION_REACHED;
+	}
 
-		if (isArrivingDropOffLoc()) {
-			long travelTime = fleetManager.trafficPattern.roadTravelTimeFromStartIntersection(getTime(), assignedResource.dropoffLoc);
-			long nextEventTime = getTime() + travelTime;
-			update(nextEventTime, assignedResource.dropoffLoc, State.DROPPING_OFF, getTime(), loc);
+	void navigate() throws Exception {
+		planNavigation();
+		computeNavigationTravelTime();
+		completeNavigation();
+	}
+
+	/**
+	 * The first step of navigate(): decide where the agent goes from the intersection it reached, asking the
+	 * fleet manager unless the agent arrives at the road of its pickup or drop off location. Changes nothing
+	 * but the state of the fleet manager.
+	 */
+	void planNavigation() throws Exception {
+		if (planArrivalAtResourceRoad()) {
 			return;
 		}
 
-
 		Intersection nextIntersection;
 		if (isPickup && assignedResource != null) {
 			nextIntersection = fleetManager.onReachIntersectionWithResource(id, getTime(), simulator.agentCopy(loc),
@@ -156,7 +166,44 @@ public class AgentEvent extends Event {
 		} else {
 			nextIntersection = fleetManager.onReachIntersection(id, getTime(), simulator.agentCopy(loc));
 		}
+		planMove(nextIntersection);
+	}
+
+	/**
+	 * Plan the move onto the road of the pickup or drop off location if the agent reached the start of it.
+	 * @return whether the move is planned; otherwise the fleet manager decides where to go
+	 */
+	boolean planArrivalAtResourceRoad() {
+		assert loc.atEndIntersection() : "Agent not at an intersection.";
+
+		pendingLastAppearLocation = loc;
+		if (isArrivingPickupLoc()) {
+			pendingLocation = assignedResource.pickupLoc;
+			pendingState = State.PICKING_UP;
+			return true;
+		}
+
+		if (isArrivingDropOffLoc()) {
+			pendingLocation = assignedResource.dropoffLoc;
+			pendingState = State.DROPPING_OFF;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the agent at its intersection as passed to BatchFleetManager.onReachIntersections()
+	 */
+	IntersectionArrival intersectionArrival() {
+		return new IntersectionArrival(id, simulator.agentCopy(loc),
+				isPickup && assignedResource != null ? assignedResource.copyResource() : null);
+	}
 
+	/**
+	 * Plan the move to an intersection chosen by the fleet manager.
+	 * @param nextIntersection the intersection returned by the fleet manager
+	 */
+	void planMove(Intersection nextIntersection) throws Exception {
 		if (nextIntersection == null) {
 			throw new Exception("FleetManager did not return a next location");
 		}
@@ -165,14 +212,46 @@ public class AgentEvent extends Event {
 			throw new Exception("move not made to an adjacent location");
 		}
 
-		// set location and time of the next trigger
 		Road nextRoad = loc.road.to.roadTo(nextIntersection);
-		LocationOnRoad nextLocation = LocationOnRoad.createFromRoadEnd(nextRoad);
-		long travelTime = fleetManager.trafficPattern.roadTravelTimeFromStartIntersection(getTime(), nextLocation);
-		update(getTime() + travelTime, nextLocation, State.INTERSECTION_REACHED, getTime(), LocationOnRoad.createFromRoadStart(nextRoad));
+		pendingLocation = LocationOnRoad.createFromRoadEnd(nextRoad);
+		pendingState = State.INTERSECTION_REACHED;
+		pendingLastAppearLocation = LocationOnRoad.createFromRoadStart(nextRoad);
+	}
+
+	/**
+	 * The second step of navigate(): compute the travel time of the planned move. Only reads the map and the
+	 * traffic pattern, so that it may run concurrently with the same step of other agents.
+	 */
+	void computeNavigationTravelTime() {
+		pendingTravelTime = fleetManager.trafficPattern.roadTravelTimeFromStartIntersection(getTime(), pendingLocation);
+	}
+
+	/**
+	 * The last step of navigate(): set location and time of the next trigger.
+	 */
+	void completeNavigation() {
+		if (simulator.trace != null) {
+			simulator.trace.agentMoved(getTime(), id, pendingLocation.road.id, getTime() + pendingTravelTime);
+		}
+		update(getTime() + pendingTravelTime, pendingLocation, pendingState, getTime(), pendingLastAppearLocation);
+
+		if (pendingState == State.INTERSECTION_REACHED) {
+			SimulationTrace.log(SimulationTrace.AGENT_EVENTS, this, "completeNavigation", "Move to ", loc.road.to);
+			SimulationTrace.log(SimulationTrace.AGENT_EVENTS, this, "completeNavigation", "Next trigger time = ",
+					getTime());
+		}
+		pendingLocation = null;
+		pendingLastAppearLocation = null;
+	}
 
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Move to " + nextRoad.to, this);
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next trigger time = " + getTime(), this);
+	/**
+	 * Whether the move planned by planNavigation() is certain to take at least one unit of time, before its travel
+	 * time is computed. The travel time is at least the static travel time divided by the largest speed factor,
+	 * and it is rounded to a positive number if the quotient exceeds one half, which it does if the rounded
+	 * static travel time exceeds the largest speed factor.
+	 */
+	boolean plannedMoveTakesTime() {
+		return pendingLocation.getStaticTravelTimeOnRoad() > fleetManager.trafficPattern.getMaxSpeedFactor();
 	}
 
 	private void navigateToNearestIntersection() {
@@ -195,7 +274,7 @@ public class AgentEvent extends Event {
 	 * The handler of a pick up event.
 	 */
 	private void pickup() throws UnsupportedOperationException {
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Pickup at " + loc, this);
+		SimulationTrace.log(SimulationTrace.AGENT_EVENTS, this, "pickup", "Pickup at ", loc);
 
 		isPickup = true;
 		long searchTime = getTime() - startSearchTime;
@@ -206,12 +285,15 @@ public class AgentEvent extends Event {
 				staticApproachTime);
 
 		assignedResource.pickup(this, getTime());
+		if (simulator.trace != null) {
+			simulator.trace.resourcePickedUp(getTime(), id, assignedResource.id);
+		}
 
 		AgentAction action = fleetManager.onResourceAvailabilityChange(assignedResource.copyResource(), FleetManager.ResourceState.PICKED_UP, simulator.agentCopy(loc), getTime());
 
 		if (isValidAssignmentAction(action)) {
-			ResourceEvent resourceEvent = simulator.resMap.get(action.resId);
-			AgentEvent agentEvent = simulator.agentMap.get(action.agentId);
+			ResourceEvent resourceEvent = simulator.registry.resource(action.resId);
+			AgentEvent agentEvent = simulator.registry.agent(action.agentId);
 			agentEvent.assignTo(resourceEvent, getTime());
 			resourceEvent.assignTo(agentEvent);
 		}
@@ -231,10 +313,13 @@ public class AgentEvent extends Event {
 	private void dropOff() throws UnsupportedOperationException {
 		startSearchTime = getTime();
 
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Dropoff at " + loc, this);
+		SimulationTrace.log(SimulationTrace.AGENT_EVENTS, this, "dropOff", "Dropoff at ", loc);
 
 		isPickup = false;
 		assignedResource.dropOff(getTime());
+		if (simulator.trace != null) {
+			simulator.trace.resourceDroppedOff(getTime(), id, assignedResource.id);
+		}
 
 		AgentAction action = fleetManager.onResourceAvailabilityChange(assignedResource.copyResource(), FleetManager.ResourceState.DROPPED_OFF, simulator.agentCopy(loc), getTime());
 
@@ -246,7 +331,7 @@ public class AgentEvent extends Event {
 		}
 
 
-		ResourceEvent resourceEvent = simulator.resMap.get(action.resId);
+		ResourceEvent resourceEvent = simulator.registry.resource(action.resId);
 		if (action.agentId == id) {
 			assignResource(resourceEvent);
 			assignedResource.assignTo(this);
@@ -262,7 +347,7 @@ public class AgentEvent extends Event {
 				moveToEndIntersection();
 			}
 		} else {
-			AgentEvent agentEvent = simulator.agentMap.get(action.agentId);
+			AgentEvent agentEvent = simulator.registry.agent(action.agentId);
 			agentEvent.assignTo(resourceEvent, getTime());
 			resourceEvent.assignTo(agentEvent);
 
@@ -293,8 +378,8 @@ public class AgentEvent extends Event {
         long agentId = agentAction.agentId;
         long resId = agentAction.resId;
 
-        AgentEvent agentEvent = simulator.agentMap.get(agentId);
-		ResourceEvent resEvent = simulator.resMap.get(resId);
+        AgentEvent agentEvent = simulator.registry.agent(agentId);
+		ResourceEvent resEvent = simulator.registry.resource(resId);
 
 		return agentEvent != null && resEvent != null && !agentEvent.hasResPickup() && agentAction.getType() == AgentAction.Type.ASSIGN;
 	}
@@ -310,6 +395,9 @@ public class AgentEvent extends Event {
 		assert assignedResource == null;
 		assignedResource = resourceEvent;
 		simulator.markAgentServing(this);
+		if (simulator.trace != null) {
+			simulator.trace.resourceAssigned(simulator.simulationTime, id, resourceEvent.id);
+		}
 	}
 
 	/**
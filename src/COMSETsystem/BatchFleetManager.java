@@ -0,0 +1,43 @@
+package COMSETsystem;
+
+import java.util.List;
+
+/**
+ * An optional interface for fleet managers that decide for many agents or resources at once. If the FleetManager
+ * implements it, the simulator groups the agents that reach intersections at the same time and the resources that
+ * become available at the same time, and makes one call per group instead of one call of onReachIntersection,
+ * onReachIntersectionWithResource or onResourceAvailabilityChange per agent or resource. Work such as finding
+ * the nearest agents or updating regions can then be shared by the whole group.
+ *
+ * A group consists of events that directly follow each other in the event queue. Its members are passed in
+ * queue order and the returned decisions are applied in that order after the call. Within a group, the decision
+ * for one member is thus made before the decisions for the other members take effect in the simulator. Agents
+ * that reach the road of the resource they are going to pick up or drop off are not passed, as the simulator
+ * moves them on its own.
+ *
+ * A group of agents does not end at an agent whose move may take no time. Such an agent reaches its next
+ * intersection at the time of the group and is passed in another group at that time, after the other agents of
+ * its group have moved. Triggered one at a time, it could have moved on before the agents after it in the queue.
+ * Hence a simulation can differ from one in which a FleetManager makes the same decisions one agent at a time.
+ */
+public interface BatchFleetManager {
+
+    /**
+     * Called instead of onReachIntersection and onReachIntersectionWithResource.
+     *
+     * @param time the time at which the agents reach the intersections
+     * @param arrivals the agents in queue order
+     * @return for every agent in the same order, the intersection adjacent to the reached one to go to next
+     */
+    List<Intersection> onReachIntersections(long time, List<IntersectionArrival> arrivals);
+
+    /**
+     * Called instead of onResourceAvailabilityChange with ResourceState.AVAILABLE. Other changes of resources
+     * are still passed to onResourceAvailabilityChange one at a time.
+     *
+     * @param time the time at which the resources become available
+     * @param resources the resources in queue order; an agent would find a resource at its pickupLoc
+     * @return for every resource in the same order, the action to take; an element may be null to do nothing
+     */
+    List<AgentAction> onResourcesAvailable(long time, List<Resource> resources);
+}
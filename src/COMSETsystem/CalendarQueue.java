@@ -0,0 +1,261 @@
+package COMSETsystem;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A calendar queue (R. Brown, 1988) of events. Time is divided into buckets of equal width which are arranged
+ * in a circle like the days of a calendar year: an event at time t is in bucket (t / width) mod buckets. The
+ * earliest event is found by walking the buckets from the bucket of the last dequeued event and taking the
+ * first event that falls into the current "year". If the events are spread over the buckets so that a bucket
+ * holds a few events, inserting and polling take O(1) amortized time.
+ *
+ * The number of buckets is doubled or halved as the number of events grows or shrinks, and the bucket width
+ * is then re-estimated from the separation of the earliest events. The width starts at one second of
+ * simulated time, i.e., Configuration.timeResolution.
+ *
+ * Every bucket is an EventQueue, so events with the same time, which are common when many agents are
+ * introduced or reach intersections at once, are ordered exactly as in EventQueue, and removing an event
+ * takes O(log k) for a bucket of k events.
+ */
+public class CalendarQueue implements EventScheduler {
+
+	private static final int MIN_BUCKETS = 16;
+
+	// The number of earliest events whose separation determines the bucket width.
+	private static final int WIDTH_SAMPLE_SIZE = 25;
+
+	// The initial capacity of a bucket, which holds a few events on average.
+	private static final int BUCKET_CAPACITY = 4;
+
+	// The buckets; a bucket is created when the first event is inserted into it.
+	private EventQueue[] buckets;
+
+	// The width of a bucket in simulation time units.
+	private long width;
+
+	private int size;
+
+	// The bucket in which the search for the earliest event starts, and the begin time of the window of
+	// that bucket in the current year. No event is earlier than currentStart.
+	private int current;
+	private long currentStart;
+
+	// incremented by every change, so that iterators can detect concurrent modifications
+	private int modCount;
+
+	public CalendarQueue() {
+		this(Configuration.timeResolution);
+	}
+
+	/**
+	 * @param width the initial width of a bucket in simulation time units
+	 */
+	public CalendarQueue(long width) {
+		if (width <= 0) {
+			throw new IllegalArgumentException("The bucket width must be positive");
+		}
+		this.width = width;
+		buckets = new EventQueue[MIN_BUCKETS];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Event event) {
+		EventQueue bucket = buckets[bucketOf(event.getTime())];
+		return bucket != null && bucket.contains(event);
+	}
+
+	@Override
+	public void add(Event event) {
+		long time = event.getTime();
+		int index = bucketOf(time);
+		if (buckets[index] == null) {
+			buckets[index] = new EventQueue(BUCKET_CAPACITY);
+		}
+		buckets[index].add(event);
+		modCount++;
+		size++;
+		if (size == 1 || time < currentStart) {
+			// the event is the earliest one; start the next search at its bucket
+			current = index;
+			currentStart = Math.floorDiv(time, width) * width;
+		}
+		if (size > 2 * buckets.length) {
+			resize(2 * buckets.length);
+		}
+	}
+
+	@Override
+	public Event peek() {
+		if (size == 0) {
+			return null;
+		}
+		long start = currentStart;
+		int index = current;
+		for (int i = 0; i < buckets.length; i++) {
+			EventQueue bucket = buckets[index];
+			if (bucket != null) {
+				Event first = bucket.peek();
+				if (first != null && first.getTime() < start + width) {
+					current = index;
+					currentStart = start;
+					return first;
+				}
+			}
+			start += width;
+			index = index + 1 == buckets.length ? 0 : index + 1;
+		}
+
+		// no event within a year; jump to the earliest event directly
+		Event earliest = null;
+		for (EventQueue bucket : buckets) {
+			if (bucket != null && !bucket.isEmpty() && (earliest == null || bucket.peek().compareTo(earliest) < 0)) {
+				earliest = bucket.peek();
+			}
+		}
+		assert earliest != null;
+		current = bucketOf(earliest.getTime());
+		currentStart = Math.floorDiv(earliest.getTime(), width) * width;
+		return earliest;
+	}
+
+	@Override
+	public Event poll() {
+		Event first = peek();
+		if (first != null) {
+			buckets[current].poll();
+			removed();
+		}
+		return first;
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		EventQueue bucket = buckets[bucketOf(event.getTime())];
+		if (bucket == null || !bucket.remove(event)) {
+			return false;
+		}
+		removed();
+		return true;
+	}
+
+	private void removed() {
+		modCount++;
+		size--;
+		if (buckets.length > MIN_BUCKETS && size < buckets.length / 2) {
+			resize(buckets.length / 2);
+		}
+	}
+
+	private int bucketOf(long time) {
+		return (int) Math.floorMod(Math.floorDiv(time, width), (long) buckets.length);
+	}
+
+	/**
+	 * Re-distribute all events over a new number of buckets with a newly estimated width.
+	 */
+	private void resize(int bucketCount) {
+		Event[] events = new Event[size];
+
+		// the earliest events in order, to estimate the width from
+		int samples = Math.min(size, WIDTH_SAMPLE_SIZE);
+		int count = 0;
+		while (count < samples) {
+			Event first = peek();
+			buckets[current].poll();
+			events[count++] = first;
+		}
+		for (EventQueue bucket : buckets) {
+			if (bucket != null) {
+				count = bucket.drainTo(events, count);
+			}
+		}
+		assert count == size;
+
+		width = estimateWidth(events, samples, width);
+		buckets = new EventQueue[bucketCount];
+		modCount++;
+		size = 0;
+		for (Event event : events) {
+			add(event);
+		}
+	}
+
+	/**
+	 * Estimate the bucket width as three times the average separation of distinct times of the earliest events,
+	 * ignoring separations more than twice the average, as proposed by Brown.
+	 * @param events the earliest events in order, followed by other events
+	 * @param samples the number of earliest events
+	 * @param fallback the width to use if there are less than two distinct times
+	 * @return the width
+	 */
+	private static long estimateWidth(Event[] events, int samples, long fallback) {
+		long total = 0;
+		int gaps = 0;
+		for (int i = 1; i < samples; i++) {
+			long gap = events[i].getTime() - events[i - 1].getTime();
+			if (gap > 0) {
+				total += gap;
+				gaps++;
+			}
+		}
+		if (gaps == 0) {
+			return fallback;
+		}
+		double average = (double) total / gaps;
+		total = 0;
+		gaps = 0;
+		for (int i = 1; i < samples; i++) {
+			long gap = events[i].getTime() - events[i - 1].getTime();
+			if (gap > 0 && gap <= 2 * average) {
+				total += gap;
+				gaps++;
+			}
+		}
+		return Math.max(1, 3 * total / gaps);
+	}
+
+	/**
+	 * @return an iterator over the events of the queue in no particular order
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return new Iterator<Event>() {
+			private int bucket = -1;
+			private Iterator<Event> events = null;
+			private final int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				while (events == null || !events.hasNext()) {
+					do {
+						bucket++;
+					} while (bucket < buckets.length && buckets[bucket] == null);
+					if (bucket >= buckets.length) {
+						return false;
+					}
+					events = buckets[bucket].iterator();
+				}
+				return true;
+			}
+
+			@Override
+			public Event next() {
+				if (modCount != expectedModCount) throw new ConcurrentModificationException();
+				if (!hasNext()) throw new NoSuchElementException();
+				return events.next();
+			}
+		};
+	}
+}
@@ -4,24 +4,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.collect.ImmutableList;
 import net.iakovlev.timeshape.TimeZoneEngine;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import DataParsing.GeoProjector;
-import DataParsing.KdTree;
+import DataParsing.SpatialIndex;
 
-import java.util.PriorityQueue;
-import java.awt.geom.Point2D;
 import java.time.ZoneId;
 
 
@@ -41,31 +46,37 @@ public class CityMap {
 	// A projector to convert between lat,lon coordinates and xy coordinates.
 	private GeoProjector projector;
 
-	// kdTree for map matching
-	private KdTree kdTree;
+	// index of the links for map matching
+	private SpatialIndex linkIndex;
 
-	// Shortest travel-time path table.
-	private ImmutableList<ImmutableList<PathTableEntry>> immutablePathTable;
+	// Answers shortest travel-time queries; a pre-computed path table or a contraction hierarchy.
+	private RoutingEngine routingEngine;
 	
-	// A map from an intersection's path table index to the intersection itself.
-	private HashMap<Integer, Intersection> intersectionsByPathTableIndex;
+	// All intersections indexed by their path table index.
+	private Intersection[] intersectionsByPathTableIndex;
+
+	// Whether the collections of the map have been made unmodifiable; see freeze().
+	private boolean frozen;
 
 	/*
 	 * Constructor of CityMap
 	 */
 	public CityMap(Map<Long, Intersection> intersections, List<Road> roads, 
-			GeoProjector projector, KdTree kdTree) {
+			GeoProjector projector, SpatialIndex linkIndex) {
 		this.intersections = intersections;
 		this.projector = projector;
-		this.kdTree = kdTree;
+		this.linkIndex = linkIndex;
 		this.roads = roads;
 
-		// setup pathTableIndex for every intersection
-		intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		// setup pathTableIndex for every intersection in the order of intersection ids, so that
+		// ties in the shortest path search can be broken on the index
+		List<Intersection> intersectionsById = new ArrayList<>(intersections.values());
+		Collections.sort(intersectionsById);
+		intersectionsByPathTableIndex = new Intersection[intersectionsById.size()];
 		int index = 0;
-		for (Intersection intersection : intersections.values()) {
-			intersection.pathTableIndex = index++;
-			intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+		for (Intersection intersection : intersectionsById) {
+			intersection.setPathTableIndex(index++);
+			intersectionsByPathTableIndex[intersection.getPathTableIndex()] = intersection;
 		}
 
 	}
@@ -89,7 +100,7 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public double travelTimeBetween (Intersection source, Intersection destination) {
-		return immutablePathTable.get(source.pathTableIndex).get(destination.pathTableIndex).travelTime;
+		return routingEngine.travelTime(source.getPathTableIndex(), destination.getPathTableIndex());
 	}
 
 
@@ -104,21 +115,60 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public long travelTimeBetween (LocationOnRoad source, LocationOnRoad destination) {
+		return Math.round(staticTravelTimeBetween(source, destination));
+	}
+
+	/**
+	 * Gets the time it takes to move from one intersection to another intersection when departing at a given
+	 * time, integrating the speed factors of a profile along the shortest path. The shortest path is the same
+	 * as at the speed limits since the speed factors apply to all roads alike.
+	 *
+	 * @param source The intersection to depart from
+	 * @param destination The intersection to arrive at
+	 * @param departureTime The departure time
+	 * @param profile The speed factors over time, e.g., a prediction of the traffic pattern
+	 * @return the time it takes to go from source to destination
+	 */
+	public double travelTimeBetween (Intersection source, Intersection destination, double departureTime,
+			SpeedProfile profile) {
+		double staticTravelTime = travelTimeBetween(source, destination);
+		if (staticTravelTime == Double.MAX_VALUE) {
+			return Double.MAX_VALUE;
+		}
+		return profile.travelTime(departureTime, staticTravelTime);
+	}
+
+	/**
+	 * Gets the time it takes to move from a location on a first road to a location on a second road when
+	 * departing at a given time, integrating the speed factors of a profile along the shortest path.
+	 *
+	 * @param source The location to depart from
+	 * @param destination The location to arrive at
+	 * @param departureTime The departure time
+	 * @param profile The speed factors over time, e.g., a prediction of the traffic pattern
+	 * @return the time it takes to go from source to destination
+	 */
+	public long travelTimeBetween (LocationOnRoad source, LocationOnRoad destination, long departureTime,
+			SpeedProfile profile) {
+		return Math.round(profile.travelTime(departureTime, staticTravelTimeBetween(source, destination)));
+	}
+
+	private double staticTravelTimeBetween (LocationOnRoad source, LocationOnRoad destination) {
 		double travelTime = -1;
 
 		if (source.road == destination.road && source.getDisplacementOnRoad(destination) >= 0) {
 			// If the two locations are on the same road and source is closer to the start intersection than destination, 
 			// then the travel time is the difference of travelTimeFromStartIntersection between source and destination.
-			travelTime = travelTime = source.getDisplacementOnRoad(destination) / source.road.speed;
+			travelTime = travelTime = source.getDisplacementOnRoad(destination) / source.road.getSpeed();
 		} else {
-			LocationOnRoad endIntersectionOfSource = new LocationOnRoad(source.road, source.road.length);
-			double travelTimeToEndIntersectionOfSource = source.getDisplacementOnRoad(endIntersectionOfSource) / source.road.speed;
+			LocationOnRoad endIntersectionOfSource = new LocationOnRoad(source.road, source.road.getLength());
+			double travelTimeToEndIntersectionOfSource = source.getDisplacementOnRoad(endIntersectionOfSource) / source.road.getSpeed();
 			LocationOnRoad startIntersectionOfDestination = new LocationOnRoad(destination.road, 0);
-			double travelTimeFromStartIntersectionOfDestination = startIntersectionOfDestination.getDisplacementOnRoad(destination) / destination.road.speed;
+			double travelTimeFromStartIntersectionOfDestination = startIntersectionOfDestination.getDisplacementOnRoad(destination) / destination.road.getSpeed();
 			double travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination = travelTimeBetween(source.road.to, destination.road.from);
 			travelTime = travelTimeToEndIntersectionOfSource + travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination + travelTimeFromStartIntersectionOfDestination;
 		}
-		return Math.round(travelTime);
+		return travelTime;
 	}
 	
 	/**
@@ -138,8 +188,35 @@ public class CityMap {
 	 */
 	public Link getNearestLink(double longitude, double latitude){
 		double[] xy = projector.fromLatLon(latitude, longitude);
-		Point2D p = new Point2D.Double(xy[0], xy[1]);
-		return kdTree.nearest(p);    	
+		return linkIndex.nearest(xy[0], xy[1]);
+	}
+
+	/**
+	 * Finds the k nearest links of a point defined by the
+	 * { @code longitude, latitude }, e.g., the candidates of a map matcher.
+	 *
+	 * @param longitude The longitude of the point
+	 * @param latitude The latitude of the point
+	 * @param k The number of links to find
+	 * @return The k closest links to the given point, closest first
+	 */
+	public List<Link> getNearestLinks(double longitude, double latitude, int k) {
+		double[] xy = projector.fromLatLon(latitude, longitude);
+		return linkIndex.kNearest(xy[0], xy[1], k);
+	}
+
+	/**
+	 * Finds the links within a distance of a point defined by the
+	 * { @code longitude, latitude }.
+	 *
+	 * @param longitude The longitude of the point
+	 * @param latitude The latitude of the point
+	 * @param radius The distance in meters
+	 * @return The links at most radius away from the given point, closest first
+	 */
+	public List<Link> getLinksWithin(double longitude, double latitude, double radius) {
+		double[] xy = projector.fromLatLon(latitude, longitude);
+		return linkIndex.withinRadius(xy[0], xy[1], radius);
 	}
 
 	/**
@@ -147,74 +224,215 @@ public class CityMap {
 	 * from each intersection using Dijkstra.
 	 */
 	public void calcTravelTimes() {
-		ArrayList<ArrayList<PathTableEntry>> pathTable;
-
-		// initialize path table
-		pathTable = new ArrayList<ArrayList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aList = new ArrayList<PathTableEntry>();
-			for (int j = 0; j < intersections.size(); j++) {
-				aList.add(null);
-			}
-			pathTable.add(aList);
-		}
+		calcTravelTimes(1);
+	}
+
+	/**
+	 * Compute all-pair shortest travel times using a number of worker threads. The one-to-all shortest travel
+	 * times from one intersection and the successors of all intersections toward it are independent of those
+	 * of the other intersections, so the intersections are handed out to the workers one at a time. Each worker
+	 * keeps its own Dijkstra scratch space. The resulting table is identical to the one computed by a single
+	 * thread.
+	 *
+	 * @param threads the number of worker threads; all available processors are used if not positive
+	 */
+	public void calcTravelTimes(int threads) {
+		calcTravelTimes(threads, new HeapPathTable(intersections.size()));
+	}
 
-		// creates a queue entry for each intersection
-		HashMap<Intersection, DijkstraQueueEntry> queueEntry = new HashMap<>();
-		for (Intersection i : intersections.values()) {
-			queueEntry.put(i, new DijkstraQueueEntry(i));
+	/**
+	 * Compute all-pair shortest travel times into a given table.
+	 *
+	 * @param threads the number of worker threads; all available processors are used if not positive
+	 * @param table the table to fill
+	 */
+	private void calcTravelTimes(int threads, PathTable table) {
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
 		}
+		routingEngine = table;
+
+		Intersection[] sources = intersectionsByPathTableIndex();
+		RoadGraph graph = new RoadGraph(sources);
+		RoadGraph reversedGraph = graph.reversed();
 
-		for (Intersection source : intersections.values()) {
-			// 'reset' every queue entry
-			for (DijkstraQueueEntry entry : queueEntry.values()) {
-				entry.cost = Double.MAX_VALUE;
-				entry.inQueue = true;
+		if (threads == 1) {
+			DijkstraWorker worker = new DijkstraWorker(graph, reversedGraph, table);
+			for (int source = 0; source < sources.length; source++) {
+				worker.compute(source);
 			}
+			return;
+		}
 
-			// source is set at distance 0
-			DijkstraQueueEntry sourceEntry = queueEntry.get(source);
-			sourceEntry.cost = 0;
-			pathTable.get(source.pathTableIndex).set(source.pathTableIndex, new PathTableEntry(0L, source.pathTableIndex));
-
-			PriorityQueue<DijkstraQueueEntry> queue = new PriorityQueue<>(queueEntry.values());
-
-			while (!queue.isEmpty()) {
-				DijkstraQueueEntry entry = queue.poll();
-				entry.inQueue = false;
-
-				for (Road r : entry.intersection.getRoadsFrom()) {
-					DijkstraQueueEntry v = queueEntry.get(r.to);
-					if (!v.inQueue) continue;
-					double ncost = entry.cost + r.travelTime;
-					if (v.cost > ncost) {
-						queue.remove(v);
-						v.cost = ncost;
-						pathTable.get(source.pathTableIndex).set(v.intersection.pathTableIndex, new PathTableEntry(v.cost, entry.intersection.pathTableIndex));
-						queue.add(v);
+		AtomicInteger nextSource = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					DijkstraWorker worker = new DijkstraWorker(graph, reversedGraph, table);
+					int source;
+					while ((source = nextSource.getAndIncrement()) < sources.length) {
+						worker.compute(source);
 					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while pre-computing travel times", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to pre-compute travel times", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Set up the routing engine of a given backend. If a cache is given, the table is read from the cache, or
+	 * computed and written to the cache if the cache has no valid table for this map. A mapped table is
+	 * computed directly into its file. The CH backend builds a contraction hierarchy instead of a table and
+	 * does not use the cache.
+	 *
+	 * @param threads the number of worker threads used if the table must be computed
+	 * @param backend where the table is stored, or CH for no table
+	 * @param cache the cache entry of this map; null if no cache is used
+	 */
+	void calcTravelTimes(int threads, Configuration.PathTableBackend backend, PathTableCache cache) {
+		int size = intersections.size();
+		try {
+			if (backend == Configuration.PathTableBackend.CH) {
+				routingEngine = new ContractionHierarchy(new RoadGraph(intersectionsByPathTableIndex()));
+			} else if (backend == Configuration.PathTableBackend.MAPPED) {
+				if (cache == null) {
+					calcTravelTimes(threads, MappedPathTable.createTemporary(size));
+					return;
+				}
+				MappedPathTable cached = cache.map(size);
+				if (cached != null) {
+					System.out.println("Mapped all pair travel times from " + cache.file());
+					routingEngine = cached;
+					return;
+				}
+				MappedPathTable table = cache.create(size);
+				calcTravelTimes(threads, table);
+				cache.commit(table);
+			} else {
+				if (cache == null) {
+					calcTravelTimes(threads);
+					return;
 				}
+				HeapPathTable cached = cache.load(size);
+				if (cached != null) {
+					System.out.println("Loaded all pair travel times from " + cache.file());
+					routingEngine = cached;
+					return;
+				}
+				HeapPathTable table = new HeapPathTable(size);
+				calcTravelTimes(threads, table);
+				cache.store(table);
 			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to create a mapped path table", e);
 		}
+	}
+
+	/**
+	 * @return all intersections ordered by pathTableIndex; not to be modified
+	 */
+	Intersection[] intersectionsByPathTableIndex() {
+		return intersectionsByPathTableIndex;
+	}
 
-		// Make the path table unmodifiable
-		makePathTableUnmodifiable(pathTable);
+	/**
+	 * @param pathTableIndex the path table index of an intersection
+	 * @return the intersection
+	 */
+	public Intersection intersectionAt(int pathTableIndex) {
+		return intersectionsByPathTableIndex[pathTableIndex];
 	}
 
 	/**
-	 * Make a path table unmodifiable.
-	 * @param pathTable
+	 * Computes the path table, the travel times from a source by a search over the roads and the successors
+	 * toward a destination by a search over the reversed roads. A worker owns its own heap and cost array which
+	 * it resets before every search, so that a worker never shares mutable state with other workers.
 	 */
-	public void makePathTableUnmodifiable(ArrayList<ArrayList<PathTableEntry>> pathTable) {
-		ArrayList<ImmutableList<PathTableEntry>> aListOfImmutableList = new ArrayList<ImmutableList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aListOfPathTableEntries = pathTable.get(i);
-			aListOfImmutableList.add(ImmutableList.copyOf(aListOfPathTableEntries));
-			aListOfPathTableEntries.clear();
+	private static class DijkstraWorker {
+		final RoadGraph graph;
+		final RoadGraph reversedGraph;
+		final PathTable table;
+
+		// tentative cost of every intersection, indexed by pathTableIndex
+		final double[] cost;
+
+		// the intersection from which every intersection is reached on the shortest path from the root of the
+		// search, indexed by pathTableIndex; over the reversed roads, the successor toward the root
+		final int[] parent;
+
+		// whether the shortest travel time to an intersection is final, indexed by pathTableIndex
+		final boolean[] settled;
+
+		final IndexedMinHeap heap;
+
+		DijkstraWorker(RoadGraph graph, RoadGraph reversedGraph, PathTable table) {
+			this.graph = graph;
+			this.reversedGraph = reversedGraph;
+			this.table = table;
+			cost = new double[graph.size];
+			parent = new int[graph.size];
+			settled = new boolean[graph.size];
+			heap = new IndexedMinHeap(graph.size);
+		}
+
+		/**
+		 * Compute the shortest travel times from a source and the successors toward the intersection with the
+		 * same index, and store them in the path table.
+		 * @param index the pathTableIndex of the intersection
+		 */
+		void compute(int index) {
+			search(graph, index);
+			table.setTravelTimes(index, cost);
+			search(reversedGraph, index);
+			table.setSuccessors(index, parent);
 		}
-		pathTable.clear();
 
-		immutablePathTable = ImmutableList.copyOf(aListOfImmutableList);
+		/**
+		 * Dijkstra search from a root over all roads of a graph. Intersections enter the heap only once they are
+		 * reached. Ties are broken on pathTableIndex which follows the intersection id order, and the parent of
+		 * an intersection is the first settled intersection that reaches it at its shortest travel time, so
+		 * that the parents form a tree that only depends on the graph and the root.
+		 * @param graph the roads or the reversed roads
+		 * @param root the pathTableIndex of the intersection to search from
+		 */
+		private void search(RoadGraph graph, int root) {
+			Arrays.fill(cost, Double.MAX_VALUE);
+			Arrays.fill(parent, PathTable.NO_SUCCESSOR);
+			Arrays.fill(settled, false);
+			heap.clear();
+
+			// root is set at distance 0
+			cost[root] = 0;
+			parent[root] = root;
+			heap.insert(root, 0);
+
+			while (!heap.isEmpty()) {
+				int u = heap.poll();
+				settled[u] = true;
+
+				for (int r = graph.firstRoad[u]; r < graph.firstRoad[u + 1]; r++) {
+					int v = graph.roadTo[r];
+					if (settled[v]) continue;
+					double ncost = cost[u] + graph.roadTravelTime[r];
+					if (cost[v] > ncost) {
+						cost[v] = ncost;
+						parent[v] = u;
+						heap.insertOrDecreaseKey(v, ncost);
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -222,52 +440,80 @@ public class CityMap {
 	 * @param source the source intersection
 	 * @param destination the destination intersection
 	 * @return LinkedList<Intersection> an ordered list of intersections forming the path
+	 * @throws IllegalArgumentException if the destination cannot be reached from the source
 	 */
 	public LinkedList<Intersection> shortestTravelTimePath(Intersection source, Intersection destination) {
-		LinkedList<Intersection> path = new LinkedList<Intersection>();
-		path.addFirst(destination);
-		int current = destination.pathTableIndex;
-		while (current != source.pathTableIndex) {
-			int pred = immutablePathTable.get(source.pathTableIndex).get(current).predecessor;
-			path.addFirst(intersectionsByPathTableIndex.get(pred));
-			current = pred;
+		IntersectionPath path = new IntersectionPath();
+		shortestTravelTimePath(source, destination, path);
+		LinkedList<Intersection> list = new LinkedList<Intersection>();
+		while (!path.isEmpty()) {
+			list.add(path.poll());
 		}
-		return path;
+		return list;
 	}
 
-	private class DijkstraQueueEntry implements Comparable<DijkstraQueueEntry> {
-		Intersection intersection;
-		double cost = Double.MAX_VALUE;
-		boolean inQueue = true;
-
-		DijkstraQueueEntry(Intersection intersection) {
-			this.intersection = intersection;
+	/**
+	 * Get the intersection following a given intersection on the shortest path toward a given destination.
+	 * Following next hops one at a time drives the shortest path without materializing it; with a path table
+	 * every next hop is a single lookup.
+	 * @param current the intersection to leave
+	 * @param destination the destination intersection
+	 * @return the next intersection on the shortest path; null if current is the destination
+	 * @throws IllegalArgumentException if the destination cannot be reached from current
+	 */
+	public Intersection nextHop(Intersection current, Intersection destination) {
+		if (current.getPathTableIndex() == destination.getPathTableIndex()) {
+			return null;
 		}
-
-		@Override
-		public int compareTo(DijkstraQueueEntry j) {
-			if (this.cost < j.cost) {
-				return -1;
-			} else if (this.cost > j.cost) {
-				return 1;
-			} else if (this.intersection.id < j.intersection.id) {
-				return -1;
-			} else if (this.intersection.id > j.intersection.id) {
-				return 1;
-			} else {
-				return 0;
-			}
+		int next = routingEngine.nextHop(current.getPathTableIndex(), destination.getPathTableIndex());
+		if (next < 0) {
+			throw new IllegalArgumentException("no path from " + current + " to " + destination);
 		}
+		return intersectionsByPathTableIndex[next];
 	}
 
-	private class PathTableEntry {
-		final double travelTime;
-		final int predecessor;
+	/**
+	 * @return whether nextHop() is a lookup in a pre-computed table. Otherwise every next hop searches the
+	 * shortest path, and a route is better computed once with shortestTravelTimePath() and followed.
+	 */
+	public boolean hasNextHopTable() {
+		return routingEngine instanceof PathTable;
+	}
 
-		PathTableEntry(double travelTime, int predecessor) {
-			this.travelTime = travelTime;
-			this.predecessor = predecessor;
+	/**
+	 * Get the shortest path between a given source and a given destination into a reusable path, which
+	 * avoids allocating a list per route.
+	 * @param source the source intersection
+	 * @param destination the destination intersection
+	 * @param path the path to fill; its previous contents are discarded
+	 * @throws IllegalArgumentException if the destination cannot be reached from the source
+	 */
+	public void shortestTravelTimePath(Intersection source, Intersection destination, IntersectionPath path) {
+		int length = shortestTravelTimePath(source, destination, path.indices);
+		if (length > path.indices.length) {
+			path.indices = new int[Math.max(length, 2 * path.indices.length)];
+			shortestTravelTimePath(source, destination, path.indices);
+		}
+		path.reset(intersectionsByPathTableIndex, length);
+	}
+
+	/**
+	 * Get the shortest path between a given source and a given destination as the path table indices of its
+	 * intersections; see intersectionAt() for the intersection of an index.
+	 * @param source the source intersection
+	 * @param destination the destination intersection
+	 * @param path the array to write the path table index of every intersection of the path into in order,
+	 * starting with the source and ending with the destination
+	 * @return the number of intersections of the path. If it is larger than the length of the array, the
+	 * contents of the array are undefined and the call is to be repeated with an array of at least that length.
+	 * @throws IllegalArgumentException if the destination cannot be reached from the source
+	 */
+	public int shortestTravelTimePath(Intersection source, Intersection destination, int[] path) {
+		int length = routingEngine.path(source.getPathTableIndex(), destination.getPathTableIndex(), path);
+		if (length < 0) {
+			throw new IllegalArgumentException("no path from " + source + " to " + destination);
 		}
+		return length;
 	}
 
 	/**
@@ -284,6 +530,46 @@ public class CityMap {
 		return intersections;
 	}
 
+	/**
+	 * Make the structure of the map read-only, so that the simulator and the fleet manager can share one map
+	 * instead of the fleet manager working on a deep copy. The intersection map, the road list and the road
+	 * and link maps of every intersection and vertex are replaced by unmodifiable views, and every road
+	 * rejects further links and speed changes, so any attempt to add or remove an intersection, road or link
+	 * throws UnsupportedOperationException. The attributes of intersections, roads and links are final or
+	 * only readable through getters. Freezing a frozen map has no effect.
+	 */
+	void freeze() {
+		if (frozen) {
+			return;
+		}
+		intersections = Collections.unmodifiableMap(intersections);
+		roads = Collections.unmodifiableList(roads);
+		Set<Vertex> vertices = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Intersection intersection : intersections.values()) {
+			intersection.roadsMapFrom = Collections.unmodifiableMap(intersection.roadsMapFrom);
+			intersection.roadsMapTo = Collections.unmodifiableMap(intersection.roadsMapTo);
+		}
+		for (Road road : roads) {
+			road.freeze();
+			for (Link link : road.links) {
+				for (Vertex vertex : new Vertex[] {link.from, link.to}) {
+					if (vertices.add(vertex)) {
+						vertex.linksMapFrom = Collections.unmodifiableMap(vertex.linksMapFrom);
+						vertex.linksMapTo = Collections.unmodifiableMap(vertex.linksMapTo);
+					}
+				}
+			}
+		}
+		frozen = true;
+	}
+
+	/**
+	 * @return whether the structure of the map is read-only; see freeze()
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	/**
 	 * 
 	 * @return a deep copy of the map
@@ -321,8 +607,7 @@ public class CityMap {
 				// create start intersection if not existing yet
 				if (!intersectionsCopy.containsKey(road.from.id)) {
 					// create a new intersection
-					Intersection intersectionFrom = new Intersection(road.from);
-					intersectionFrom.vertex = firstLink.from;
+					Intersection intersectionFrom = new Intersection(road.from, firstLink.from);
 					firstLink.from.intersection = intersectionFrom;
 					intersectionsCopy.put(intersectionFrom.id, intersectionFrom);
 				}
@@ -330,8 +615,7 @@ public class CityMap {
 				// create end intersection if not existing yet
 				if (!intersectionsCopy.containsKey(road.to.id)) {
 					// create a new intersection
-					Intersection intersectionTo = new Intersection(road.to);
-					intersectionTo.vertex = lastLink.to;
+					Intersection intersectionTo = new Intersection(road.to, lastLink.to);
 					lastLink.to.intersection = intersectionTo;
 					intersectionsCopy.put(intersectionTo.id,  intersectionTo);
 				}
@@ -339,9 +623,6 @@ public class CityMap {
 				Intersection intersectionFrom = intersectionsCopy.get(road.from.id);
 				Intersection intersectionTo = intersectionsCopy.get(road.to.id);
 				Road roadCopy = new Road(road, intersectionFrom, intersectionTo, linksCopy);
-				for (Link linkCopy : linksCopy) {
-					linkCopy.road = roadCopy;
-				}
 				intersectionFrom.roadsMapFrom.put(intersectionTo,  roadCopy);
 				intersectionTo.roadsMapTo.put(intersectionFrom, roadCopy);
 			}
@@ -358,13 +639,13 @@ public class CityMap {
 		CityMap cityMap = new CityMap();
 		cityMap.intersections = intersectionsCopy;
 		cityMap.roads = roadsCopy;
-		cityMap.immutablePathTable = immutablePathTable;
+		cityMap.routingEngine = routingEngine;
 		cityMap.projector = projector;
-		cityMap.kdTree = kdTree;
+		cityMap.linkIndex = linkIndex;
 		
-		cityMap.intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		cityMap.intersectionsByPathTableIndex = new Intersection[intersectionsByPathTableIndex.length];
 		for (Intersection intersection : cityMap.intersections.values()) {
-			cityMap.intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			cityMap.intersectionsByPathTableIndex[intersection.getPathTableIndex()] = intersection;
 		}
 		
 		return cityMap;
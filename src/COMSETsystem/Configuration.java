@@ -2,6 +2,8 @@ package COMSETsystem;
 
 import MapCreation.MapCreator;
 
+import java.io.IOException;
+
 /**
  * Class to hold the configuration parameters of the simulation. Call static method Configuration.make() first to
  * create a singleton configuration object, then call Configuration.get() to retrieve the singleton.
@@ -33,6 +35,55 @@ public class Configuration {
     public final long trafficPatternStep, trafficPatternStepInSeconds;
     public final long agentPlacementRandomSeed;
 
+    // The number of threads used to pre-compute the all-pair travel times; all processors if not positive.
+    public final int pathTableThreads;
+
+    // Directory in which computed path tables are cached across runs; no caching if null.
+    public final String pathTableCacheDir;
+
+    // Where the all-pair travel times are stored, or how they are computed on demand.
+    public final PathTableBackend pathTableBackend;
+
+    public enum PathTableBackend {
+        // Primitive arrays on the Java heap; limited to about 46,000 intersections.
+        HEAP,
+        // A memory-mapped file outside the Java heap, paged in and out by the operating system.
+        MAPPED,
+        // No table: queries are answered on demand by a contraction hierarchy which grows near-linearly with the map.
+        CH
+    }
+
+    // The queue of pending events of the simulator.
+    public final EventSchedulerType eventScheduler;
+
+    public enum EventSchedulerType {
+        // A binary heap; O(log n) insert and poll.
+        HEAP,
+        // A calendar queue of time buckets; O(1) amortized insert and poll when event times are dense.
+        CALENDAR
+    }
+
+    // The number of threads that compute the moves of agents reaching intersections at the same time;
+    // 1 processes every event sequentially and a value that is not positive uses all processors.
+    public final int navigationThreads;
+
+    // The file to which a binary trace of the simulation is written; no trace if null.
+    public final String traceFile;
+
+    // Whether resources are streamed into the simulation as simulated time advances rather than all loaded before
+    // it starts; see DataParsing.ResourceStream.
+    public final boolean streamResources;
+
+    // The index of the links of the map used to map-match resources.
+    public final SpatialIndexType spatialIndex;
+
+    public enum SpatialIndexType {
+        // A balanced tree of bounding boxes; DataParsing.KdTree.
+        KDTREE,
+        // A uniform grid of cells; DataParsing.LinkGrid.
+        GRID
+    }
+
     protected static Configuration singletonConfiguration;
 
     // A class that extends BaseAgent and implements a search routing strategy
@@ -50,7 +101,15 @@ public class Configuration {
                           long agentPlacementRandomSeed,
                           boolean dynamicTrafficEnabled,
                           long trafficPatternEpoch,
-                          long trafficPatternStep) {
+                          long trafficPatternStep,
+                          int pathTableThreads,
+                          String pathTableCacheDir,
+                          PathTableBackend pathTableBackend,
+                          EventSchedulerType eventScheduler,
+                          int navigationThreads,
+                          String traceFile,
+                          boolean streamResources,
+                          SpatialIndexType spatialIndex) {
         this.fleetManagerClass = fleetManagerClass;
         this.mapJSONFile = mapJSONFile;
         this.resourceFile = resourceFile;
@@ -65,12 +124,28 @@ public class Configuration {
         this.trafficPatternEpoch = trafficPatternEpochInSeconds * timeResolution;
         trafficPatternStepInSeconds = trafficPatternStep;
         this.trafficPatternStep = trafficPatternStepInSeconds * timeResolution;
+        this.pathTableThreads = pathTableThreads;
+        this.pathTableCacheDir = pathTableCacheDir;
+        this.pathTableBackend = pathTableBackend;
+        this.eventScheduler = eventScheduler;
+        this.navigationThreads = navigationThreads;
+        this.traceFile = traceFile;
+        this.streamResources = streamResources;
+        this.spatialIndex = spatialIndex;
 
         map = makeCityMap();
 
         // Pre-compute shortest travel times between all pairs of intersections.
         System.out.println("Pre-computing all pair travel times...");
-        map.calcTravelTimes();
+        PathTableCache cache = null;
+        if (pathTableCacheDir != null && pathTableBackend != PathTableBackend.CH) {
+            try {
+                cache = PathTableCache.forMap(pathTableCacheDir, mapJSONFile, boundingPolygonKMLFile, map);
+            } catch (IOException e) {
+                System.out.println("Path table cache disabled: " + e.getMessage());
+            }
+        }
+        map.calcTravelTimes(pathTableThreads, pathTableBackend, cache);
     }
 
     public static void make(Class<? extends FleetManager> fleetManagerClass,
@@ -82,7 +157,15 @@ public class Configuration {
                             long agentPlacementRandomSeed,
                             boolean dynamicTraffic,
                             long trafficPatternEpoch,
-                            long trafficPatternStep) {
+                            long trafficPatternStep,
+                            int pathTableThreads,
+                            String pathTableCacheDir,
+                            PathTableBackend pathTableBackend,
+                            EventSchedulerType eventScheduler,
+                            int navigationThreads,
+                            String traceFile,
+                            boolean streamResources,
+                            SpatialIndexType spatialIndex) {
         if (singletonConfiguration == null) {
             singletonConfiguration = new Configuration(
                     fleetManagerClass,
@@ -94,7 +177,15 @@ public class Configuration {
                     agentPlacementRandomSeed,
                     dynamicTraffic,
                     trafficPatternEpoch,
-                    trafficPatternStep);
+                    trafficPatternStep,
+                    pathTableThreads,
+                    pathTableCacheDir,
+                    pathTableBackend,
+                    eventScheduler,
+                    navigationThreads,
+                    traceFile,
+                    streamResources,
+                    spatialIndex);
         }
     }
 
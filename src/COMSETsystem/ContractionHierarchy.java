@@ -0,0 +1,567 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A RoutingEngine that answers shortest travel time queries on demand using a contraction hierarchy instead of
+ * a pre-computed all-pair table, so that its memory and pre-processing time grow near-linearly with the size of
+ * the map rather than quadratically.
+ *
+ * Pre-processing contracts the intersections one at a time in the order of a heuristic priority which combines the
+ * edge difference, the number of already contracted neighbors and the level in the hierarchy. Contracting an
+ * intersection v removes it from the graph and adds a shortcut u -> w for every pair of roads u -> v -> w unless a
+ * local witness search finds a path from u to w that avoids v and is no longer. Every edge is then stored at its
+ * lower-ranked end: the upward edges leave an intersection towards higher-ranked intersections and the downward
+ * edges enter it from higher-ranked ones. A shortcut u -> w also stores its halves, the downward edge u -> v and
+ * the upward edge v -> w, so that it is unpacked without searching the edges of v.
+ *
+ * A query runs a forward Dijkstra search from the source over upward edges and a backward search from the
+ * destination over downward edges, both with stall-on-demand; the shortest path meets at its highest-ranked
+ * intersection. Shortcuts are unpacked into roads to report the path, and the travel time is summed over the roads
+ * of the path in order, exactly as in the Dijkstra search that fills a PathTable, rather than taken from the search
+ * whose sums of shortcuts may round differently. Shortest paths of equal travel time may be resolved differently
+ * than by the PathTable.
+ */
+final class ContractionHierarchy implements RoutingEngine {
+
+	// The maximum number of intersections settled by a witness search. A witness search that stops early only
+	// results in unnecessary shortcuts, never in wrong answers. Estimating the priority of an intersection uses
+	// a smaller limit than its actual contraction since priorities are estimated far more often.
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+	private static final int PRIORITY_WITNESS_SETTLE_LIMIT = 50;
+
+	// The middle intersection of an edge that is a road rather than a shortcut.
+	private static final int NO_MIDDLE = -1;
+
+	// The halves of an edge that is a road rather than a shortcut.
+	private static final int NO_EDGE = -1;
+
+	// The number of intersections.
+	final int size;
+
+	// Upward edges, grouped by their start intersection: the edges leaving intersection i are at positions
+	// upFirst[i] (inclusive) to upFirst[i + 1] (exclusive). The halves of a shortcut u -> w past v are the position
+	// of the downward edge u -> v and of the upward edge v -> w.
+	private final int[] upFirst;
+	private final int[] upFrom;
+	private final int[] upTo;
+	private final double[] upWeight;
+	private final int[] upFirstHalf;
+	private final int[] upSecondHalf;
+
+	// Downward edges, grouped by their end intersection in the same way.
+	private final int[] downFirst;
+	private final int[] downFrom;
+	private final int[] downTo;
+	private final double[] downWeight;
+	private final int[] downFirstHalf;
+	private final int[] downSecondHalf;
+
+	// Query scratch space of every thread.
+	private final ThreadLocal<Query> queries = ThreadLocal.withInitial(Query::new);
+
+	/**
+	 * Build a contraction hierarchy over a road network.
+	 * @param graph the road network
+	 */
+	ContractionHierarchy(RoadGraph graph) {
+		size = graph.size;
+		Builder builder = new Builder(graph);
+		builder.contractAll();
+
+		upFirst = new int[size + 1];
+		downFirst = new int[size + 1];
+		for (int v = 0; v < size; v++) {
+			upFirst[v + 1] = upFirst[v] + builder.out.get(v).size();
+			downFirst[v + 1] = downFirst[v] + builder.in.get(v).size();
+		}
+		upFrom = new int[upFirst[size]];
+		upTo = new int[upFirst[size]];
+		upWeight = new double[upFirst[size]];
+		upFirstHalf = new int[upFirst[size]];
+		upSecondHalf = new int[upFirst[size]];
+		downFrom = new int[downFirst[size]];
+		downTo = new int[downFirst[size]];
+		downWeight = new double[downFirst[size]];
+		downFirstHalf = new int[downFirst[size]];
+		downSecondHalf = new int[downFirst[size]];
+		for (int v = 0; v < size; v++) {
+			int e = upFirst[v];
+			for (Edge edge : builder.out.get(v)) {
+				upFrom[e] = edge.from;
+				upTo[e] = edge.to;
+				upWeight[e] = edge.weight;
+				e++;
+			}
+			e = downFirst[v];
+			for (Edge edge : builder.in.get(v)) {
+				downFrom[e] = edge.from;
+				downTo[e] = edge.to;
+				downWeight[e] = edge.weight;
+				e++;
+			}
+		}
+		// a shortcut past v is added when v is contracted, so its halves are among the final edges of v
+		for (int v = 0; v < size; v++) {
+			int e = upFirst[v];
+			for (Edge edge : builder.out.get(v)) {
+				upFirstHalf[e] = edge.middle == NO_MIDDLE ? NO_EDGE : findDownward(edge.from, edge.middle);
+				upSecondHalf[e] = edge.middle == NO_MIDDLE ? NO_EDGE : findUpward(edge.middle, edge.to);
+				e++;
+			}
+			e = downFirst[v];
+			for (Edge edge : builder.in.get(v)) {
+				downFirstHalf[e] = edge.middle == NO_MIDDLE ? NO_EDGE : findDownward(edge.from, edge.middle);
+				downSecondHalf[e] = edge.middle == NO_MIDDLE ? NO_EDGE : findUpward(edge.middle, edge.to);
+				e++;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of upward and downward edges, including shortcuts
+	 */
+	int edges() {
+		return upFirst[size] + downFirst[size];
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		Query query = queries.get();
+		if (!query.search(source, destination)) {
+			return Double.MAX_VALUE;
+		}
+		query.unpack();
+		return query.travelTime;
+	}
+
+	@Override
+	public int path(int source, int destination, int[] path) {
+		Query query = queries.get();
+		if (!query.search(source, destination)) {
+			return -1;
+		}
+		query.unpack();
+		if (query.pathLength <= path.length) {
+			System.arraycopy(query.path, 0, path, 0, query.pathLength);
+		}
+		return query.pathLength;
+	}
+
+	/**
+	 * A contraction hierarchy stores no next hops, so the shortest path is searched and unpacked.
+	 */
+	@Override
+	public int nextHop(int source, int destination) {
+		Query query = queries.get();
+		if (!query.search(source, destination)) {
+			return -1;
+		}
+		query.unpack();
+		return query.pathLength > 1 ? query.path[1] : source;
+	}
+
+	/**
+	 * An edge of the graph during contraction. The same object is in the outgoing list of its start and in the
+	 * incoming list of its end.
+	 */
+	private static final class Edge {
+		final int from;
+		final int to;
+		double weight;
+		int middle;
+
+		Edge(int from, int to, double weight, int middle) {
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+			this.middle = middle;
+		}
+	}
+
+	/**
+	 * Contracts the intersections of a road network. Once an intersection is contracted, its outgoing and
+	 * incoming edge lists no longer change; they become its upward and downward edges.
+	 */
+	private static final class Builder {
+		final int size;
+		final List<List<Edge>> out;
+		final List<List<Edge>> in;
+		final int[] contractedNeighbors;
+		final int[] level;
+
+		// witness search scratch space
+		final double[] distance;
+		final boolean[] target;
+		final IndexedMinHeap heap;
+		final int[] touched;
+		int touchedCount;
+
+		Builder(RoadGraph graph) {
+			size = graph.size;
+			out = new ArrayList<>(size);
+			in = new ArrayList<>(size);
+			for (int v = 0; v < size; v++) {
+				out.add(new ArrayList<>());
+				in.add(new ArrayList<>());
+			}
+			for (int v = 0; v < size; v++) {
+				for (int r = graph.firstRoad[v]; r < graph.firstRoad[v + 1]; r++) {
+					int w = graph.roadTo[r];
+					if (w == v) continue;
+					Edge edge = new Edge(v, w, graph.roadTravelTime[r], NO_MIDDLE);
+					out.get(v).add(edge);
+					in.get(w).add(edge);
+				}
+			}
+			contractedNeighbors = new int[size];
+			level = new int[size];
+			distance = new double[size];
+			Arrays.fill(distance, Double.MAX_VALUE);
+			target = new boolean[size];
+			heap = new IndexedMinHeap(size);
+			touched = new int[size];
+		}
+
+		void contractAll() {
+			IndexedMinHeap order = new IndexedMinHeap(size);
+			for (int v = 0; v < size; v++) {
+				order.insert(v, priority(v));
+			}
+			while (!order.isEmpty()) {
+				int v = order.poll();
+
+				// priorities are updated lazily: contract v only if it is still the best candidate
+				double priority = priority(v);
+				if (!order.isEmpty() && priority > order.key(order.peek())) {
+					order.insert(v, priority);
+					continue;
+				}
+
+				contract(v, false);
+
+				List<Integer> neighbors = new ArrayList<>();
+				for (Edge edge : in.get(v)) {
+					out.get(edge.from).remove(edge);
+					neighbors.add(edge.from);
+				}
+				for (Edge edge : out.get(v)) {
+					in.get(edge.to).remove(edge);
+					neighbors.add(edge.to);
+				}
+				for (int neighbor : neighbors) {
+					contractedNeighbors[neighbor]++;
+					level[neighbor] = Math.max(level[neighbor], level[v] + 1);
+				}
+			}
+		}
+
+		double priority(int v) {
+			int shortcuts = contract(v, true);
+			int edgeDifference = shortcuts - in.get(v).size() - out.get(v).size();
+			return 2 * edgeDifference + contractedNeighbors[v] + level[v];
+		}
+
+		/**
+		 * Add the shortcuts needed to contract an intersection.
+		 * @param v the intersection to contract
+		 * @param simulate only count the shortcuts without adding them
+		 * @return the number of shortcuts
+		 */
+		int contract(int v, boolean simulate) {
+			int shortcuts = 0;
+			for (Edge inEdge : in.get(v)) {
+				int u = inEdge.from;
+				double maxCost = -1;
+				int targets = 0;
+				for (Edge outEdge : out.get(v)) {
+					if (outEdge.to != u) {
+						maxCost = Math.max(maxCost, inEdge.weight + outEdge.weight);
+						target[outEdge.to] = true;
+						targets++;
+					}
+				}
+				if (maxCost < 0) continue;
+
+				witnessSearch(u, v, targets, maxCost, simulate ? PRIORITY_WITNESS_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+				for (Edge outEdge : out.get(v)) {
+					int w = outEdge.to;
+					if (w == u) continue;
+					double cost = inEdge.weight + outEdge.weight;
+					if (distance[w] <= cost) continue;
+					shortcuts++;
+					if (!simulate) {
+						addShortcut(u, w, cost, v);
+					}
+				}
+				for (Edge outEdge : out.get(v)) {
+					target[outEdge.to] = false;
+				}
+			}
+			return shortcuts;
+		}
+
+		void addShortcut(int u, int w, double cost, int middle) {
+			for (Edge edge : out.get(u)) {
+				if (edge.to == w) {
+					if (cost < edge.weight) {
+						edge.weight = cost;
+						edge.middle = middle;
+					}
+					return;
+				}
+			}
+			Edge edge = new Edge(u, w, cost, middle);
+			out.get(u).add(edge);
+			in.get(w).add(edge);
+		}
+
+		/**
+		 * Dijkstra search from u that ignores v and stops once all targets are settled, at maxCost, or after
+		 * settleLimit intersections. Leaves the resulting distances in distance.
+		 */
+		void witnessSearch(int u, int v, int targets, double maxCost, int settleLimit) {
+			for (int i = 0; i < touchedCount; i++) {
+				distance[touched[i]] = Double.MAX_VALUE;
+			}
+			touchedCount = 0;
+			heap.clear();
+
+			distance[u] = 0;
+			touched[touchedCount++] = u;
+			heap.insert(u, 0);
+			int settled = 0;
+			while (!heap.isEmpty()) {
+				int a = heap.poll();
+				if (target[a] && --targets == 0) break;
+				if (distance[a] > maxCost || ++settled > settleLimit) break;
+				for (Edge edge : out.get(a)) {
+					int b = edge.to;
+					if (b == v) continue;
+					double cost = distance[a] + edge.weight;
+					if (cost < distance[b]) {
+						if (distance[b] == Double.MAX_VALUE) {
+							touched[touchedCount++] = b;
+						}
+						distance[b] = cost;
+						heap.insertOrDecreaseKey(b, cost);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The scratch space of the queries of one thread. Edges are identified by their index e into the upward
+	 * arrays, or by ~e for index e into the downward arrays.
+	 */
+	private final class Query {
+		final double[] forwardDistance = new double[size];
+		final double[] backwardDistance = new double[size];
+
+		// the edge through which an intersection was reached by the forward or backward search
+		final int[] forwardEdge = new int[size];
+		final int[] backwardEdge = new int[size];
+
+		final IndexedMinHeap forwardHeap = new IndexedMinHeap(size);
+		final IndexedMinHeap backwardHeap = new IndexedMinHeap(size);
+
+		// intersections whose distances must be reset before the next query
+		final int[] touched = new int[size];
+		int touchedCount;
+
+		int source;
+		int destination;
+		int meeting;
+
+		// result of unpack()
+		int[] path = new int[16];
+		int pathLength;
+		double travelTime;
+
+		// edges still to be unpacked
+		int[] stack = new int[16];
+
+		Query() {
+			Arrays.fill(forwardDistance, Double.MAX_VALUE);
+			Arrays.fill(backwardDistance, Double.MAX_VALUE);
+		}
+
+		/**
+		 * Run the bidirectional search.
+		 * @return whether the destination can be reached from the source
+		 */
+		boolean search(int source, int destination) {
+			for (int i = 0; i < touchedCount; i++) {
+				forwardDistance[touched[i]] = Double.MAX_VALUE;
+				backwardDistance[touched[i]] = Double.MAX_VALUE;
+			}
+			touchedCount = 0;
+			forwardHeap.clear();
+			backwardHeap.clear();
+
+			this.source = source;
+			this.destination = destination;
+			meeting = -1;
+			double best = Double.MAX_VALUE;
+
+			touch(source);
+			forwardDistance[source] = 0;
+			forwardHeap.insert(source, 0);
+			if (backwardDistance[destination] == Double.MAX_VALUE && forwardDistance[destination] == Double.MAX_VALUE) {
+				touch(destination);
+			}
+			backwardDistance[destination] = 0;
+			backwardHeap.insert(destination, 0);
+
+			while (true) {
+				boolean forwardDone = forwardHeap.isEmpty() || forwardHeap.key(forwardHeap.peek()) >= best;
+				boolean backwardDone = backwardHeap.isEmpty() || backwardHeap.key(backwardHeap.peek()) >= best;
+				if (forwardDone && backwardDone) break;
+
+				if (!forwardDone && (backwardDone
+						|| forwardHeap.key(forwardHeap.peek()) <= backwardHeap.key(backwardHeap.peek()))) {
+					int u = forwardHeap.poll();
+					if (backwardDistance[u] != Double.MAX_VALUE && forwardDistance[u] + backwardDistance[u] < best) {
+						best = forwardDistance[u] + backwardDistance[u];
+						meeting = u;
+					}
+					if (forwardStalled(u)) continue;
+					for (int e = upFirst[u]; e < upFirst[u + 1]; e++) {
+						relax(forwardDistance, forwardEdge, forwardHeap, upTo[e], forwardDistance[u] + upWeight[e], e);
+					}
+				} else {
+					int u = backwardHeap.poll();
+					if (forwardDistance[u] != Double.MAX_VALUE && forwardDistance[u] + backwardDistance[u] < best) {
+						best = forwardDistance[u] + backwardDistance[u];
+						meeting = u;
+					}
+					if (backwardStalled(u)) continue;
+					for (int e = downFirst[u]; e < downFirst[u + 1]; e++) {
+						relax(backwardDistance, backwardEdge, backwardHeap, downFrom[e], backwardDistance[u] + downWeight[e], ~e);
+					}
+				}
+			}
+			return meeting >= 0;
+		}
+
+		/**
+		 * Stall-on-demand: an intersection reached by the forward search need not be expanded if a higher-ranked
+		 * intersection already reached offers a shorter way into it, since no shortest path goes up through it.
+		 */
+		boolean forwardStalled(int u) {
+			for (int e = downFirst[u]; e < downFirst[u + 1]; e++) {
+				if (forwardDistance[downFrom[e]] != Double.MAX_VALUE
+						&& forwardDistance[downFrom[e]] + downWeight[e] < forwardDistance[u]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean backwardStalled(int u) {
+			for (int e = upFirst[u]; e < upFirst[u + 1]; e++) {
+				if (backwardDistance[upTo[e]] != Double.MAX_VALUE
+						&& backwardDistance[upTo[e]] + upWeight[e] < backwardDistance[u]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void relax(double[] distance, int[] edge, IndexedMinHeap heap, int v, double cost, int e) {
+			if (cost < distance[v]) {
+				if (forwardDistance[v] == Double.MAX_VALUE && backwardDistance[v] == Double.MAX_VALUE) {
+					touch(v);
+				}
+				distance[v] = cost;
+				edge[v] = e;
+				heap.insertOrDecreaseKey(v, cost);
+			}
+		}
+
+		void touch(int v) {
+			touched[touchedCount++] = v;
+		}
+
+		/**
+		 * Unpack the path found by search() into path and travelTime.
+		 */
+		void unpack() {
+			pathLength = 0;
+			travelTime = 0;
+			append(source);
+
+			// upward edges from the source to the meeting intersection, pushed in reverse order
+			int stackSize = 0;
+			for (int v = meeting; v != source; v = upFrom[forwardEdge[v]]) {
+				stackSize++;
+			}
+			int first = stackSize;
+			int i = 0;
+			for (int v = meeting; v != source; v = upFrom[forwardEdge[v]]) {
+				push(first - 1 - i++, forwardEdge[v]);
+			}
+			for (i = 0; i < first; i++) {
+				unpackEdge(stack[i], first);
+			}
+
+			// downward edges from the meeting intersection to the destination, already in order
+			for (int v = meeting; v != destination; v = downTo[~backwardEdge[v]]) {
+				unpackEdge(backwardEdge[v], 0);
+			}
+		}
+
+		/**
+		 * Append the intersections of an edge, except for its start, to the path.
+		 * @param edge the edge to unpack
+		 * @param base the part of the stack in use by the caller
+		 */
+		void unpackEdge(int edge, int base) {
+			int top = base;
+			push(top++, edge);
+			while (top > base) {
+				int e = stack[--top];
+				int secondHalf = e >= 0 ? upSecondHalf[e] : downSecondHalf[~e];
+				if (secondHalf == NO_EDGE) {
+					append(e >= 0 ? upTo[e] : downTo[~e]);
+					travelTime += e >= 0 ? upWeight[e] : downWeight[~e];
+				} else {
+					// unpack the downward first half first, so push the upward second half first
+					push(top++, secondHalf);
+					push(top++, ~(e >= 0 ? upFirstHalf[e] : downFirstHalf[~e]));
+				}
+			}
+		}
+
+		void push(int index, int edge) {
+			if (index >= stack.length) {
+				stack = Arrays.copyOf(stack, Math.max(2 * stack.length, index + 1));
+			}
+			stack[index] = edge;
+		}
+
+		void append(int v) {
+			if (pathLength == path.length) {
+				path = Arrays.copyOf(path, 2 * path.length);
+			}
+			path[pathLength++] = v;
+		}
+	}
+
+	private int findUpward(int from, int to) {
+		for (int e = upFirst[from]; e < upFirst[from + 1]; e++) {
+			if (upTo[e] == to) return e;
+		}
+		throw new IllegalStateException("missing upward edge " + from + " -> " + to);
+	}
+
+	private int findDownward(int from, int to) {
+		for (int e = downFirst[to]; e < downFirst[to + 1]; e++) {
+			if (downFrom[e] == from) return e;
+		}
+		throw new IllegalStateException("missing downward edge " + from + " -> " + to);
+	}
+}
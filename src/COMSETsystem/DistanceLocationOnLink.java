@@ -10,11 +10,10 @@ public class DistanceLocationOnLink {
     }
 
     public boolean upstreamTo(DistanceLocationOnLink aLoc) {
-        assert this.link.road.id == aLoc.link.road.id : "two links must be on the same road";
-        Road road = this.link.road;
-        if (road.links.indexOf(this.link) < road.links.indexOf(aLoc.link)) {
+        assert this.link.getRoad().id == aLoc.link.getRoad().id : "two links must be on the same road";
+        if (this.link.getIndex() < aLoc.link.getIndex()) {
             return true;
-        } else if (road.links.indexOf(this.link) == road.links.indexOf(aLoc.link)) {
+        } else if (this.link.getIndex() == aLoc.link.getIndex()) {
             if (this.distanceFromStartVertex <= aLoc.distanceFromStartVertex) {
                 return true;
             } else {
@@ -26,8 +25,20 @@ public class DistanceLocationOnLink {
     }
 
     public boolean atEndIntersection() {
-        return (this.link.id == this.link.road.links.get(this.link.road.links.size()-1).id &&
-                this.distanceFromStartVertex == this.link.road.links.get(this.link.road.links.size()-1).length);
+        return (this.link.id == this.link.getRoad().links.get(this.link.getRoad().links.size()-1).id &&
+                this.distanceFromStartVertex == this.link.getRoad().links.get(this.link.getRoad().links.size()-1).length);
+    }
+
+    // the same location given by the distance from the start intersection of the road
+    public LocationOnRoad toLocationOnRoad() {
+        return new LocationOnRoad(link.getRoad(), link.getRoad().linkOffset(link) + distanceFromStartVertex);
+    }
+
+    // the same location given by the link containing it
+    public static DistanceLocationOnLink fromLocationOnRoad(LocationOnRoad location) {
+        Link link = location.getLink();
+        return new DistanceLocationOnLink(link,
+                location.getDistanceFromStartIntersection() - location.road.linkOffset(link));
     }
 
     // create location at the end of a road
@@ -43,6 +54,6 @@ public class DistanceLocationOnLink {
     }
 
     public String toString() {
-        return "(road: " + link.road.id + ", link: " + link.id + ", distanceFromStartVertex: " + distanceFromStartVertex;
+        return "(road: " + link.getRoad().id + ", link: " + link.id + ", distanceFromStartVertex: " + distanceFromStartVertex;
     }
 }
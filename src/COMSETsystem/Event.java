@@ -26,6 +26,10 @@ public abstract class Event implements Comparable<Event> {
 	 */
     final long id;
 
+	// The position of the event in the EventQueue holding it; -1 if the event is not queued.
+	// Maintained by EventQueue only.
+	int queueIndex = -1;
+
 	/**
 	 * Constructor for class Event
 	 *
@@ -39,6 +43,36 @@ public abstract class Event implements Comparable<Event> {
 		this.fleetManager = fleetManager;
 	}
 
+	/**
+	 * Constructor for class Event with an id reserved by reserveIds().
+	 *
+	 * @param id the reserved id
+	 * @param time core to this class, indicates when this event will trigger.
+	 * @param simulator a reference to simulator
+	 */
+	Event(long id, long time, Simulator simulator, FleetManager fleetManager) {
+		this.id = id;
+		this.time = time;
+		this.simulator = simulator;
+		this.fleetManager = fleetManager;
+	}
+
+	/**
+	 * Reserve ids for events that are created later, i.e., streamed resources, so that all events get the ids
+	 * they would get if the reserved events were created now.
+	 *
+	 * @param count the number of ids to reserve
+	 * @return the first reserved id
+	 */
+	static long reserveIds(long count) {
+		long first = maxId;
+		if (first + count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many events: " + (first + count));
+		}
+		maxId += (int) count;
+		return first;
+	}
+
 	/**
 	 * Constructor for class Event.  Allow subclasses to set simulator.
 	 *
@@ -96,9 +130,16 @@ public abstract class Event implements Comparable<Event> {
 		return time;
 	}
 
+	/**
+	 * @return whether the event is in an EventQueue; O(1) as the queue maintains the event's position
+	 */
+	public boolean isQueued() {
+		return queueIndex >= 0;
+	}
+
 	public void setTime(long time) {
 		// Thou shall never change the time when the event is on the simulator queue!
-		assert !simulator.hasEvent(this);
+		assert !isQueued() : "time of queued event " + id + " changed";
 		this.time = time;
 	}
 }
@@ -0,0 +1,195 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An array-based binary min-heap of events ordered by Event.compareTo(), i.e., by time with ties broken as
+ * described there. Every event records its own position in the heap (Event.queueIndex), so that removing an
+ * arbitrary event, e.g., when an agent is assigned to a resource, takes O(log n) rather than the linear scan
+ * of PriorityQueue.remove(Object), and checking whether an event is in the queue takes O(1).
+ *
+ * An event can be in at most one queue at a time.
+ */
+public class EventQueue implements EventScheduler {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private Event[] heap;
+
+	private int size;
+
+	// incremented by every change, so that iterators can detect concurrent modifications
+	private int modCount;
+
+	public EventQueue() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity the number of events the queue holds before it grows
+	 */
+	EventQueue(int initialCapacity) {
+		heap = new Event[Math.max(1, initialCapacity)];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param event an event
+	 * @return whether the event is in this queue
+	 */
+	@Override
+	public boolean contains(Event event) {
+		int index = event.queueIndex;
+		return index >= 0 && index < size && heap[index] == event;
+	}
+
+	/**
+	 * Insert an event that is not in any queue.
+	 * @param event the event to insert
+	 */
+	@Override
+	public void add(Event event) {
+		if (event.queueIndex >= 0) {
+			throw new IllegalArgumentException("Event " + event.id + " is already queued");
+		}
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, 2 * heap.length);
+		}
+		modCount++;
+		size++;
+		siftUp(size - 1, event);
+	}
+
+	/**
+	 * @return the earliest event without removing it; null if the queue is empty
+	 */
+	@Override
+	public Event peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	/**
+	 * Remove the earliest event.
+	 * @return the removed event; null if the queue is empty
+	 */
+	@Override
+	public Event poll() {
+		if (size == 0) {
+			return null;
+		}
+		Event first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	/**
+	 * Remove an event from the queue.
+	 * @param event the event to remove
+	 * @return true if the event was in the queue
+	 */
+	@Override
+	public boolean remove(Event event) {
+		if (!contains(event)) {
+			return false;
+		}
+		removeAt(event.queueIndex);
+		return true;
+	}
+
+	/**
+	 * Remove all events and copy them into an array in no particular order.
+	 * @param array the array to copy the events into
+	 * @param offset the position in the array of the first copied event
+	 * @return the position in the array after the last copied event
+	 */
+	int drainTo(Event[] array, int offset) {
+		modCount++;
+		for (int i = 0; i < size; i++) {
+			heap[i].queueIndex = -1;
+			array[offset++] = heap[i];
+			heap[i] = null;
+		}
+		size = 0;
+		return offset;
+	}
+
+	private void removeAt(int index) {
+		modCount++;
+		Event removed = heap[index];
+		size--;
+		Event last = heap[size];
+		heap[size] = null;
+		removed.queueIndex = -1;
+		if (index < size) {
+			siftDown(index, last);
+			if (heap[index] == last) {
+				siftUp(index, last);
+			}
+		}
+	}
+
+	private void moveTo(Event event, int index) {
+		heap[index] = event;
+		event.queueIndex = index;
+	}
+
+	private void siftUp(int index, Event event) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (event.compareTo(heap[parent]) >= 0) break;
+			moveTo(heap[parent], index);
+			index = parent;
+		}
+		moveTo(event, index);
+	}
+
+	private void siftDown(int index, Event event) {
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < size && heap[right].compareTo(heap[child]) < 0) {
+				child = right;
+			}
+			if (event.compareTo(heap[child]) <= 0) break;
+			moveTo(heap[child], index);
+			index = child;
+		}
+		moveTo(event, index);
+	}
+
+	/**
+	 * @return an iterator over the events of the queue in no particular order
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return new Iterator<Event>() {
+			private int index = 0;
+			private final int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public Event next() {
+				if (modCount != expectedModCount) throw new ConcurrentModificationException();
+				if (index >= size) throw new NoSuchElementException();
+				return heap[index++];
+			}
+		};
+	}
+}
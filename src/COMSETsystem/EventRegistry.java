@@ -0,0 +1,142 @@
+package COMSETsystem;
+
+/**
+ * The agent and resource events of a simulation by id. Event ids are dense integers counted up by Event, so that
+ * the agents, which are created together, and the resources each occupy a range of ids: every kind is kept in an
+ * array indexed by id minus the lowest id in the array, and looking an event up is an array access without hashing
+ * or boxing.
+ *
+ * When resources are streamed into the simulation, a resource is removed once it is done, and the array of
+ * resources then slides along with the ids of the resources in flight rather than growing with all resources.
+ */
+final class EventRegistry {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Table agents = new Table();
+
+	private final Table resources = new Table();
+
+	/**
+	 * Register an agent or resource event under its id.
+	 * @param event the event to register
+	 */
+	void register(Event event) {
+		if (event instanceof AgentEvent) {
+			agents.put(event);
+		} else if (event instanceof ResourceEvent) {
+			resources.put(event);
+		} else {
+			throw new IllegalArgumentException("Only agent and resource events are registered");
+		}
+	}
+
+	/**
+	 * Remove a resource that is done, i.e., that expired or was dropped off.
+	 * @param resource the resource to remove
+	 */
+	void unregister(ResourceEvent resource) {
+		resources.remove(resource);
+	}
+
+	/**
+	 * @param id an event id
+	 * @return the agent event with the given id; null if there is none
+	 */
+	AgentEvent agent(long id) {
+		return (AgentEvent) agents.get(id);
+	}
+
+	/**
+	 * @param id an event id
+	 * @return the resource event with the given id; null if there is none
+	 */
+	ResourceEvent resource(long id) {
+		return (ResourceEvent) resources.get(id);
+	}
+
+	/**
+	 * @return the length of the array of resources, which the resources in flight occupy; for testing
+	 */
+	int resourceCapacity() {
+		return resources.events.length;
+	}
+
+	/**
+	 * Events of one kind in an array indexed by id - base.
+	 */
+	private static final class Table {
+
+		private Event[] events = new Event[INITIAL_CAPACITY];
+
+		// The id of events[0]; -1 while the table is empty.
+		private long base = -1;
+
+		// The number of events in the table.
+		private int size;
+
+		Event get(long id) {
+			long index = id - base;
+			return base >= 0 && index >= 0 && index < events.length ? events[(int) index] : null;
+		}
+
+		void put(Event event) {
+			if (size == 0) {
+				base = event.id;
+			}
+			if (event.id < base) {
+				// an id below the range; make room in front
+				rebase(event.id, Math.max(events.length, checkedLength(base + events.length - event.id)));
+			} else if (event.id - base >= events.length) {
+				// an id beyond the range; drop the empty front of the range and grow if that is not enough
+				long first = firstId();
+				long needed = event.id - first + 1;
+				rebase(first, needed <= events.length / 2 ? events.length
+						: Math.max(2 * events.length, checkedLength(needed)));
+			}
+			int index = (int) (event.id - base);
+			if (events[index] == null) {
+				size++;
+			}
+			events[index] = event;
+		}
+
+		void remove(Event event) {
+			long index = event.id - base;
+			if (base >= 0 && index >= 0 && index < events.length && events[(int) index] == event) {
+				events[(int) index] = null;
+				size--;
+			}
+		}
+
+		// the lowest id in the table; base if the table is empty
+		private long firstId() {
+			for (int i = 0; i < events.length; i++) {
+				if (events[i] != null) {
+					return base + i;
+				}
+			}
+			return base;
+		}
+
+		// move the events into an array of a given length whose first element has the given id
+		private void rebase(long newBase, int length) {
+			Event[] moved = new Event[length];
+			long shift = base - newBase;
+			for (int i = 0; i < events.length; i++) {
+				if (events[i] != null) {
+					moved[(int) (i + shift)] = events[i];
+				}
+			}
+			events = moved;
+			base = newBase;
+		}
+
+		private static int checkedLength(long length) {
+			if (length >= Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Event ids span more than an array can index");
+			}
+			return (int) length;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package COMSETsystem;
+
+/**
+ * The queue of pending events of the simulator. Events are polled in the order of Event.compareTo(), i.e., by
+ * time, agent events before resource events at the same time, and then by id, regardless of the implementation.
+ * An event can be in at most one scheduler at a time and its time must not change while it is scheduled.
+ *
+ * See EventQueue for a binary heap and CalendarQueue for a bucketed calendar queue.
+ */
+public interface EventScheduler extends Iterable<Event> {
+
+	boolean isEmpty();
+
+	int size();
+
+	/**
+	 * @param event an event
+	 * @return whether the event is in this scheduler
+	 */
+	boolean contains(Event event);
+
+	/**
+	 * Insert an event that is not in any scheduler.
+	 * @param event the event to insert
+	 */
+	void add(Event event);
+
+	/**
+	 * @return the earliest event without removing it; null if the scheduler is empty
+	 */
+	Event peek();
+
+	/**
+	 * Remove the earliest event.
+	 * @return the removed event; null if the scheduler is empty
+	 */
+	Event poll();
+
+	/**
+	 * Remove an event from the scheduler.
+	 * @param event the event to remove
+	 * @return true if the event was in the scheduler
+	 */
+	boolean remove(Event event);
+}
@@ -0,0 +1,76 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A PathTable held in two primitive arrays on the Java heap. Limited to maps of at most
+ * sqrt(MAX_ENTRIES), i.e., about 46,000 intersections; use MappedPathTable for larger maps.
+ */
+final class HeapPathTable extends PathTable {
+
+	// The largest number of entries a Java array can hold.
+	static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+	final double[] travelTimes;
+
+	final int[] successors;
+
+	/**
+	 * Create a table in which no destination is reachable from any source.
+	 * @param size the number of intersections of the map
+	 */
+	HeapPathTable(int size) {
+		this(size, new double[entries(size)], new int[entries(size)]);
+		Arrays.fill(travelTimes, Double.MAX_VALUE);
+		Arrays.fill(successors, NO_SUCCESSOR);
+	}
+
+	/**
+	 * Create a table on top of existing matrices, e.g., matrices read from a PathTableCache.
+	 * @param size the number of intersections of the map
+	 * @param travelTimes the travel time matrix of size * size entries
+	 * @param successors the successor matrix of size * size entries, destination-major
+	 */
+	HeapPathTable(int size, double[] travelTimes, int[] successors) {
+		super(size);
+		if (travelTimes.length != entries(size) || successors.length != entries(size)) {
+			throw new IllegalArgumentException("A path table of " + size + " intersections must have "
+					+ entries(size) + " entries");
+		}
+		this.travelTimes = travelTimes;
+		this.successors = successors;
+	}
+
+	/**
+	 * @param size the number of intersections of the map
+	 * @return the number of entries of a table of the given size
+	 */
+	static int entries(int size) {
+		long entries = (long) size * size;
+		if (entries > MAX_ENTRIES) {
+			throw new IllegalArgumentException("A path table of " + size + " intersections has " + entries
+					+ " entries which exceeds the maximum of " + MAX_ENTRIES + "; use the mapped path table backend");
+		}
+		return (int) entries;
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		return travelTimes[source * size + destination];
+	}
+
+	@Override
+	int successor(int source, int destination) {
+		return successors[destination * size + source];
+	}
+
+	@Override
+	void setTravelTimes(int source, double[] rowTravelTimes) {
+		System.arraycopy(rowTravelTimes, 0, travelTimes, source * size, size);
+	}
+
+	@Override
+	void setSuccessors(int destination, int[] columnSuccessors) {
+		System.arraycopy(columnSuccessors, 0, successors, destination * size, size);
+	}
+}
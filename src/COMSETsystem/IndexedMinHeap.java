@@ -0,0 +1,170 @@
+package COMSETsystem;
+
+import java.util.NoSuchElementException;
+
+/**
+ * An array-based binary min-heap of integer items in the range [0, capacity), each with a double key.
+ * An item's position in the heap is tracked so that its key can be decreased in O(log n), which makes
+ * the heap suitable for Dijkstra-like searches in which items are the pathTableIndex of intersections.
+ * Ties on the key are resolved in favor of the smaller item.
+ *
+ * The heap does not allocate after construction. clear() only touches the items that are still in the
+ * heap, so one heap can be reused for many searches.
+ */
+public class IndexedMinHeap {
+
+	// position of an item in the heap array; -1 if the item is not in the heap
+	private final int[] position;
+
+	// the key of every item; only meaningful for items that are in the heap
+	private final double[] keys;
+
+	// the heap array of items
+	private final int[] heap;
+
+	private int size;
+
+	/**
+	 * Create an empty heap.
+	 * @param capacity the number of distinct items, i.e., items are in the range [0, capacity)
+	 */
+	public IndexedMinHeap(int capacity) {
+		position = new int[capacity];
+		keys = new double[capacity];
+		heap = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			position[i] = -1;
+		}
+		size = 0;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int item) {
+		return position[item] >= 0;
+	}
+
+	/**
+	 * @param item an item in the heap
+	 * @return the key of the item
+	 */
+	public double key(int item) {
+		assert contains(item) : "item not in heap";
+		return keys[item];
+	}
+
+	/**
+	 * Insert an item that is not in the heap.
+	 * @param item the item to insert
+	 * @param key the key of the item
+	 */
+	public void insert(int item, double key) {
+		assert !contains(item) : "item already in heap";
+		keys[item] = key;
+		heap[size] = item;
+		position[item] = size;
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Decrease the key of an item that is in the heap.
+	 * @param item the item to update
+	 * @param key the new key which must not be larger than the current key
+	 */
+	public void decreaseKey(int item, double key) {
+		assert contains(item) : "item not in heap";
+		assert key <= keys[item] : "key increased";
+		keys[item] = key;
+		siftUp(position[item]);
+	}
+
+	/**
+	 * Insert an item or, if it is already in the heap, decrease its key.
+	 * @param item the item
+	 * @param key the key of the item
+	 */
+	public void insertOrDecreaseKey(int item, double key) {
+		if (contains(item)) {
+			decreaseKey(item, key);
+		} else {
+			insert(item, key);
+		}
+	}
+
+	/**
+	 * @return the item with the smallest key without removing it
+	 */
+	public int peek() {
+		if (size == 0) throw new NoSuchElementException();
+		return heap[0];
+	}
+
+	/**
+	 * Remove the item with the smallest key.
+	 * @return the removed item
+	 */
+	public int poll() {
+		if (size == 0) throw new NoSuchElementException();
+		int min = heap[0];
+		size--;
+		if (size > 0) {
+			moveTo(heap[size], 0);
+			siftDown(0);
+		}
+		position[min] = -1;
+		return min;
+	}
+
+	/**
+	 * Remove all items from the heap.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private boolean less(int item1, int item2) {
+		return keys[item1] < keys[item2] || (keys[item1] == keys[item2] && item1 < item2);
+	}
+
+	private void moveTo(int item, int index) {
+		heap[index] = item;
+		position[item] = index;
+	}
+
+	private void siftUp(int index) {
+		int item = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!less(item, heap[parent])) break;
+			moveTo(heap[parent], index);
+			index = parent;
+		}
+		moveTo(item, index);
+	}
+
+	private void siftDown(int index) {
+		int item = heap[index];
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < size && less(heap[right], heap[child])) {
+				child = right;
+			}
+			if (!less(heap[child], item)) break;
+			moveTo(heap[child], index);
+			index = child;
+		}
+		moveTo(item, index);
+	}
+}
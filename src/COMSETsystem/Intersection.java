@@ -19,10 +19,10 @@ public class Intersection implements Comparable<Intersection> {
 	final public long id;
 	
 	// the index used to look up the shortest travel time path table (pathTable) in CityMap
-	public int pathTableIndex; 
+	private int pathTableIndex; 
 	
 	// the vertex at which the intersection is located
-	public Vertex vertex; 
+	final public Vertex vertex; 
 
 	// The roads that end at this intersection, i.e., the roads for which this intersection is
 	// the downstream intersection, also called incoming roads.
@@ -47,14 +47,29 @@ public class Intersection implements Comparable<Intersection> {
 	/**
 	 * Constructing from an existing intersection
 	 * @param anIntersection
+	 * @param vertex the vertex at which the copy is located
 	 */
-	public Intersection(Intersection anIntersection) {
+	public Intersection(Intersection anIntersection, Vertex vertex) {
 		this.longitude = anIntersection.longitude;
 		this.latitude = anIntersection.latitude;
 		this.id = anIntersection.id;
 		this.xy = new Point2D.Double(anIntersection.xy.getX(), anIntersection.xy.getY());
 		this.pathTableIndex = anIntersection.pathTableIndex;
-		this.vertex = null;
+		this.vertex = vertex;
+	}
+
+	/**
+	 * @return the index used to look up the path table in CityMap
+	 */
+	public int getPathTableIndex() {
+		return pathTableIndex;
+	}
+
+	/**
+	 * Set the index used to look up the path table; called by CityMap when the map is created.
+	 */
+	void setPathTableIndex(int pathTableIndex) {
+		this.pathTableIndex = pathTableIndex;
 	}
 
 	/**
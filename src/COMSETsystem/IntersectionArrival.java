@@ -0,0 +1,19 @@
+package COMSETsystem;
+
+/**
+ * This class describes an agent that reached an intersection for BatchFleetManager.onReachIntersections(). It holds
+ * the same information that onReachIntersection or onReachIntersectionWithResource receives for the agent.
+ */
+public class IntersectionArrival {
+    public final long agentId;
+    // The location of the agent, i.e., the end of the road it traveled.
+    public final LocationOnRoad currentLoc;
+    // The resource the agent has picked up and carries to its drop off location; null if it carries none.
+    public final Resource resource;
+
+    public IntersectionArrival(long agentId, LocationOnRoad currentLoc, Resource resource) {
+        this.agentId = agentId;
+        this.currentLoc = currentLoc;
+        this.resource = resource;
+    }
+}
@@ -0,0 +1,67 @@
+package COMSETsystem;
+
+/**
+ * A reusable shortest path that is consumed one intersection at a time, like a queue. The path is stored as
+ * the pathTableIndex of its intersections in an int array which is filled by
+ * CityMap.shortestTravelTimePath(Intersection, Intersection, IntersectionPath) and only grows when a longer path
+ * is filled in, so that planning a route allocates neither list nodes nor boxed indices. The intersections are
+ * looked up in the map's array of intersections by pathTableIndex as they are consumed.
+ */
+public class IntersectionPath {
+
+	// the intersections of the map that filled the path, indexed by pathTableIndex
+	private Intersection[] intersections;
+
+	// the pathTableIndex of every intersection of the path in order
+	int[] indices = new int[16];
+
+	// the number of intersections of the path
+	private int length;
+
+	// the index into indices of the next intersection
+	private int position;
+
+	/**
+	 * Start over with a path that was written into indices.
+	 * @param intersections the intersections of the map, indexed by pathTableIndex
+	 * @param length the number of intersections of the path
+	 */
+	void reset(Intersection[] intersections, int length) {
+		this.intersections = intersections;
+		this.length = length;
+		this.position = 0;
+	}
+
+	/**
+	 * @return the number of intersections that have not been consumed yet
+	 */
+	public int size() {
+		return length - position;
+	}
+
+	public boolean isEmpty() {
+		return position == length;
+	}
+
+	/**
+	 * @return the next intersection without consuming it; null if the path is empty
+	 */
+	public Intersection peek() {
+		return position < length ? intersections[indices[position]] : null;
+	}
+
+	/**
+	 * Consume the next intersection.
+	 * @return the consumed intersection; null if the path is empty
+	 */
+	public Intersection poll() {
+		return position < length ? intersections[indices[position++]] : null;
+	}
+
+	/**
+	 * Consume all remaining intersections.
+	 */
+	public void clear() {
+		position = length;
+	}
+}
@@ -20,15 +20,17 @@ public class Link implements Comparable<Link> {
 	// a unique id
 	public final long id;
 	// reference to a Road object that contains this link
-	public Road road;
+	private Road road;
+	// the position of this link in the links of its road
+	private int index = -1;
 	// the amount of time it takes to travel from the start of the road to the start vertex of this link 
-	public double beginTime = -1;
+	private double beginTime = -1;
 
 	// min and max coordinates of the link
-	public double minX;
-	public double minY;
-	public double maxX;
-	public double maxY;
+	public final double minX;
+	public final double minY;
+	public final double maxX;
+	public final double maxY;
 	
 	// an ID counter to get a unique id
 	private static long maxId = 0;
@@ -73,6 +75,7 @@ public class Link implements Comparable<Link> {
 		this.travelTime = aLink.travelTime;
 		this.beginTime = aLink.beginTime;
 		this.road = null;
+		this.index = aLink.index;
 		minX = aLink.minX;
 		minY = aLink.minY;
 		maxX = aLink.maxX;
@@ -94,6 +97,36 @@ public class Link implements Comparable<Link> {
 			return 1;
 	}
 
+	/**
+	 * @return the road that contains this link; null before the link is added to a road
+	 */
+	public Road getRoad() {
+		return road;
+	}
+
+	/**
+	 * @return the position of this link in the links of its road
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the amount of time it takes to travel from the start of the road to the start vertex of this link
+	 */
+	public double getBeginTime() {
+		return beginTime;
+	}
+
+	/**
+	 * Place the link on a road; called by Road when the link is added to it.
+	 */
+	void setRoad(Road road, int index, double beginTime) {
+		this.road = road;
+		this.index = index;
+		this.beginTime = beginTime;
+	}
+
 	/**
 	 * Checks if the given link and this link are equal
 	 * 
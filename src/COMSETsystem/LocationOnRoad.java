@@ -2,8 +2,13 @@ package COMSETsystem;
 
 import javax.xml.stream.Location;
 
+/**
+ * A location on a road given by the distance from the start intersection. A location is immutable, so that it may
+ * be shared, e.g., between the simulator and the fleet manager, and the locations at the start and at the end of a
+ * road are shared by all users of the road.
+ */
 public class LocationOnRoad {
-    public Road road;
+    public final Road road;
     private final double distanceFromStartIntersection;
 
     public LocationOnRoad(Road road, double distanceFromStartIntersection) {
@@ -14,7 +19,7 @@ public class LocationOnRoad {
     public LocationOnRoad(LocationOnRoad locationOnRoad, double displacement) {
         this.road = locationOnRoad.road;
         this.distanceFromStartIntersection = locationOnRoad.distanceFromStartIntersection+ displacement;
-        assert 0 <= this.distanceFromStartIntersection && this.distanceFromStartIntersection <= road.length;
+        assert 0 <= this.distanceFromStartIntersection && this.distanceFromStartIntersection <= road.getLength();
     }
 
     public boolean upstreamTo(LocationOnRoad destination) {
@@ -27,22 +32,31 @@ public class LocationOnRoad {
         return displacement;
     }
 
+    public double getDistanceFromStartIntersection() {
+        return distanceFromStartIntersection;
+    }
+
+    // the link containing this location, found by a binary search over the link offsets of the road
+    public Link getLink() {
+        return road.linkAt(distanceFromStartIntersection);
+    }
+
     public long getStaticTravelTimeOnRoad() {
-        return Math.round(distanceFromStartIntersection/road.speed);
+        return Math.round(distanceFromStartIntersection/road.getSpeed());
     }
 
     public boolean atEndIntersection() {
-        return this.distanceFromStartIntersection == this.road.length;
+        return this.distanceFromStartIntersection == this.road.getLength();
     }
 
-    // create location at the end of a road
+    // location at the end of a road; shared, not newly created
     public static LocationOnRoad createFromRoadEnd(Road road) {
-        return new LocationOnRoad(road, road.length);
+        return road.endLocation();
     }
 
-    // create location at the start of a road
+    // location at the start of a road; shared, not newly created
     public static LocationOnRoad createFromRoadStart(Road road) {
-        return new LocationOnRoad(road, 0);
+        return road.startLocation();
     }
 
     public static LocationOnRoad copyWithReplacedRoad(Road road, LocationOnRoad locationOnRoad) {
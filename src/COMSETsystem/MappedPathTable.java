@@ -0,0 +1,135 @@
+package COMSETsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A PathTable that lives off-heap in a memory-mapped file, so that the table of a map too large for the Java
+ * heap is paged in and out by the operating system. The matrices are laid out as in a PathTableCache file:
+ * the travel time matrix followed by the successor matrix, starting at a given offset of the file.
+ *
+ * A single MappedByteBuffer cannot exceed 2GB, so each matrix is mapped as a number of segments of whole rows,
+ * where a row of the successor matrix holds the successors toward one destination (see PathTable). Lookups
+ * only use absolute reads, which do not change the state of a buffer, so they are safe to use from multiple
+ * threads.
+ */
+final class MappedPathTable extends PathTable {
+
+	// The largest size of a mapped segment.
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	// The file the table is mapped from.
+	final Path file;
+
+	private final int rowsPerSegment;
+
+	private final MappedByteBuffer[] travelTimeSegments;
+
+	private final MappedByteBuffer[] successorSegments;
+
+	/**
+	 * Map a table from a file.
+	 * @param file the file
+	 * @param channel an open channel of the file; may be closed once the table is created
+	 * @param mode READ_ONLY for an existing table or READ_WRITE for a table to be computed
+	 * @param size the number of intersections of the map
+	 * @param offset the position of the travel time matrix in the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	MappedPathTable(Path file, FileChannel channel, FileChannel.MapMode mode, int size, long offset)
+			throws IOException {
+		this(file, channel, mode, size, offset, MAX_SEGMENT_BYTES);
+	}
+
+	/**
+	 * Map a table from a file in segments of at most a given size, e.g., small segments for testing.
+	 * @param segmentBytes the largest size of a segment; a segment holds at least one row
+	 */
+	MappedPathTable(Path file, FileChannel channel, FileChannel.MapMode mode, int size, long offset,
+			long segmentBytes) throws IOException {
+		super(size);
+		if (segmentBytes <= 0 || segmentBytes > MAX_SEGMENT_BYTES) {
+			throw new IllegalArgumentException("The segment size must be positive and at most " + MAX_SEGMENT_BYTES);
+		}
+		this.file = file;
+		rowsPerSegment = (int) Math.max(1, Math.min(size, segmentBytes / Math.max(1L, (long) size * Double.BYTES)));
+		int segments = size == 0 ? 0 : (size - 1) / rowsPerSegment + 1;
+		travelTimeSegments = new MappedByteBuffer[segments];
+		successorSegments = new MappedByteBuffer[segments];
+		long successorOffset = offset + (long) size * size * Double.BYTES;
+		for (int segment = 0; segment < segments; segment++) {
+			long firstRow = (long) segment * rowsPerSegment;
+			long rows = Math.min(rowsPerSegment, size - firstRow);
+			travelTimeSegments[segment] = map(channel, mode,
+					offset + firstRow * size * Double.BYTES, rows * size * Double.BYTES);
+			successorSegments[segment] = map(channel, mode,
+					successorOffset + firstRow * size * Integer.BYTES, rows * size * Integer.BYTES);
+		}
+	}
+
+	/**
+	 * Create a table to be computed in a temporary file which is deleted when the JVM exits.
+	 * @param size the number of intersections of the map
+	 * @return the table
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	static MappedPathTable createTemporary(int size) throws IOException {
+		Path file = Files.createTempFile("pathtable-", ".bin");
+		file.toFile().deleteOnExit();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return new MappedPathTable(file, channel, FileChannel.MapMode.READ_WRITE, size, 0);
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length)
+			throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, position, length);
+		buffer.order(PathTableCache.BYTE_ORDER);
+		return buffer;
+	}
+
+	@Override
+	public double travelTime(int source, int destination) {
+		int offset = ((source % rowsPerSegment) * size + destination) * Double.BYTES;
+		return travelTimeSegments[source / rowsPerSegment].getDouble(offset);
+	}
+
+	@Override
+	int successor(int source, int destination) {
+		int offset = ((destination % rowsPerSegment) * size + source) * Integer.BYTES;
+		return successorSegments[destination / rowsPerSegment].getInt(offset);
+	}
+
+	@Override
+	void setTravelTimes(int source, double[] travelTimes) {
+		// work on a duplicate so that concurrent writers of other rows do not share a buffer position
+		ByteBuffer segment = travelTimeSegments[source / rowsPerSegment].duplicate().order(PathTableCache.BYTE_ORDER);
+		segment.position((source % rowsPerSegment) * size * Double.BYTES);
+		segment.asDoubleBuffer().put(travelTimes, 0, size);
+	}
+
+	@Override
+	void setSuccessors(int destination, int[] successors) {
+		// the successors toward a destination are a row of the destination-major successor matrix
+		ByteBuffer segment = successorSegments[destination / rowsPerSegment].duplicate().order(PathTableCache.BYTE_ORDER);
+		segment.position((destination % rowsPerSegment) * size * Integer.BYTES);
+		segment.asIntBuffer().put(successors, 0, size);
+	}
+
+	/**
+	 * Write all changes of the table to the file.
+	 */
+	void force() {
+		for (MappedByteBuffer segment : travelTimeSegments) {
+			segment.force();
+		}
+		for (MappedByteBuffer segment : successorSegments) {
+			segment.force();
+		}
+	}
+}
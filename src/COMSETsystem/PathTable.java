@@ -0,0 +1,91 @@
+package COMSETsystem;
+
+/**
+ * The PathTable stores the all-pair shortest travel times of a map together with the successor of every source
+ * on the shortest path to every destination, i.e., the next hop from the source toward the destination. Instead
+ * of one object per (source, destination) pair, the table is made of two matrices indexed by the pathTableIndex
+ * of the intersections: the travel time for (source, destination) is at position source * size + destination,
+ * and the successor at position destination * size + source.
+ *
+ * The travel times of a source are computed by a Dijkstra search from the source. The successors toward a
+ * destination are computed by a Dijkstra search from the destination over the reversed roads, so that they form
+ * one tree of shortest paths into the destination: following next hops from any intersection stays on that
+ * tree, never loops, even over roads of zero travel time, and visits the same intersections as the path from
+ * any intersection it passes. This makes the next hop toward a destination a single lookup, so that a route
+ * can be followed one intersection at a time without materializing it, and the successors toward a
+ * destination are contiguous, so that a path is read from one column of the matrix.
+ *
+ * See HeapPathTable and MappedPathTable for the two ways of storing the matrices.
+ */
+abstract class PathTable implements RoutingEngine {
+
+	// Successor value of a destination that cannot be reached from the source.
+	static final int NO_SUCCESSOR = -1;
+
+	// The number of intersections, i.e., the number of rows and the number of columns of the table.
+	final int size;
+
+	PathTable(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @return the shortest travel time in seconds; Double.MAX_VALUE if the destination cannot be reached
+	 */
+	@Override
+	public abstract double travelTime(int source, int destination);
+
+	/**
+	 * Follow the successors from the source to the destination, i.e., the tree of shortest paths into the
+	 * destination.
+	 */
+	@Override
+	public int path(int source, int destination, int[] path) {
+		int length = 0;
+		int current = source;
+		while (true) {
+			if (length < path.length) {
+				path[length] = current;
+			}
+			length++;
+			if (current == destination) {
+				return length;
+			}
+			if (length > size) {
+				throw new IllegalStateException("The successors from " + source + " toward " + destination
+						+ " form a cycle");
+			}
+			current = successor(current, destination);
+			if (current == NO_SUCCESSOR) {
+				return -1;
+			}
+		}
+	}
+
+	@Override
+	public int nextHop(int source, int destination) {
+		return successor(source, destination);
+	}
+
+	/**
+	 * @return the path table index of the intersection following the source on the shortest path; the source
+	 * itself if it is the destination; NO_SUCCESSOR if the destination cannot be reached
+	 */
+	abstract int successor(int source, int destination);
+
+	/**
+	 * Store the shortest travel times from one source. Different sources may be stored concurrently by
+	 * different threads.
+	 * @param source the path table index of the source
+	 * @param travelTimes the travel time to every destination
+	 */
+	abstract void setTravelTimes(int source, double[] travelTimes);
+
+	/**
+	 * Store the successors toward one destination. Different destinations may be stored concurrently by
+	 * different threads.
+	 * @param destination the path table index of the destination
+	 * @param successors the successor of every source toward the destination
+	 */
+	abstract void setSuccessors(int destination, int[] successors);
+}
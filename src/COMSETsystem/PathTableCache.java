@@ -0,0 +1,308 @@
+package COMSETsystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * An on-disk cache of path tables. A path table depends only on the map, so a table computed once can be reused
+ * by every later run on the same map regardless of the fleet manager. Each table is stored in its own file named
+ * after a SHA-256 key over the map JSON file, the bounding polygon KML file, the time resolution and the travel
+ * time of every road of the created map. The last item captures the speed settings of the map creation, so a
+ * change of the speed limits or of the map creation code results in a new key rather than a stale table.
+ *
+ * The file is a fixed header followed by the travel time matrix and the successor matrix in the layout of
+ * PathTable, source-major and destination-major respectively, all in little-endian byte order:
+ *
+ *   int magic, int version, int size, int reserved, byte[32] key,
+ *   double[size * size] travel times, int[size * size] successors
+ *
+ * The same file serves both path table backends: it is either read onto the heap into a HeapPathTable, or
+ * mapped directly as a MappedPathTable. Files are written to a temporary file which is then moved into place,
+ * so that concurrent runs never see a partially written table.
+ */
+final class PathTableCache {
+
+	static final int MAGIC = 0x434D5054; // "CMPT"
+
+	// Bump the version whenever the file format or the path table semantics change.
+	static final int VERSION = 3;
+
+	static final int KEY_LENGTH = 32;
+
+	static final int HEADER_LENGTH = 4 * Integer.BYTES + KEY_LENGTH;
+
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	// The largest region mapped at once; a multiple of Double.BYTES and Integer.BYTES.
+	private static final int MAX_MAPPED_BYTES = 1 << 30;
+
+	private final Path file;
+
+	private final byte[] key;
+
+	/**
+	 * @param directory the cache directory, which must exist
+	 * @param key the key of the table; see forMap()
+	 */
+	PathTableCache(Path directory, byte[] key) {
+		if (key.length != KEY_LENGTH) {
+			throw new IllegalArgumentException("A path table cache key has " + KEY_LENGTH + " bytes");
+		}
+		this.key = key;
+		this.file = directory.resolve("pathtable-" + toHex(key) + ".bin");
+	}
+
+	/**
+	 * Create the cache entry for a map.
+	 * @param directory the cache directory; created if it does not exist
+	 * @param mapJSONFile the OSM JSON file the map was created from
+	 * @param boundingPolygonKMLFile the KML file the map was cropped with
+	 * @param map the created map
+	 * @return the cache entry of the map
+	 * @throws IOException if the directory cannot be created or the input files cannot be read
+	 */
+	static PathTableCache forMap(String directory, String mapJSONFile, String boundingPolygonKMLFile, CityMap map)
+			throws IOException {
+		Path dir = Paths.get(directory);
+		Files.createDirectories(dir);
+
+		MessageDigest digest = sha256();
+		update(digest, VERSION);
+		updateWithFile(digest, Paths.get(mapJSONFile));
+		updateWithFile(digest, Paths.get(boundingPolygonKMLFile));
+		update(digest, Configuration.timeResolution);
+		for (Intersection intersection : map.intersectionsByPathTableIndex()) {
+			update(digest, intersection.id);
+			update(digest, intersection.roadsMapFrom.size());
+			for (Road road : intersection.roadsMapFrom.values()) {
+				update(digest, road.to.id);
+				update(digest, Double.doubleToLongBits(road.getTravelTime()));
+			}
+		}
+		return new PathTableCache(dir, digest.digest());
+	}
+
+	Path file() {
+		return file;
+	}
+
+	/**
+	 * Read the cached table onto the heap.
+	 * @param size the number of intersections of the map
+	 * @return the cached table, or null if there is no valid table in the cache
+	 */
+	HeapPathTable load(int size) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (!isValid(channel, size)) {
+				return null;
+			}
+			int entries = HeapPathTable.entries(size);
+			double[] travelTimes = new double[entries];
+			int[] successors = new int[entries];
+			long position = HEADER_LENGTH;
+			for (int offset = 0; offset < entries; ) {
+				int count = Math.min(entries - offset, MAX_MAPPED_BYTES / Double.BYTES);
+				map(channel, position, (long) count * Double.BYTES).asDoubleBuffer().get(travelTimes, offset, count);
+				position += (long) count * Double.BYTES;
+				offset += count;
+			}
+			for (int offset = 0; offset < entries; ) {
+				int count = Math.min(entries - offset, MAX_MAPPED_BYTES / Integer.BYTES);
+				map(channel, position, (long) count * Integer.BYTES).asIntBuffer().get(successors, offset, count);
+				position += (long) count * Integer.BYTES;
+				offset += count;
+			}
+			return new HeapPathTable(size, travelTimes, successors);
+		} catch (IOException e) {
+			System.out.println("Failed to read path table cache " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Map the cached table without reading it onto the heap.
+	 * @param size the number of intersections of the map
+	 * @return the cached table, or null if there is no valid table in the cache
+	 */
+	MappedPathTable map(int size) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (!isValid(channel, size)) {
+				return null;
+			}
+			return new MappedPathTable(file, channel, FileChannel.MapMode.READ_ONLY, size, HEADER_LENGTH);
+		} catch (IOException e) {
+			System.out.println("Failed to map path table cache " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Create a mapped table to be computed in a temporary file of the cache directory. Call commit() once
+	 * the table is computed to move it into place.
+	 * @param size the number of intersections of the map
+	 * @return the table
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	MappedPathTable create(int size) throws IOException {
+		Path temporary = Files.createTempFile(file.getParent(), "pathtable-", ".tmp");
+		temporary.toFile().deleteOnExit();
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(BYTE_ORDER);
+			header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0).put(key);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			return new MappedPathTable(temporary, channel, FileChannel.MapMode.READ_WRITE, size, HEADER_LENGTH);
+		}
+	}
+
+	/**
+	 * Move a table computed in a file created by create() into place. Failures are reported but otherwise
+	 * ignored since the table remains usable.
+	 * @param table the computed table
+	 */
+	void commit(MappedPathTable table) {
+		table.force();
+		try {
+			move(table.file);
+		} catch (IOException e) {
+			System.out.println("Failed to write path table cache " + file + ": " + e.getMessage());
+		}
+	}
+
+	private boolean isValid(FileChannel channel, int size) throws IOException {
+		long expectedLength = HEADER_LENGTH + (long) size * size * (Double.BYTES + Integer.BYTES);
+		if (channel.size() != expectedLength) {
+			System.out.println("Ignoring path table cache " + file + " of unexpected length " + channel.size());
+			return false;
+		}
+
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH).order(BYTE_ORDER);
+		byte[] fileKey = new byte[KEY_LENGTH];
+		int magic = header.getInt();
+		int version = header.getInt();
+		int fileSize = header.getInt();
+		header.getInt();
+		header.get(fileKey);
+		if (magic != MAGIC || version != VERSION || fileSize != size || !Arrays.equals(fileKey, key)) {
+			System.out.println("Ignoring path table cache " + file + " with a mismatching header");
+			return false;
+		}
+		return true;
+	}
+
+	private void move(Path temporary) throws IOException {
+		try {
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Write a table to the cache. Failures are reported but otherwise ignored since the cache is only an
+	 * optimization.
+	 * @param table the table to write
+	 */
+	void store(HeapPathTable table) {
+		Path temporary = null;
+		try {
+			temporary = Files.createTempFile(file.getParent(), "pathtable-", ".tmp");
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(BYTE_ORDER);
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(table.size).putInt(0).put(key);
+				for (double travelTime : table.travelTimes) {
+					if (buffer.remaining() < Double.BYTES) {
+						drain(buffer, channel);
+					}
+					buffer.putDouble(travelTime);
+				}
+				for (int successor : table.successors) {
+					if (buffer.remaining() < Integer.BYTES) {
+						drain(buffer, channel);
+					}
+					buffer.putInt(successor);
+				}
+				drain(buffer, channel);
+				channel.force(false);
+			}
+			move(temporary);
+		} catch (IOException e) {
+			System.out.println("Failed to write path table cache " + file + ": " + e.getMessage());
+			if (temporary != null) {
+				try {
+					Files.deleteIfExists(temporary);
+				} catch (IOException ignored) {
+					// nothing else to do
+				}
+			}
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		buffer.order(BYTE_ORDER);
+		return buffer;
+	}
+
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			digest.update((byte) (value >>> shift));
+		}
+	}
+
+	private static void updateWithFile(MessageDigest digest, Path path) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(path)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+}
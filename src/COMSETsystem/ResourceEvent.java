@@ -1,7 +1,8 @@
 package COMSETsystem;
 
 import java.util.logging.Level;
-import java.util.logging.Logger;
+
+import DataParsing.ResourceStream;
 import COMSETsystem.FleetManager.ResourceState;
 
 /**
@@ -37,6 +38,9 @@ public class ResourceEvent extends Event {
 
 	AgentEvent agentEvent = null;
 
+	// The copy last handed to the fleet manager.
+	private Resource copy;
+
 	State state;
 
 	// The shortest travel time from pickupLoc to dropoffLoc
@@ -64,6 +68,27 @@ public class ResourceEvent extends Event {
 		this.state = State.AVAILABLE;
 	}
 
+	/**
+	 * Constructor for a streamed resource whose id is reserved by Event.reserveIds().
+	 *
+	 * @param id the reserved id
+	 * @param resource the streamed resource
+	 * @param simulator the simulator object.
+	 * @param fleetManager the fleet manager object.
+	 * @param resourceMaximumLifeTime time interval that resource waits and expires after that.
+	 */
+	ResourceEvent(long id, ResourceStream.StreamedResource resource, Simulator simulator, FleetManager fleetManager,
+				  long resourceMaximumLifeTime) {
+		super(id, resource.time, simulator, fleetManager);
+		this.pickupLoc = resource.pickupLoc;
+		this.dropoffLoc = resource.dropoffLoc;
+		this.availableTime = resource.time;
+		this.expirationTime = availableTime + resourceMaximumLifeTime;
+		this.staticTripTime = resource.staticTripTime;
+		this.pickupTime = -1;
+		this.state = State.AVAILABLE;
+	}
+
 	/**
 	 * Constructor for ResourceEvent that overrides tripTime. Makes it easier to test.
 	 *
@@ -98,9 +123,7 @@ public class ResourceEvent extends Event {
 	 */
 	@Override
 	Event trigger() throws UnsupportedOperationException {
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** ResourceEvent id = "+ id +
-				" triggered at time " + getTime(), this);
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Loc = " + this.pickupLoc + "," + this.dropoffLoc, this);
+		logTrigger();
 
 		if (pickupLoc == null) {
 			System.out.println("intersection is null");
@@ -121,8 +144,21 @@ public class ResourceEvent extends Event {
 		this.agentEvent = event;
 	}
 
+	/**
+	 * @return a copy of the resource for the fleet manager; the previous copy if it is still accurate, i.e., neither
+	 * the assignment nor the fleet manager changed since
+	 */
 	Resource copyResource() {
-		return new Resource(id, expirationTime, agentEvent == null ? -1 : agentEvent.id, simulator.agentCopy(pickupLoc), simulator.agentCopy(dropoffLoc));
+		long assignedAgentId = agentEvent == null ? -1 : agentEvent.id;
+		LocationOnRoad pickupCopy = simulator.agentCopy(pickupLoc);
+		LocationOnRoad dropoffCopy = simulator.agentCopy(dropoffLoc);
+		Resource resource = copy;
+		if (resource == null || resource.assignedAgentId != assignedAgentId || resource.pickupLoc != pickupCopy
+				|| resource.dropOffLoc != dropoffCopy) {
+			resource = new Resource(id, expirationTime, assignedAgentId, pickupCopy, dropoffCopy);
+			copy = resource;
+		}
+		return resource;
 	}
 
 	void pickup(AgentEvent agentEvent, long pickupTime) {
@@ -137,12 +173,46 @@ public class ResourceEvent extends Event {
 	void dropOff(long dropOffTime) {
 		long staticTripTime = simulator.map.travelTimeBetween(pickupLoc, dropoffLoc);
 		simulator.score.recordCompletedTrip(dropOffTime, pickupTime, staticTripTime);
+		simulator.retire(this);
+	}
+
+	void logTrigger() {
+		if (SimulationTrace.RESOURCE_EVENTS.isLoggable(Level.INFO)) {
+			SimulationTrace.logTrigger(SimulationTrace.RESOURCE_EVENTS, "ResourceEvent", this,
+					this.pickupLoc + "," + this.dropoffLoc);
+		}
+	}
+
+	/**
+	 * @return whether triggering the event makes the resource available
+	 */
+	boolean isBecomingAvailable() {
+		return state == State.AVAILABLE;
 	}
 
 	private void available() throws UnsupportedOperationException {
+		Resource resource = beginAvailable();
+		AgentAction action = fleetManager.onResourceAvailabilityChange(resource, ResourceState.AVAILABLE, simulator.agentCopy(pickupLoc), getTime());
+		completeAvailable(action);
+	}
+
+	/**
+	 * The part of available() before the fleet manager is notified.
+	 * @return the copy of the resource to pass to the fleet manager
+	 */
+	Resource beginAvailable() {
 		++simulator.score.totalResources;
+		if (simulator.trace != null) {
+			simulator.trace.resourceAvailable(getTime(), id, pickupLoc.road.id);
+		}
+		return copyResource();
+	}
 
-		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), ResourceState.AVAILABLE, simulator.agentCopy(pickupLoc), getTime());
+	/**
+	 * The part of available() after the fleet manager is notified: carry out its action and schedule the expiration.
+	 * @param action the action returned by the fleet manager; null to do nothing
+	 */
+	void completeAvailable(AgentAction action) throws UnsupportedOperationException {
 		processAgentAction(action);
 		setTime(expirationTime);
 		state = State.EXPIRED;
@@ -152,6 +222,9 @@ public class ResourceEvent extends Event {
 		// Expiration can only happen if the resource has not been picked up.
 		assert !isPickedup() : "Resource expiring after having been picked up";
 
+		if (simulator.trace != null) {
+			simulator.trace.resourceExpired(getTime(), id, agentEvent == null ? -1 : agentEvent.id);
+		}
 		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), ResourceState.EXPIRED,
 				simulator.agentCopy(pickupLoc), getTime());
 		processAgentAction(action);
@@ -162,8 +235,9 @@ public class ResourceEvent extends Event {
 		}
 
 		simulator.score.recordExpiration();
+		simulator.retire(this);
 
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Expired.", this);
+		SimulationTrace.RESOURCE_EVENTS.logp(Level.INFO, getClass().getName(), "expire", "Expired.", this);
 	}
 
 	private void processAgentAction(AgentAction agentAction) throws UnsupportedOperationException {
@@ -171,8 +245,8 @@ public class ResourceEvent extends Event {
 			return;
 		}
 
-		AgentEvent agentEvent = simulator.agentMap.get(agentAction.agentId);
-		ResourceEvent resourceEvent = simulator.resMap.get(agentAction.resId);
+		AgentEvent agentEvent = simulator.registry.agent(agentAction.agentId);
+		ResourceEvent resourceEvent = simulator.registry.resource(agentAction.resId);
 
 		if (agentEvent != null && resourceEvent != null && !agentEvent.hasResPickup()) {
 			agentEvent.assignTo(resourceEvent, getTime());
@@ -1,6 +1,9 @@
 package COMSETsystem;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /*
  * The Road class defines a directed road segment between two intersections.
@@ -10,32 +13,51 @@ import java.util.ArrayList;
 public class Road implements Comparable<Road> {
 
 	// The start (upstream) intersection of the road
-	public Intersection from;
+	public final Intersection from;
 	// The end (downstream) intersection of the road
-	public Intersection to;
+	public final Intersection to;
 	// length of the road segment in meters
-	public double length;
+	private double length;
 	// travel time of the road segment in seconds
-	public double travelTime;
+	private double travelTime;
 	// average speed in m/s
-	public double speed;
+	private double speed;
 	// a unique id
 	public final long id;
 
 	// an ID counter to get a unique id
 	private static long maxId = 0;
 	
-	// links that constitute the road
-	public final ArrayList<Link> links;
+	// links that constitute the road, read-only; see addLink()
+	public final List<Link> links;
+	private final ArrayList<Link> linkList;
+
+	// whether the road belongs to a frozen map and must not change any more; see CityMap.freeze()
+	private boolean frozen;
+
+	// linkOffsets[i] is the distance from the start intersection to the start vertex of link i, and
+	// linkOffsets[links.size()] is the length of the road; the array may be longer than that
+	private double[] linkOffsets;
+
+	// the locations at the start and at the end of the road, created on first use and again when the length
+	// changed; a race between threads creates equal locations
+	private LocationOnRoad startLocation;
+	private LocationOnRoad endLocation;
 
     /**
      * Constructing an "empty" road object.
+     * @param from the start intersection
+     * @param to the end intersection
      */
-	public Road() {
+	public Road(Intersection from, Intersection to) {
 		this.id = maxId++;
+		this.from = from;
+		this.to = to;
 		this.length = 0;
 		this.travelTime = 0;
-		links = new ArrayList<>();
+		linkList = new ArrayList<>();
+		links = Collections.unmodifiableList(linkList);
+		linkOffsets = new double[4];
 	}
 	
 	/**
@@ -43,7 +65,7 @@ public class Road implements Comparable<Road> {
 	 * @param road the road to copy
 	 * @param from the start intersection
 	 * @param to the end intersection
-	 * @param links a list of links
+	 * @param links a list of links, which become the links of the copy
 	 */
 	public Road(Road road, Intersection from, Intersection to, ArrayList<Link> links) {
 		this.id = road.id;
@@ -52,7 +74,14 @@ public class Road implements Comparable<Road> {
 		this.speed = road.speed;
 		this.from = from;
 		this.to= to;
-		this.links = links;
+		this.linkList = links;
+		this.links = Collections.unmodifiableList(links);
+		linkOffsets = new double[links.size() + 1];
+		for (int i = 0; i < links.size(); i++) {
+			Link link = links.get(i);
+			link.setRoad(this, i, link.getBeginTime());
+			linkOffsets[i + 1] = linkOffsets[i] + link.length;
+		}
 	}
 	
 	/**
@@ -60,20 +89,120 @@ public class Road implements Comparable<Road> {
 	 * multiple links. This code assume links are added in order, otherwise the beginTime
 	 * for the link will not be correct.
 	 *
+	 * @throws UnsupportedOperationException if the road belongs to a frozen map
 	 */
 	public void addLink(Link link) {
-		links.add(link);
-		link.road = this;
-		link.beginTime = this.travelTime;
+		checkNotFrozen();
+		int index = linkList.size();
+		linkList.add(link);
+		if (linkList.size() == linkOffsets.length) {
+			linkOffsets = Arrays.copyOf(linkOffsets, 2 * linkOffsets.length);
+		}
+		linkOffsets[linkList.size()] = linkOffsets[index] + link.length;
+		link.setRoad(this, index, this.travelTime);
 		this.length += link.length;
 		this.travelTime += link.travelTime;
 	}
 
+	/**
+	 * @return the length of the road in meters
+	 */
+	public double getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the travel time of the road in seconds
+	 */
+	public double getTravelTime() {
+		return travelTime;
+	}
+
+	/**
+	 * @return the average speed on the road in m/s; see setSpeed()
+	 */
+	public double getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * @param link a link of the road
+	 * @return the distance from the start intersection of the road to the start vertex of the link
+	 */
+	public double linkOffset(Link link) {
+		assert link.getRoad() == this && links.get(link.getIndex()) == link : "the link must be on the road";
+		return linkOffsets[link.getIndex()];
+	}
+
+	/**
+	 * Find the link at a location on the road by a binary search over the link offsets. A location at the end
+	 * vertex of a link is on the next link, except at the end of the road.
+	 *
+	 * @param distanceFromStartIntersection the distance of the location from the start intersection
+	 * @return the link containing the location
+	 */
+	public Link linkAt(double distanceFromStartIntersection) {
+		// the last link whose offset is at most the distance
+		int low = 0;
+		int high = links.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (linkOffsets[middle] <= distanceFromStartIntersection) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return links.get(low);
+	}
+
+	/**
+	 * @return the location at the start of the road
+	 */
+	LocationOnRoad startLocation() {
+		LocationOnRoad location = startLocation;
+		if (location == null) {
+			location = new LocationOnRoad(this, 0);
+			startLocation = location;
+		}
+		return location;
+	}
+
+	/**
+	 * @return the location at the end of the road
+	 */
+	LocationOnRoad endLocation() {
+		LocationOnRoad location = endLocation;
+		if (location == null || !location.atEndIntersection()) {
+			location = new LocationOnRoad(this, length);
+			endLocation = location;
+		}
+		return location;
+	}
+
+	/**
+	 * Compute the average speed from the length and the travel time once all links are added.
+	 * @throws UnsupportedOperationException if the road belongs to a frozen map
+	 */
 	public void setSpeed() {
+		checkNotFrozen();
 		// compute the average speed
 		this.speed = this.length / this.travelTime;
 	}
 
+	/**
+	 * Reject any further change to the road; called by CityMap.freeze().
+	 */
+	void freeze() {
+		frozen = true;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new UnsupportedOperationException("road " + id + " belongs to a frozen map");
+		}
+	}
+
 	/**
 	 * checks whether this is the same road as some specified road
 	 * 
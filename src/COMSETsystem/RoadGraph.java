@@ -0,0 +1,74 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A compact adjacency representation of the road network used by shortest path computations: the roads
+ * leaving the intersection with pathTableIndex i are at positions firstRoad[i] (inclusive) to firstRoad[i + 1]
+ * (exclusive) of roadTo and roadTravelTime. In a reversed graph, see reversed(), every road leads from its end to
+ * its start intersection.
+ */
+final class RoadGraph {
+	// the number of intersections
+	final int size;
+
+	final int[] firstRoad;
+
+	// the pathTableIndex of the end intersection of every road
+	final int[] roadTo;
+
+	final double[] roadTravelTime;
+
+	/**
+	 * @param intersectionsByIndex all intersections ordered by pathTableIndex
+	 */
+	RoadGraph(Intersection[] intersectionsByIndex) {
+		size = intersectionsByIndex.length;
+		firstRoad = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			firstRoad[i + 1] = firstRoad[i] + intersectionsByIndex[i].roadsMapFrom.size();
+		}
+		roadTo = new int[firstRoad[size]];
+		roadTravelTime = new double[firstRoad[size]];
+		for (int i = 0; i < size; i++) {
+			int r = firstRoad[i];
+			for (Road road : intersectionsByIndex[i].roadsMapFrom.values()) {
+				roadTo[r] = road.to.getPathTableIndex();
+				roadTravelTime[r] = road.getTravelTime();
+				r++;
+			}
+		}
+	}
+
+	private RoadGraph(int size, int[] firstRoad, int[] roadTo, double[] roadTravelTime) {
+		this.size = size;
+		this.firstRoad = firstRoad;
+		this.roadTo = roadTo;
+		this.roadTravelTime = roadTravelTime;
+	}
+
+	/**
+	 * @return the graph with every road reversed; the reversed roads leaving an intersection are in the order of
+	 * the pathTableIndex of their original start intersection
+	 */
+	RoadGraph reversed() {
+		int[] reversedFirst = new int[size + 1];
+		for (int r = 0; r < roadTo.length; r++) {
+			reversedFirst[roadTo[r] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			reversedFirst[i + 1] += reversedFirst[i];
+		}
+		int[] reversedTo = new int[roadTo.length];
+		double[] reversedTravelTime = new double[roadTo.length];
+		int[] next = Arrays.copyOf(reversedFirst, size);
+		for (int i = 0; i < size; i++) {
+			for (int r = firstRoad[i]; r < firstRoad[i + 1]; r++) {
+				int position = next[roadTo[r]]++;
+				reversedTo[position] = i;
+				reversedTravelTime[position] = roadTravelTime[r];
+			}
+		}
+		return new RoadGraph(size, reversedFirst, reversedTo, reversedTravelTime);
+	}
+}
@@ -0,0 +1,37 @@
+package COMSETsystem;
+
+/**
+ * Answers shortest travel time queries between intersections, which are identified by their pathTableIndex.
+ * Implementations must be safe to query from multiple threads.
+ *
+ * See PathTable for pre-computed all-pair answers and ContractionHierarchy for answers computed on demand.
+ */
+interface RoutingEngine {
+
+	/**
+	 * @param source the pathTableIndex of the source intersection
+	 * @param destination the pathTableIndex of the destination intersection
+	 * @return the shortest travel time; Double.MAX_VALUE if the destination cannot be reached
+	 */
+	double travelTime(int source, int destination);
+
+	/**
+	 * Write the pathTableIndex of every intersection of the shortest path in order, starting with the source
+	 * and ending with the destination, into a caller-supplied array so that no array is allocated per query.
+	 * @param source the pathTableIndex of the source intersection
+	 * @param destination the pathTableIndex of the destination intersection
+	 * @param path the array to write the path into
+	 * @return the number of intersections of the path; -1 if the destination cannot be reached. If the path is
+	 * longer than the array, the contents of the array are undefined and the query is to be repeated with an
+	 * array of at least the returned length.
+	 */
+	int path(int source, int destination, int[] path);
+
+	/**
+	 * @param source the pathTableIndex of the source intersection
+	 * @param destination the pathTableIndex of the destination intersection
+	 * @return the pathTableIndex of the intersection following the source on the shortest path; the source
+	 * itself if it is the destination; -1 if the destination cannot be reached
+	 */
+	int nextHop(int source, int destination);
+}
@@ -2,6 +2,7 @@ package COMSETsystem;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 
 /**
  * This class is used to give a performance report and the score. It prints
@@ -52,13 +53,22 @@ class ScoreInfo {
     // Total cruise time of all agents. The cruise time of an agent for a research is the amount of time
     // since the agent is labeled as empty until it is assigned to a resource.
     private long totalAgentCruiseTime = 0;
+    protected long getTotalAgentCruiseTime() {
+        return totalAgentCruiseTime;
+    }
 
     // Total approach time of all agents. The approach time of an agent for a research is the amount of time
     // since the agent is assigned to a resource until agent reaches the resource.
     private long totalAgentApproachTime = 0;
+    protected long getTotalAgentApproachTime() {
+        return totalAgentApproachTime;
+    }
 
     // The number of expired resources.
     private long expiredResources = 0;
+    protected long getExpiredResources() {
+        return expiredResources;
+    }
     protected void recordExpiration() {
         expiredResources++;
         accumulateResourceWaitTime(configuration.resourceMaximumLifeTime);
@@ -69,12 +79,21 @@ class ScoreInfo {
 
     // The number of assignments that have been made, and dropped off
     private long totalAssignments = 0;
+    protected long getTotalAssignments() {
+        return totalAssignments;
+    }
 
     // The number of times agents begin searching, i.e. they are just cruising around before picking up a resource.
     private long totalSearches = 0;
+    protected long getTotalSearches() {
+        return totalSearches;
+    }
 
     // The number of times an agent fails to reach an assigned resource before the resource expires
     private long totalAbortions = 0;
+    protected long getTotalAbortions() {
+        return totalAbortions;
+    }
     protected void recordAbortion() {
         totalAbortions++;
     }
@@ -171,14 +190,15 @@ class ScoreInfo {
             // FIXME: Move this loop into the simulator and just add the time to totalAgentSearchTime and increment
             //   totalSearches.  This will allow us to make emptyAgents private.
             long totalRemainTime = 0;
-            for (AgentEvent ae : simulator.emptyAgents) {
-                totalRemainTime += (simulator.simulationEndTime - ae.startSearchTime);
+            BitSet emptyAgents = simulator.emptyAgents;
+            for (int id = emptyAgents.nextSetBit(0); id >= 0; id = emptyAgents.nextSetBit(id + 1)) {
+                totalRemainTime += (simulator.simulationEndTime - simulator.registry.agent(id).startSearchTime);
             }
 
             sb.append("average agent search time: ")
                     .append(Math.floorDiv(
                             configuration.toSeconds(totalAgentSearchTime + totalRemainTime),
-                            (totalAssignments + simulator.emptyAgents.size())))
+                            (totalAssignments + emptyAgents.cardinality())))
                     .append(" seconds \n");
             sb.append("average resource wait time: ")
                     .append(Math.floorDiv(configuration.toSeconds(totalResourceWaitTime),
@@ -0,0 +1,183 @@
+package COMSETsystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracing of the simulation events. It consists of two parts:
+ *
+ * 1. The loggers of the events, looked up once, and logging methods that format a message only if INFO messages
+ * are logged. Since Main turns logging off unless comset.logging is set, the events then pay one level check. The
+ * records name the event and its method as their source, as if the event had logged them itself.
+ *
+ * 2. An optional binary trace of what happens to agents and resources, written to comset.trace_file. The simulator
+ * holds a SimulationTrace only if the file is set, so that without it an event pays one null check. The file is a
+ * fixed header followed by fixed-size records in the order of the simulation, all in little-endian byte order:
+ *
+ *   long magic, int version, int reserved, long timeResolution,
+ *   records of byte kind, long time, long first, long second, long third
+ *
+ * where the kind is the ordinal of Kind, the time is in simulation time units, and first, second and third are
+ * described with each kind. Records are collected in a buffer and written when it is full, so that writing a
+ * record allocates nothing.
+ */
+public final class SimulationTrace implements Closeable {
+
+	static final long MAGIC = 0x52545445534D4F43L; // "COMSETTR"
+
+	static final int VERSION = 1;
+
+	static final int RECORD_SIZE = 1 + 4 * Long.BYTES;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// The loggers of the events.
+	static final Logger AGENT_EVENTS = Logger.getLogger(AgentEvent.class.getName());
+	static final Logger RESOURCE_EVENTS = Logger.getLogger(ResourceEvent.class.getName());
+
+	public enum Kind {
+		// An agent leaves an intersection: agent id, id of the road it takes, time at which it reaches the
+		// next location on the road.
+		MOVE,
+		// A resource is assigned to an agent: agent id, resource id, unused.
+		ASSIGN,
+		// An agent picks up a resource: agent id, resource id, unused.
+		PICKUP,
+		// An agent drops off a resource: agent id, resource id, unused.
+		DROPOFF,
+		// A resource becomes available: resource id, id of the road of its pickup location, unused.
+		AVAILABLE,
+		// A resource expires: resource id, id of the agent assigned to it or -1, unused.
+		EXPIRE
+	}
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	private SimulationTrace(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Create a trace file, replacing an existing one, and write its header.
+	 * @param file the path of the trace file
+	 * @return the trace
+	 * @throws IOException if the file cannot be created
+	 */
+	public static SimulationTrace open(String file) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		SimulationTrace trace = new SimulationTrace(channel);
+		trace.buffer.putLong(MAGIC).putInt(VERSION).putInt(0).putLong(Configuration.timeResolution);
+		return trace;
+	}
+
+	void agentMoved(long time, long agentId, long roadId, long arrivalTime) {
+		record(Kind.MOVE, time, agentId, roadId, arrivalTime);
+	}
+
+	void resourceAssigned(long time, long agentId, long resourceId) {
+		record(Kind.ASSIGN, time, agentId, resourceId, 0);
+	}
+
+	void resourcePickedUp(long time, long agentId, long resourceId) {
+		record(Kind.PICKUP, time, agentId, resourceId, 0);
+	}
+
+	void resourceDroppedOff(long time, long agentId, long resourceId) {
+		record(Kind.DROPOFF, time, agentId, resourceId, 0);
+	}
+
+	void resourceAvailable(long time, long resourceId, long roadId) {
+		record(Kind.AVAILABLE, time, resourceId, roadId, 0);
+	}
+
+	void resourceExpired(long time, long resourceId, long agentId) {
+		record(Kind.EXPIRE, time, resourceId, agentId, 0);
+	}
+
+	private void record(Kind kind, long time, long first, long second, long third) {
+		if (buffer.remaining() < RECORD_SIZE) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to write the simulation trace", e);
+			}
+		}
+		buffer.put((byte) kind.ordinal()).putLong(time).putLong(first).putLong(second).putLong(third);
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Write the buffered records and close the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Log that an event is triggered, if INFO messages are logged. The record names the class of the event and its
+	 * trigger method as its source, rather than this class, which the logger would infer.
+	 * @param logger the logger of the event
+	 * @param name the name of the kind of event
+	 * @param event the triggered event
+	 * @param location the location of the event
+	 */
+	static void logTrigger(Logger logger, String name, Event event, Object location) {
+		if (logger.isLoggable(Level.INFO)) {
+			String sourceClass = event.getClass().getName();
+			logger.logp(Level.INFO, sourceClass, "trigger", "******** " + name + " id = " + event.id
+					+ " triggered at time " + event.getTime(), event);
+			logger.logp(Level.INFO, sourceClass, "trigger", "Loc = " + location, event);
+		}
+	}
+
+	/**
+	 * Log a message followed by a value, if INFO messages are logged.
+	 * @param logger the logger of the event
+	 * @param event the event
+	 * @param sourceMethod the name of the method of the event that logs the message
+	 * @param message the beginning of the message
+	 * @param value the value that completes the message
+	 */
+	static void log(Logger logger, Event event, String sourceMethod, String message, Object value) {
+		if (logger.isLoggable(Level.INFO)) {
+			logger.logp(Level.INFO, event.getClass().getName(), sourceMethod, message + value, event);
+		}
+	}
+
+	/**
+	 * Log a message followed by a number, if INFO messages are logged.
+	 * @param logger the logger of the event
+	 * @param event the event
+	 * @param sourceMethod the name of the method of the event that logs the message
+	 * @param message the beginning of the message
+	 * @param value the number that completes the message
+	 */
+	static void log(Logger logger, Event event, String sourceMethod, String message, long value) {
+		if (logger.isLoggable(Level.INFO)) {
+			logger.logp(Level.INFO, event.getClass().getName(), sourceMethod, message + value, event);
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package COMSETsystem;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
-
-import org.checkerframework.checker.nullness.qual.NonNull;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import me.tongfei.progressbar.*;
 
@@ -15,7 +18,7 @@ import DataParsing.*;
  * The Simulator class defines the major steps of the simulation. It is
  * responsible for loading the map, creating the necessary number of agents,
  * creating a respective AgentEvent for each of them such that they are added
- * to the events PriorityQueue. Furthermore it is also responsible for dealing 
+ * to the events EventScheduler. Furthermore it is also responsible for dealing 
  * with the arrival of resources, map matching them to the map, and assigning  
  * them to agents. This produces the score according to the scoring rules.
  * <p>
@@ -23,7 +26,7 @@ import DataParsing.*;
  * corresponds to when something will be empty and thus needs some
  * interaction (triggering). There's an event corresponding to every existent
  * Agent and for every resource that hasn't arrived yet. All of this events are
- * in a PriorityQueue called events which is ordered by their time in an
+ * in an EventScheduler called events which is ordered by their time in an
  * increasing way.
  */
 public class Simulator {
@@ -34,18 +37,18 @@ public class Simulator {
 	// The map that everything will happen on.
 	protected CityMap map;
 
-	// A deep copy of map to be passed to agents. 
-	// This is a way to make map unmodifiable.
+	// The map passed to agents; the same object as map, whose structure is made read-only
+	// so that agents cannot modify it.
 	public CityMap mapForAgents;
 
 	// The event queue.
-	private PriorityQueue<Event> events = new PriorityQueue<>();
+	private EventScheduler events = new EventQueue();
 
-	// The set of empty agents.
-	protected TreeSet<AgentEvent> emptyAgents = new TreeSet<>(new AgentEventComparator());
+	// The set of empty agents, by agent id.
+	protected BitSet emptyAgents = new BitSet();
 
-	// The set of agents serving resources
-	protected TreeSet<AgentEvent> servingAgents = new TreeSet<>(new AgentEventComparator());
+	// The set of agents serving resources, by agent id.
+	protected BitSet servingAgents = new BitSet();
 
 	// The beginning time of the simulation
 	protected long simulationStartTime;
@@ -58,17 +61,35 @@ public class Simulator {
 
 	protected ScoreInfo score;
 
+	// The number of threads that compute the moves of agents reaching intersections at the same time.
+	private int navigationThreads = 1;
+
+	// The smallest number of moves whose travel times are computed by a thread of their own.
+	static final int MIN_NAVIGATION_CHUNK = 64;
+
 	// A list of all the agents in the system. Not really used in COMSET, but maintained for
 	// a user's debugging purposes.
 	ArrayList<BaseAgent> agents;
 
 	protected FleetManager fleetManager;
 
+	// The binary trace of the running simulation; null if no trace is written.
+	SimulationTrace trace;
+
+	// The fleet manager if it decides for groups of simultaneous events; null otherwise.
+	private BatchFleetManager batchFleetManager;
+
 	// Traffic pattern
 	protected TrafficPattern trafficPattern;
 
-	public final Map<Long, AgentEvent> agentMap = new HashMap<>();
-	public final Map<Long, ResourceEvent> resMap = new HashMap<>();
+	// The agent and resource events by id.
+	final EventRegistry registry = new EventRegistry();
+
+	// The resources that are yet to be added to the event queue if they are streamed; null otherwise.
+	private ResourceStream resourceStream;
+
+	// The id of the streamed resource that comes first in the dataset; the ids of the streamed resources follow it.
+	private long firstStreamedResourceId;
 
 
 	/**
@@ -101,24 +122,39 @@ public class Simulator {
 		map = configuration.map;
 
 
-		// Make a map copy for agents to use so that an agent cannot modify the map used by
-		// the simulator
-		mapForAgents = map.makeCopy();
+		// Share the map with the agents rather than copying it; freezing it makes sure that an agent
+		// cannot modify the structure of the map used by the simulator
+		map.freeze();
+		mapForAgents = map;
 
-		MapWithData mapWD = new MapWithData(map, configuration.resourceFile, configuration.agentPlacementRandomSeed);
+		MapWithData mapWD = new MapWithData(map, configuration.resourceFile, configuration.agentPlacementRandomSeed,
+				createEventScheduler(configuration));
 
 		// map match resources
 		System.out.println("Loading and map-matching resources...");
 
 		fleetManager = createFleetManager(configuration);
+		if (fleetManager instanceof BatchFleetManager) {
+			batchFleetManager = (BatchFleetManager) fleetManager;
+		}
 
 		// The simulation end time is the expiration time of the last resource.
 		// which is return by createMapWithData
-		this.simulationEndTime = mapWD.createMapWithData(configuration, this, fleetManager);
+		if (configuration.streamResources) {
+			this.simulationEndTime = mapWD.spoolMapWithData(configuration, this);
+		} else {
+			this.simulationEndTime = mapWD.createMapWithData(configuration, this, fleetManager);
+		}
 		trafficPattern = mapWD.getTrafficPattern(configuration.trafficPatternEpoch, configuration.trafficPatternStep,
 				configuration.dynamicTrafficEnabled);
 		fleetManager.setTrafficPattern(trafficPattern);
 
+		if (configuration.streamResources) {
+			// reserve the ids that the resources would get if they were loaded, before the agents get theirs
+			resourceStream = mapWD.streamResources();
+			firstStreamedResourceId = Event.reserveIds(resourceStream.size());
+		}
+
 		// Deploy agents at random locations of the map.
 		System.out.println("Randomly placing " + configuration.numberOfAgents + " agents on the map...");
 		mapWD.placeAgentsRandomly(this, fleetManager, configuration.numberOfAgents);
@@ -145,12 +181,24 @@ public class Simulator {
 			System.out.println("map is null at beginning of run");
 		}
 
+		if (configuration.traceFile != null) {
+			try {
+				trace = SimulationTrace.open(configuration.traceFile);
+			} catch (IOException e) {
+				System.out.println("Simulation trace disabled: " + e.getMessage());
+			}
+		}
+
+		navigationThreads = configuration.navigationThreads > 0
+				? configuration.navigationThreads : Runtime.getRuntime().availableProcessors();
+		ExecutorService navigationPool = navigationThreads > 1 ? Executors.newFixedThreadPool(navigationThreads) : null;
+
 		try (ProgressBar pb = new ProgressBar("Progress:", 100, ProgressBarStyle.ASCII)) {
 			assert events.peek() != null;
 			simulationStartTime = simulationTime = events.peek().getTime();
 			long totalSimulationTime = simulationEndTime - simulationStartTime;
 
-			while (!events.isEmpty()) {
+			while (injectResources()) {
 				assert events.peek() != null;
 				long nextTime = events.peek().getTime();
 				assert (nextTime >= simulationTime);
@@ -164,15 +212,41 @@ public class Simulator {
 				assert toTrigger != null;
 				pb.stepTo((long)(((float)(toTrigger.getTime() - simulationStartTime))
 						/ totalSimulationTime * 100.0));
-				if (simulationTime <= simulationEndTime || servingAgents.size() > 0) {
-					Event e = toTrigger.trigger();
-					if (e != null) {
-						addEvent(e);
+				if (simulationTime <= simulationEndTime || !servingAgents.isEmpty()) {
+					if ((navigationPool != null || batchFleetManager != null) && isNavigatingAt(toTrigger, simulationTime)) {
+						eventCount += triggerNavigationBatch((AgentEvent) toTrigger, navigationPool) - 1;
+					} else if (batchFleetManager != null && isBecomingAvailableAt(toTrigger, simulationTime)) {
+						eventCount += triggerAvailabilityBatch((ResourceEvent) toTrigger) - 1;
+					} else {
+						Event e = toTrigger.trigger();
+						if (e != null) {
+							addEvent(e);
+						}
 					}
 				}
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			if (navigationPool != null) {
+				navigationPool.shutdownNow();
+			}
+			if (resourceStream != null) {
+				try {
+					resourceStream.close();
+				} catch (IOException e) {
+					System.out.println("Failed to delete the resource spool: " + e.getMessage());
+				}
+				resourceStream = null;
+			}
+			if (trace != null) {
+				try {
+					trace.close();
+				} catch (IOException e) {
+					System.out.println("Failed to write the simulation trace: " + e.getMessage());
+				}
+				trace = null;
+			}
 		}
 
 		System.out.println("Simulation finished.");
@@ -180,6 +254,167 @@ public class Simulator {
 		score.end();
 	}
 
+	/**
+	 * Add the streamed resources that become available no later than the earliest event in the queue, so that
+	 * the queue holds the next event to trigger as if all resources had been added at once. The resources that
+	 * become available at the same time are added together, so that batches see all of them.
+	 *
+	 * @return whether there are events left to trigger
+	 */
+	private boolean injectResources() {
+		if (resourceStream != null) {
+			while (resourceStream.hasNext()
+					&& (events.isEmpty() || resourceStream.peekTime() <= events.peek().getTime())) {
+				ResourceStream.StreamedResource next = resourceStream.next();
+				ResourceEvent resource = new ResourceEvent(firstStreamedResourceId + next.index, next, this,
+						fleetManager, configuration.resourceMaximumLifeTime);
+				registry.register(resource);
+				events.add(resource);
+			}
+		}
+		return !events.isEmpty();
+	}
+
+	/**
+	 * Forget a resource that is done, i.e., that expired or was dropped off, if resources are streamed, so that
+	 * the memory of the simulation is bounded by the resources in flight.
+	 *
+	 * @param resource the resource that is done
+	 */
+	void retire(ResourceEvent resource) {
+		if (resourceStream != null) {
+			registry.unregister(resource);
+		}
+	}
+
+	/**
+	 * Trigger the event of an agent that reached an intersection together with the directly following events of
+	 * agents that reach an intersection at the same time, and compute the travel times of their moves on a pool
+	 * of threads. The events are completed and rescheduled in the order of the event queue.
+	 *
+	 * If the fleet manager is a BatchFleetManager, it is called once for the whole batch, which then includes the
+	 * agents after a move that might take no time; see BatchFleetManager for how this differs from triggering the
+	 * events one after another. Otherwise it is called for one agent after another in queue order, and the batch
+	 * ends at a move that might take no time, since its event could be due again before the events after it. Thus
+	 * the simulation proceeds exactly as if the events were triggered one after another.
+	 *
+	 * @param first the polled event of an agent that reached an intersection
+	 * @param pool the threads that compute the travel times; null to compute them on this thread
+	 * @return the number of triggered events
+	 * @throws Exception if the fleet manager does not return a valid move
+	 */
+	private int triggerNavigationBatch(AgentEvent first, ExecutorService pool) throws Exception {
+		List<AgentEvent> batch = new ArrayList<>();
+		AgentEvent event = first;
+		if (batchFleetManager == null) {
+			while (true) {
+				event.logTrigger();
+				event.planNavigation();
+				batch.add(event);
+				if (!event.plannedMoveTakesTime() || !isNavigatingAt(events.peek(), simulationTime)) {
+					break;
+				}
+				event = (AgentEvent) events.poll();
+			}
+		} else {
+			List<AgentEvent> asking = new ArrayList<>();
+			List<IntersectionArrival> arrivals = new ArrayList<>();
+			while (true) {
+				event.logTrigger();
+				if (!event.planArrivalAtResourceRoad()) {
+					asking.add(event);
+					arrivals.add(event.intersectionArrival());
+				}
+				batch.add(event);
+				if (!isNavigatingAt(events.peek(), simulationTime)) {
+					break;
+				}
+				event = (AgentEvent) events.poll();
+			}
+			if (!arrivals.isEmpty()) {
+				List<Intersection> nextIntersections = batchFleetManager.onReachIntersections(simulationTime, arrivals);
+				if (nextIntersections == null || nextIntersections.size() != arrivals.size()) {
+					throw new Exception("FleetManager did not return a next location for every agent");
+				}
+				for (int i = 0; i < asking.size(); i++) {
+					asking.get(i).planMove(nextIntersections.get(i));
+				}
+			}
+		}
+
+		int chunks = pool == null ? 1 : Math.min(navigationThreads, batch.size() / MIN_NAVIGATION_CHUNK);
+		if (chunks <= 1) {
+			for (AgentEvent e : batch) {
+				e.computeNavigationTravelTime();
+			}
+		} else {
+			List<Future<?>> futures = new ArrayList<>(chunks);
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				List<AgentEvent> part = batch.subList(batch.size() * chunk / chunks, batch.size() * (chunk + 1) / chunks);
+				futures.add(pool.submit(() -> {
+					for (AgentEvent e : part) {
+						e.computeNavigationTravelTime();
+					}
+				}));
+			}
+			try {
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to compute travel times", e.getCause());
+			}
+		}
+
+		for (AgentEvent e : batch) {
+			e.completeNavigation();
+			addEvent(e);
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Trigger the event of a resource that becomes available together with the directly following events of
+	 * resources that become available at the same time, with a single call of the BatchFleetManager. The actions
+	 * it returns are carried out in the order of the event queue.
+	 *
+	 * @param first the polled event of a resource that becomes available
+	 * @return the number of triggered events
+	 * @throws Exception if the fleet manager does not return an action for every resource
+	 */
+	private int triggerAvailabilityBatch(ResourceEvent first) throws Exception {
+		List<ResourceEvent> batch = new ArrayList<>();
+		List<Resource> resources = new ArrayList<>();
+		ResourceEvent event = first;
+		while (true) {
+			event.logTrigger();
+			resources.add(event.beginAvailable());
+			batch.add(event);
+			if (!isBecomingAvailableAt(events.peek(), simulationTime)) {
+				break;
+			}
+			event = (ResourceEvent) events.poll();
+		}
+
+		List<AgentAction> actions = batchFleetManager.onResourcesAvailable(simulationTime, resources);
+		if (actions == null || actions.size() != batch.size()) {
+			throw new Exception("FleetManager did not return an action for every resource");
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			batch.get(i).completeAvailable(actions.get(i));
+			addEvent(batch.get(i));
+		}
+		return batch.size();
+	}
+
+	private static boolean isNavigatingAt(Event event, long time) {
+		return event instanceof AgentEvent && event.getTime() == time && ((AgentEvent) event).isNavigating();
+	}
+
+	private static boolean isBecomingAvailableAt(Event event, long time) {
+		return event instanceof ResourceEvent && event.getTime() == time && ((ResourceEvent) event).isBecomingAvailable();
+	}
+
 	protected static class PickUp {
 		private final ResourceEvent resource;
 		private final long time;
@@ -199,25 +434,6 @@ public class Simulator {
 
 	}
 
-	/**
-	 * Compares agent events
-	 */
-	static class AgentEventComparator implements Comparator<AgentEvent> {
-
-		/**
-		 * Checks if two agentEvents are the same by checking their ids.
-		 * 
-		 * @param a1 The first agent event
-		 * @param a2 The second agent event
-		 * @return returns 0 if the two agent events are the same, 1 if the id of
-		 * the first agent event is bigger than the id of the second agent event,
-		 * -1 otherwise
-		 */
-		public int compare(AgentEvent a1, AgentEvent a2) {
-			return Long.compare(a1.id, a2.id);
-		}
-	}
-
 	/**
 	 * Compares resource events
 	 */
@@ -236,6 +452,10 @@ public class Simulator {
 		}
 	}
 
+	/**
+	 * @param event an event
+	 * @return whether the event is in the simulator's queue; O(1)
+	 */
 	public boolean hasEvent(Event event) {
 		return events.contains(event);
 	}
@@ -249,8 +469,8 @@ public class Simulator {
 	 * @param agent Add this agent to the set of empty agents
 	 */
 	public void markAgentEmpty(AgentEvent agent) {
-		servingAgents.remove(agent);
-		emptyAgents.add(agent);
+		servingAgents.clear((int) agent.id);
+		emptyAgents.set((int) agent.id);
 	}
 
 	/**
@@ -258,21 +478,29 @@ public class Simulator {
 	 *              on its way to pickup or dropoff
 	 */
 	public void markAgentServing(AgentEvent agent) {
-		emptyAgents.remove(agent);
-		servingAgents.add(agent);
+		emptyAgents.clear((int) agent.id);
+		servingAgents.set((int) agent.id);
 	}
 
 	/**
-	 * Make an agent copy of locationOnRoad so that an agent cannot modify the attributes of the road.
+	 * Make an agent copy of locationOnRoad so that an agent cannot modify the location used by the simulator.
+	 * Since a LocationOnRoad is immutable and agents share the simulator's map, the location itself is the copy.
 	 * 
 	 * @param locationOnRoad the location to make a copy for
 	 * @return an agent copy of the location 
 	 */
 	public LocationOnRoad agentCopy(LocationOnRoad locationOnRoad) {
-		Intersection from = mapForAgents.intersections().get(locationOnRoad.road.from.id);
-		Intersection to = mapForAgents.intersections().get(locationOnRoad.road.to.id);
-		Road roadAgentCopy = from.roadsMapFrom.get(to);
-		return LocationOnRoad.copyWithReplacedRoad(roadAgentCopy, locationOnRoad);
+		return locationOnRoad;
+	}
+
+	private static EventScheduler createEventScheduler(Configuration configuration) {
+		switch (configuration.eventScheduler) {
+			case CALENDAR:
+				return new CalendarQueue();
+			case HEAP:
+			default:
+				return new EventQueue();
+		}
 	}
 
 	public FleetManager createFleetManager(Configuration configuration) {
@@ -289,10 +517,8 @@ public class Simulator {
 
 	private void mappingEventId() {
 		for (Event event : events) {
-			if (event instanceof AgentEvent) {
-				agentMap.put(event.id, (AgentEvent) event);
-			} else if (event instanceof ResourceEvent) {
-				resMap.put(event.id, (ResourceEvent) event);
+			if (event instanceof AgentEvent || event instanceof ResourceEvent) {
+				registry.register(event);
 			}
 		}
 	}
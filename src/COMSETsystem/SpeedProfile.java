@@ -0,0 +1,122 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A SpeedProfile describes how a speed factor, which applies to all roads of the map alike, changes over time in
+ * steps of equal length. The speed factor of step i applies from firstStepBeginTime + i * step until the next step
+ * begins; the factor of the first step also applies to all times before it and the factor of the last step to all
+ * times after it. This is the same model as the one of TrafficPattern.
+ *
+ * Traveling for one unit of time at speed factor f covers as much of a route as traveling for f units of time at
+ * the speed limits. The profile stores this progress accumulated from the beginning of the first step to the
+ * beginning of every step, so that the time it takes to travel a route of a given static travel time, i.e., the
+ * travel time at the speed limits, is found by a binary search over the steps rather than by stepping through them.
+ *
+ * Since the speed factor is the same for all roads, the route with the shortest static travel time is also the
+ * route with the shortest travel time for every departure time.
+ */
+public class SpeedProfile {
+
+	// The begin time of the first step in simulation time units.
+	public final long firstStepBeginTime;
+
+	// The length of a step in simulation time units.
+	public final long step;
+
+	private final double[] speedFactors;
+
+	// progress[i] is the static travel time covered from firstStepBeginTime to the beginning of step i;
+	// progress[speedFactors.length] is the one covered until the end of the last step.
+	private final double[] progress;
+
+	/**
+	 * @param firstStepBeginTime the begin time of the first step in simulation time units
+	 * @param step the length of a step in simulation time units
+	 * @param speedFactors the speed factor of every step; must not be empty or negative
+	 */
+	public SpeedProfile(long firstStepBeginTime, long step, double[] speedFactors) {
+		if (speedFactors.length == 0) {
+			throw new IllegalArgumentException("A speed profile needs at least one step");
+		}
+		if (step <= 0) {
+			throw new IllegalArgumentException("The step of a speed profile must be positive");
+		}
+		for (double speedFactor : speedFactors) {
+			if (!(speedFactor >= 0)) {
+				throw new IllegalArgumentException("Speed factors must not be negative, got " + speedFactor);
+			}
+		}
+		this.firstStepBeginTime = firstStepBeginTime;
+		this.step = step;
+		this.speedFactors = speedFactors.clone();
+		progress = new double[speedFactors.length + 1];
+		for (int i = 0; i < speedFactors.length; i++) {
+			progress[i + 1] = progress[i] + speedFactors[i] * step;
+		}
+	}
+
+	/**
+	 * @param time a time in simulation time units
+	 * @return the speed factor at the given time
+	 */
+	public double getSpeedFactor(double time) {
+		return speedFactors[stepIndex(time)];
+	}
+
+	/**
+	 * Compute the time it takes to travel a route starting at a given time.
+	 * @param departureTime the departure time in simulation time units
+	 * @param staticTravelTime the travel time of the route at the speed limits in simulation time units
+	 * @return the travel time of the route when departing at the given time in simulation time units;
+	 * Double.POSITIVE_INFINITY if the route cannot be completed because traffic comes to a halt
+	 */
+	public double travelTime(double departureTime, double staticTravelTime) {
+		if (staticTravelTime == 0) {
+			return 0;
+		}
+		return timeAt(progressAt(departureTime) + staticTravelTime) - departureTime;
+	}
+
+	/**
+	 * Compute how much of a route is covered by traveling for a given time starting at a given time.
+	 * @param departureTime the departure time in simulation time units
+	 * @param travelTime the time traveled in simulation time units
+	 * @return the static travel time, i.e., the travel time at the speed limits, of the covered part of the route
+	 */
+	public double staticTravelTime(double departureTime, double travelTime) {
+		return progressAt(departureTime + travelTime) - progressAt(departureTime);
+	}
+
+	private int stepIndex(double time) {
+		if (time < firstStepBeginTime) {
+			return 0;
+		}
+		double index = (time - firstStepBeginTime) / step;
+		return index >= speedFactors.length ? speedFactors.length - 1 : (int) index;
+	}
+
+	// the static travel time covered from firstStepBeginTime to the given time; negative for earlier times
+	private double progressAt(double time) {
+		int i = stepIndex(time);
+		return progress[i] + (time - (firstStepBeginTime + (double) i * step)) * speedFactors[i];
+	}
+
+	// the inverse of progressAt(); the earliest time at which the given progress is reached
+	private double timeAt(double targetProgress) {
+		if (targetProgress < 0) {
+			return firstStepBeginTime + targetProgress / speedFactors[0];
+		}
+		int i = Arrays.binarySearch(progress, 0, speedFactors.length, targetProgress);
+		if (i >= 0) {
+			// reached exactly at the beginning of a step; steps with a speed factor of 0 cover no progress
+			while (i > 0 && progress[i - 1] == targetProgress) {
+				i--;
+			}
+			return firstStepBeginTime + (double) i * step;
+		}
+		// within the last step whose beginning lies before the progress
+		i = -i - 2;
+		return firstStepBeginTime + (double) i * step + (targetProgress - progress[i]) / speedFactors[i];
+	}
+}
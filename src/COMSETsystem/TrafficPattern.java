@@ -12,9 +12,13 @@ public class TrafficPattern {
     private long lastEpochBeginTime;
     private double firstEpochSpeedFactor;
     private double lastEpochSpeedFactor;
+    private double maxSpeedFactor;
 
     private final ArrayList<TrafficPatternItem> trafficPattern;
 
+    // The pattern as a SpeedProfile; built on first use after the last item was added.
+    private SpeedProfile speedProfile;
+
     public TrafficPattern(long step) {
         this.step = step;
         this.trafficPattern = new ArrayList<TrafficPatternItem>();
@@ -29,6 +33,31 @@ public class TrafficPattern {
         }
         lastEpochBeginTime = epochBeginTime;
         lastEpochSpeedFactor = speedFactor;
+        maxSpeedFactor = Math.max(maxSpeedFactor, speedFactor);
+        speedProfile = null;
+    }
+
+    /**
+     * @return the largest speed factor of all epochs; no dynamic travel time is shorter than the static travel
+     * time divided by it
+     */
+    double getMaxSpeedFactor() {
+        return maxSpeedFactor;
+    }
+
+    /**
+     * @return the pattern as a SpeedProfile, e.g., to compute time-dependent travel times of entire routes
+     * with CityMap.travelTimeBetween
+     */
+    public SpeedProfile getSpeedProfile() {
+        if (speedProfile == null) {
+            double[] speedFactors = new double[trafficPattern.size()];
+            for (int i = 0; i < speedFactors.length; i++) {
+                speedFactors[i] = trafficPattern.get(i).speed_factor;
+            }
+            speedProfile = new SpeedProfile(firstEpochBeginTime, step, speedFactors);
+        }
+        return speedProfile;
     }
 
     class TrafficPatternItem {
@@ -134,7 +163,7 @@ public class TrafficPattern {
     public double roadForwardTravelTime(double time, LocationOnRoad loc1, LocationOnRoad loc2) {
         assert loc1.upstreamTo(loc2) : "loc1 must be upstream to loc2";
 
-        return dynamicForwardTravelTime(time, loc1.road.speed, loc1.getDisplacementOnRoad(loc2));
+        return dynamicForwardTravelTime(time, loc1.road.getSpeed(), loc1.getDisplacementOnRoad(loc2));
     }
 
     // compute the travel distance along a link for a certain time starting at a given time
@@ -206,7 +235,7 @@ public class TrafficPattern {
 
     // The location when traveling along a road from a given location for a given amount of time (long type) starting at a given time.
     public LocationOnRoad travelRoadForTime(double time, LocationOnRoad locationOnRoad, double travelTime) {
-        double[] distanceTimePair = dynamicTravelDistance(time, locationOnRoad.road.speed, travelTime, locationOnRoad.road.length);
+        double[] distanceTimePair = dynamicTravelDistance(time, locationOnRoad.road.getSpeed(), travelTime, locationOnRoad.road.getLength());
         double traveledDistance = distanceTimePair[0];
         double traveledTime = distanceTimePair[1];
         if (traveledTime < travelTime) {
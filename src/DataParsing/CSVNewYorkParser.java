@@ -1,12 +1,22 @@
 package DataParsing;
 
-import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.function.Consumer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import MapCreation.MapCreator;
 
 /**       
@@ -22,9 +32,36 @@ import MapCreation.MapCreator;
  */
 public class CSVNewYorkParser {
 
+	// The number of bytes of the file read at a time.
+	private static final int WINDOW_SIZE = 1 << 26;
+
+	// The number of fields up to dropoff_latitude.
+	private static final int FIELDS = 11;
+
+	// The length of a timestamp in the format yyyy-MM-dd HH:mm:ss.
+	private static final int TIMESTAMP_LENGTH = 19;
+
+	private static final long SECONDS_PER_DAY = 24 * 3600;
+
+	// The largest number of digits of a number parsed without Double.parseDouble, so that the digits as an
+	// integer are less than 2^60 and the power of ten that scales them is exact as a long and as a double.
+	private static final int MAX_FAST_DIGITS = 18;
+
+	private static final long[] POWERS_OF_TEN = new long[MAX_FAST_DIGITS + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+		}
+	}
+
 	// absolute path to csv file to be parsed
 	private final String path;
 
+	// The number of bytes of the file read at a time; a line must not be longer.
+	private final int windowSize;
+
 	// list of all resources
 	private final ArrayList<Resource> resources = new ArrayList<>();
 
@@ -32,6 +69,10 @@ public class CSVNewYorkParser {
 
 	ZoneId zoneId;
 
+	// The day of the last timestamp as yyyyMMdd and the epoch of its start; see cacheDay().
+	private int cachedDay = -1;
+	private long cachedDayStart;
+
 	/**
 	 * Constructor of the CSVNewYorkParser class
 	 * @param path full path to the resource dataset file
@@ -39,7 +80,17 @@ public class CSVNewYorkParser {
 	 */
 	// resource specified in csv file located at path
 	public CSVNewYorkParser(String path, ZoneId zoneId) {
+		this(path, zoneId, WINDOW_SIZE);
+	}
+
+	/**
+	 * @param path full path to the resource dataset file
+	 * @param zoneId the time zone id of the studied area
+	 * @param windowSize the number of bytes of the file read at a time
+	 */
+	CSVNewYorkParser(String path, ZoneId zoneId, int windowSize) {
 		this.path = path;
+		this.windowSize = windowSize;
 		dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 		// TLC Trip Record data uses local time. So the zone ID is America/New_York
 		this.zoneId = zoneId;
@@ -52,7 +103,7 @@ public class CSVNewYorkParser {
 	 * converted
 	 * @return long value of the timestamp string
 	 */
-	private Long dateConversion(String timestamp) {
+	Long dateConversion(String timestamp) {
 		long l;
 		LocalDateTime ldt = LocalDateTime.parse(timestamp, dtf);
 		ZonedDateTime zdt = ZonedDateTime.of(ldt, zoneId);
@@ -66,48 +117,278 @@ public class CSVNewYorkParser {
 	 * @return ArrayList<Resource>
 	 */
 	public ArrayList<Resource> parse(long timeResolution) {
+		parse(timeResolution, resources::add);
+		return resources;
+	}
 
-		try {
-			Scanner sc = new Scanner(new File(path));   //scanner will scan the file specified by path
-			sc.useDelimiter(",|\n");    //scanner will skip over "," and "\n" found in file
-			sc.nextLine(); // skip the header
-
-			//while there are tokens in the file the scanner will scan the input
-			//each line in input file will contain 4 tokens for the scanner and will be in the format : latitude longitude time type
-			//per line of input file we will create a new TimestampAgRe object
-			// and save the 4 tokens of each line in the corresponding field of the TimestampAgRe object
-			int resource_count = 0;
-			while (sc.hasNext()) {
-				sc.next();// skip first VendorID
-				long time = dateConversion(sc.next()) * timeResolution;
-				long dropoffTime = dateConversion(sc.next()) * timeResolution;
-				sc.next();// skip these fields
-				sc.next();
-				double pickupLon = Double.parseDouble(sc.next());
-				double pickupLat = Double.parseDouble(sc.next());
-				sc.next();// skip these fields
-				sc.next();
-				double dropoffLon = Double.parseDouble(sc.next());
-				double dropoffLat = Double.parseDouble(sc.next());
-				sc.nextLine(); //skip rest of fileds in this line
-				// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
-				if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
-					continue;
+	/**
+	 * Parse the csv file and pass every resource to a consumer as soon as it is parsed, without keeping it.
+	 *
+	 * The file is read into an array a window of WINDOW_SIZE bytes at a time. The lines of a window up to its last
+	 * line break are parsed, and the rest of the window, the start of a line, is carried over to the start of the
+	 * next window. The fields are parsed in place from the bytes: a line is split at its commas,
+	 * timestamps in the format yyyy-MM-dd HH:mm:ss are converted with the epoch of their day (see epochSecond),
+	 * and coordinates of at most MAX_FAST_DIGITS digits are converted exactly as Double.parseDouble does (see
+	 * parseDouble). Fields in any other form are converted from strings like before.
+	 *
+	 * @param timeResolution the number of simulation time units per second
+	 * @param consumer the consumer of the resources in the order of the file
+	 */
+	public void parse(long timeResolution, Consumer<Resource> consumer) {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			boolean header = true;
+			int[] commas = new int[FIELDS];
+			byte[] bytes = new byte[(int) Math.min(windowSize, size)];
+			// the number of bytes at the start of the array carried over from the previous window
+			int carried = 0;
+			while (position < size) {
+				ByteBuffer window = ByteBuffer.wrap(bytes, carried, bytes.length - carried);
+				while (window.hasRemaining() && position < size) {
+					int read = channel.read(window, position);
+					if (read < 0) {
+						// the file was truncated while it was read
+						size = position;
+						break;
+					}
+					position += read;
 				}
-				if (pickupLat == dropoffLat && pickupLon == dropoffLon) {
-					continue;
+				int length = window.position();
+				int end = length;
+				if (position < size) {
+					// end the window after its last line break; the rest of the line is in the next window
+					while (end > 0 && bytes[end - 1] != '\n') {
+						end--;
+					}
+					if (end == 0) {
+						throw new IllegalStateException("A line of " + path + " is longer than " + windowSize
+								+ " bytes");
+					}
+				}
+				int lineStart = 0;
+				while (lineStart < end) {
+					int lineEnd = lineStart;
+					int fields = 0;
+					byte b;
+					while (lineEnd < end && (b = bytes[lineEnd]) != '\n') {
+						if (b == ',' && fields < FIELDS) {
+							commas[fields++] = lineEnd;
+						}
+						lineEnd++;
+					}
+					int next = lineEnd + 1;
+					if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+						lineEnd--;
+					}
+					if (header || lineEnd == lineStart) {
+						// skip the header and empty lines
+						header = false;
+						lineStart = next;
+						continue;
+					}
+					if (fields < FIELDS - 1) {
+						throw new IllegalArgumentException("A line of " + path + " has less than " + FIELDS
+								+ " fields");
+					}
+					// the end of the last field used, dropoff_latitude, is the next comma or the end of the line
+					int lastEnd = fields == FIELDS ? commas[FIELDS - 1] : lineEnd;
+
+					// the fields after VendorID; the others are skipped
+					long time = epochSecond(bytes, commas[0] + 1, commas[1]) * timeResolution;
+					long dropoffTime = epochSecond(bytes, commas[1] + 1, commas[2]) * timeResolution;
+					double pickupLon = parseDouble(bytes, commas[4] + 1, commas[5]);
+					double pickupLat = parseDouble(bytes, commas[5] + 1, commas[6]);
+					double dropoffLon = parseDouble(bytes, commas[8] + 1, commas[9]);
+					double dropoffLat = parseDouble(bytes, commas[9] + 1, lastEnd);
+					lineStart = next;
+					// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
+					if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
+						continue;
+					}
+					if (pickupLat == dropoffLat && pickupLon == dropoffLon) {
+						continue;
+					}
+					consumer.accept(new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time, dropoffTime)); //create new resource with the above fields
 				}
-				resources.add(new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time, dropoffTime)); //create new resource with the above fields
-				resource_count += 1;
-				//if (resource_count == 100)
-				//	break;
+				carried = length - end;
+				System.arraycopy(bytes, end, bytes, 0, carried);
 			}
-			sc.close();
 		} catch (Exception e) {
 
 			e.printStackTrace();
 		}
-		return resources;
 	}
 
+	/**
+	 * Convert a timestamp in the format yyyy-MM-dd HH:mm:ss into the Linux epoch like dateConversion, from the
+	 * bytes of the timestamp. The epoch of the start of the day is cached for the day of the last timestamp, so
+	 * that the timestamps of a day other than the day of a time zone transition are converted with a few
+	 * multiplications. Timestamps in another form are converted by dateConversion.
+	 *
+	 * @param bytes the bytes of the file
+	 * @param start the position of the first byte of the timestamp
+	 * @param end the position after the last byte of the timestamp
+	 * @return the number of seconds since January 1, 1970, 00:00:00 GMT
+	 */
+	long epochSecond(byte[] bytes, int start, int end) {
+		if (end - start == TIMESTAMP_LENGTH && bytes[start + 4] == '-' && bytes[start + 7] == '-'
+				&& bytes[start + 10] == ' ' && bytes[start + 13] == ':' && bytes[start + 16] == ':') {
+			int year = digits(bytes, start, 4);
+			int month = digits(bytes, start + 5, 2);
+			int day = digits(bytes, start + 8, 2);
+			int hour = digits(bytes, start + 11, 2);
+			int minute = digits(bytes, start + 14, 2);
+			int second = digits(bytes, start + 17, 2);
+			if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && hour < 24 && minute >= 0 && minute < 60
+					&& second >= 0 && second < 60) {
+				int dayKey = (year * 100 + month) * 100 + day;
+				if (dayKey != cachedDay) {
+					cacheDay(year, month, day, dayKey);
+				}
+				if (cachedDayStart != Long.MIN_VALUE) {
+					return cachedDayStart + hour * 3600 + minute * 60 + second;
+				}
+			}
+		}
+		return dateConversion(string(bytes, start, end));
+	}
+
+	/**
+	 * Cache the epoch of the start of a day in the time zone, i.e., the epoch of 00:00:00 local time, if the
+	 * offset of the time zone does not change during the day; otherwise cache Long.MIN_VALUE, so that the
+	 * timestamps of the day are converted by dateConversion. The same is done for a date that does not exist,
+	 * which dateConversion resolves or rejects.
+	 */
+	private void cacheDay(int year, int month, int day, int dayKey) {
+		cachedDay = dayKey;
+		LocalDate date;
+		try {
+			date = LocalDate.of(year, month, day);
+		} catch (DateTimeException e) {
+			cachedDayStart = Long.MIN_VALUE;
+			return;
+		}
+		ZoneRules rules = zoneId.getRules();
+		LocalDateTime startOfDay = date.atStartOfDay();
+		ZoneOffset offset = rules.getOffset(startOfDay);
+		Instant start = startOfDay.toInstant(offset);
+		ZoneOffsetTransition transition = rules.nextTransition(start);
+		boolean uniform = rules.getValidOffsets(startOfDay).size() == 1
+				&& (transition == null || !transition.getInstant().isBefore(start.plusSeconds(SECONDS_PER_DAY)));
+		cachedDayStart = uniform ? start.getEpochSecond() : Long.MIN_VALUE;
+	}
+
+	/**
+	 * Parse a decimal number from its bytes like Double.parseDouble. A number of the form [+-]digits[.digits]
+	 * with at most MAX_FAST_DIGITS digits is the quotient of the digits as an integer and a power of ten. If the
+	 * integer is less than 2^53, both are exact as doubles, and since a division is correctly rounded, their
+	 * quotient is the double nearest to the number, as Double.parseDouble returns. Otherwise, e.g., for the 17
+	 * digits of the coordinates in TLC data, the quotient is off by at most one unit in the last place and is
+	 * returned once isNearest confirms it. Numbers in another form are passed to Double.parseDouble.
+	 *
+	 * @param bytes the bytes of the file
+	 * @param start the position of the first byte of the number
+	 * @param end the position after the last byte of the number
+	 * @return the number
+	 */
+	static double parseDouble(byte[] bytes, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digitCount = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		for (; i < end; i++) {
+			byte b = bytes[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = 10 * mantissa + (b - '0');
+				digitCount++;
+				if (fraction) {
+					fractionDigits++;
+				}
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if (i < end || digitCount == 0 || digitCount > MAX_FAST_DIGITS) {
+			return Double.parseDouble(string(bytes, start, end));
+		}
+		double value = mantissa / (double) POWERS_OF_TEN[fractionDigits];
+		if (mantissa >= 1L << 53 && fractionDigits > 0 && !isNearest(value, mantissa, POWERS_OF_TEN[fractionDigits])) {
+			return Double.parseDouble(string(bytes, start, end));
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Check that a double is the double nearest to a quotient n / d, by comparing n with d times the midpoints
+	 * between the double and its neighbors in 128-bit integer arithmetic. Returns false if the comparison does not
+	 * fit or is a tie, which the caller leaves to Double.parseDouble.
+	 *
+	 * @param value a positive double
+	 * @param n a numerator less than 2^60
+	 * @param d a denominator less than 2^60
+	 * @return whether value is the double nearest to n / d
+	 */
+	private static boolean isNearest(double value, long n, long d) {
+		// value = significand * 2^-shift, and the midpoints are (2 * significand -+ 1) * 2^-(shift + 1)
+		long bits = Double.doubleToRawLongBits(value);
+		int exponent = (int) (bits >>> 52);
+		long significand = (bits & ((1L << 52) - 1)) | (1L << 52);
+		int shift = 1075 - exponent + 1;
+		if (exponent == 0 || significand == 1L << 52 || shift <= 0 || shift >= 64) {
+			// a subnormal double, a power of two whose lower neighbor is closer, or too far from 1
+			return false;
+		}
+		// n * 2^shift strictly between d times the lower and upper midpoint, both scaled by 2^shift
+		long high = n >>> (64 - shift);
+		long low = n << shift;
+		long lower = 2 * significand - 1;
+		long upper = 2 * significand + 1;
+		return compare(high, low, multiplyHigh(lower, d), lower * d) > 0
+				&& compare(high, low, multiplyHigh(upper, d), upper * d) < 0;
+	}
+
+	// the upper 64 bits of the 128-bit product of two non-negative longs
+	private static long multiplyHigh(long x, long y) {
+		long x1 = x >>> 32;
+		long x2 = x & 0xFFFFFFFFL;
+		long y1 = y >>> 32;
+		long y2 = y & 0xFFFFFFFFL;
+		long t = x1 * y2 + ((x2 * y2) >>> 32);
+		long u = x2 * y1 + (t & 0xFFFFFFFFL);
+		return x1 * y1 + (t >>> 32) + (u >>> 32);
+	}
+
+	// compare two unsigned 128-bit integers given by their upper and lower 64 bits
+	private static int compare(long high1, long low1, long high2, long low2) {
+		return high1 != high2 ? Long.compareUnsigned(high1, high2) : Long.compareUnsigned(low1, low2);
+	}
+
+	/**
+	 * @return the decimal number of a given number of digits; -1 if a byte is not a digit
+	 */
+	private static int digits(byte[] bytes, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = 10 * value + digit;
+		}
+		return value;
+	}
+
+	private static String string(byte[] bytes, int start, int end) {
+		return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+	}
 }
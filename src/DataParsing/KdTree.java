@@ -2,6 +2,9 @@ package DataParsing;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import COMSETsystem.*;
 
@@ -10,6 +13,12 @@ import COMSETsystem.*;
  * 2D line segments (i.e., links) instead of 2D points. 
  * @author Bo <boxu08@gmail.com>
  *
+ * The tree is bulk loaded: the links are split recursively at the median of their centers along the axis in which
+ * the centers spread more, which yields a balanced tree regardless of the order of the links. The nodes are laid
+ * out in flat arrays in depth-first order, every node holding a link and the bounding box of its subtree, so that
+ * a nearest neighbor search walks primitive arrays without recursion and without allocating.
+ *
+ * Among links at the same distance from a point, the one inserted first is the nearest.
  */
 
 /*
@@ -51,15 +60,28 @@ import COMSETsystem.*;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-public class KdTree {
-	private Node root;
-	private int size;
+public class KdTree implements SpatialIndex {
+
+	// The links inserted so far, in the order of insertion.
+	private final List<Link> links = new ArrayList<>();
+
+	// The flat tree of the links; null until it is built, i.e., after a link is inserted.
+	private volatile Tree tree;
 
 	/**
 	 * Construct an empty set of points.
 	 */
 	public KdTree() {
-		size = 0;
+	}
+
+	/**
+	 * Construct a tree of links by bulk loading.
+	 *
+	 * @param links the links in the group
+	 */
+	public KdTree(Collection<Link> links) {
+		this.links.addAll(links);
+		tree = new Tree(this.links);
 	}
 
 	/**
@@ -68,281 +90,398 @@ public class KdTree {
 	 * @return {@code true} if this group is empty;
 	 *         {@code false} otherwise
 	 */
+	@Override
 	public boolean isEmpty() {
-		return root == null;
+		return links.isEmpty();
 	}
 
 	/**
 	 * @return the number of links in the group.
 	 */
+	@Override
 	public int size() {
-		return size;
+		return links.size();
 	}
 
 	/**
-	 * Add the link to the group.
-	 * 
-	 * At the root (and every second level thereafter), the x-coordinate is
-	 * used as the key. The root link partitions the space using a vertical band
-	 * the width of which is determined by the minX and maxX of the link. Let L be
-	 * the next link to be added. 
-	 * 
-	 * If L.maxX<=root.minX, then L is added to the left branch of the root;
-	 * If L.minX>=root.maxX, then L is added to the right branch of the root; 
-	 * Otherwise (i.e., L intersects the root's partition band), the root link's partition
-	 * band is expanded to contain L, and L is added to the right branch of the root.  
+	 * Add the link to the group. The tree is rebuilt at the next search, so that inserting links one after
+	 * another is only efficient before searching; prefer the bulk loading constructor.
 	 *  
 	 * @param link the link to add
 	 * @throws NullPointerException if {@code link} is {@code null}
 	 */
-	public void insert(Link link) {
+	public synchronized void insert(Link link) {
 		if (link == null) throw new java.lang.NullPointerException(
 				"called insert() with a null Point2D");
 
-		root = insert(root, link, true);
+		links.add(link);
+		tree = null;
 	}
 
-	private Node insert(Node n, Link link, boolean evenLevel) {
-		if (n == null) {
-			size++;
-			return new Node(link);
-		}
+	/**
+	 * A nearest neighbor in the group to point p; null if the group is empty.
+	 * 	  
+	 * @param p the point from which to search for a neighbor
+	 * @return the nearest neighbor to the given point,
+	 *         {@code null} otherwise.
+	 * @throws NullPointerException if {@code p} is {@code null}
+	 */
+	public Link nearest(Point2D p) {
+		if (p == null) throw new java.lang.NullPointerException(
+				"called contains() with a null Point2D");
+		return nearest(p.getX(), p.getY());
+	}
 
-		double cmp = directionLinkToBand(link, n, evenLevel);
+	/**
+	 * A nearest neighbor in the group to point (x, y); null if the group is empty. The search does not allocate
+	 * and may run on several threads at once.
+	 *
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @return the nearest neighbor to the given point,
+	 *         {@code null} otherwise.
+	 */
+	@Override
+	public Link nearest(double x, double y) {
+		Tree t = tree();
+		int node = t.nearest(x, y);
+		return node < 0 ? null : t.links[node];
+	}
 
-		/**
-		 * Traverse down the BST.
-		 * 
-		 * In subsequent levels, the orientation is orthogonal
-		 * to the current orientation.
-		 * 
-		 * Place the link in the left or right nodes accordingly.
-		 */
-		
-		/**
-		 * If the comparison is affirmatively left or right, then we're considering a link
-		 * that is either entirely to the left/bottom (may touch) or entirely to the right/top 
-		 * (may touch) of the node's partition band.
-		 */
+	/**
+	 * The k nearest neighbors in the group to point p.
+	 *
+	 * @param p the point from which to search for neighbors
+	 * @param k the number of neighbors
+	 * @return the min(k, size()) nearest links, nearest first
+	 * @throws NullPointerException if {@code p} is {@code null}
+	 */
+	public List<Link> kNearest(Point2D p, int k) {
+		if (p == null) throw new java.lang.NullPointerException(
+				"called kNearest() with a null Point2D");
+		return kNearest(p.getX(), p.getY(), k);
+	}
 
-		// Handle Nodes which should be inserted to the left
-		if (cmp < 0 && evenLevel) {
-			n.lb = insert(n.lb, link, !evenLevel);
+	/**
+	 * The k nearest neighbors in the group to point (x, y). The candidates are kept in a bounded max-heap, and a
+	 * subtree is skipped once its bounding box is farther away than the k-th nearest link found so far.
+	 *
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @param k the number of neighbors
+	 * @return the min(k, size()) nearest links, nearest first
+	 */
+	@Override
+	public List<Link> kNearest(double x, double y, int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("The number of neighbors must not be negative");
 		}
+		return tree().kNearest(x, y, k);
+	}
 
-		// Handle Nodes which should be inserted to the bottom
-		else if (cmp < 0 && !evenLevel) {
-			n.lb = insert(n.lb, link, !evenLevel);
-		}
+	/**
+	 * The links in the group within a distance of point p.
+	 *
+	 * @param p the point from which to search for neighbors
+	 * @param radius the distance in meters
+	 * @return the links whose distance to p is at most radius, nearest first
+	 * @throws NullPointerException if {@code p} is {@code null}
+	 */
+	public List<Link> withinRadius(Point2D p, double radius) {
+		if (p == null) throw new java.lang.NullPointerException(
+				"called withinRadius() with a null Point2D");
+		return withinRadius(p.getX(), p.getY(), radius);
+	}
 
-		// Handle Nodes which should be inserted to the right
-		else if (cmp > 0 && evenLevel) {
-			n.rt = insert(n.rt, link, !evenLevel);
+	/**
+	 * The links in the group within a distance of point (x, y). Subtrees whose bounding boxes are farther away
+	 * than the distance are skipped.
+	 *
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @param radius the distance in meters
+	 * @return the links whose distance to (x, y) is at most radius, nearest first
+	 */
+	@Override
+	public List<Link> withinRadius(double x, double y, double radius) {
+		if (radius < 0) {
+			throw new IllegalArgumentException("The radius must not be negative");
 		}
+		return tree().withinRadius(x, y, radius * radius);
+	}
 
-		// Handle Nodes which should be inserted to the top
-		else if (cmp > 0 && !evenLevel) {
-			n.rt = insert(n.rt, link, !evenLevel);
+	private Tree tree() {
+		Tree t = tree;
+		if (t == null) {
+			synchronized (this) {
+				t = tree;
+				if (t == null) {
+					t = new Tree(links);
+					tree = t;
+				}
+			}
 		}
+		return t;
+	}
 
-		/**
-		 * The link intersects the node's partition band. 
-		 * This is considered a tie and resolved in favor of the right subtree.
-		 */
-		else { 
-			// extend the node's partition band
-		    n.extendRange(link);
-		    n.rt = insert(n.rt, link, !evenLevel);
-		}	
-
-		return n;
+	/**
+	 * Squared distance between point (x, y) and the line segment from (x1, y1) to (x2, y2), computed exactly
+	 * like Link.distanceSq.
+	 */
+	static double distanceSq(double x1, double y1, double x2, double y2, double x, double y) {
+		double length = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+		if (length == 0.0) {
+			return (x1 - x) * (x1 - x) + (y1 - y) * (y1 - y);
+		}
+		double t = ((x - x1) * (x2 - x1) + (y - y1) * (y2 - y1)) / length;
+		if (t < 0.0) {
+			return (x1 - x) * (x1 - x) + (y1 - y) * (y1 - y);
+		} else if (t > 1.0) {
+			return (x2 - x) * (x2 - x) + (y2 - y) * (y2 - y);
+		} else {
+			double projX = x1 + t * (x2 - x1);
+			double projY = y1 + t * (y2 - y1);
+			return (projX - x) * (projX - x) + (projY - y) * (projY - y);
+		}
 	}
 
 	/**
-	 * A nearest neighbor in the group to point p; null if the group is empty.
-	 * 	  
-	 * @param link the link from which to search for a neighbor
-	 * @return the nearest neighbor to the given link,
-	 *         {@code null} otherwise.
-	 * @throws NullPointerException if {@code link} is {@code null}
+	 * Squared distance between point (x, y) and a box; 0 if the point is inside the box.
 	 */
-	public Link nearest(Point2D p) {
-		if (p == null) throw new java.lang.NullPointerException(
-				"called contains() with a null Point2D");
-		if (isEmpty()) return null;
-		return nearest(root, p, root.link, true);
+	private static double boxDistanceSq(double minX, double minY, double maxX, double maxY, double x, double y) {
+		double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0.0);
+		double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0.0);
+		return dx * dx + dy * dy;
 	}
 
-	private Link nearest(Node n, Point2D p, Link champion,
-			boolean evenLevel) {
+	/**
+	 * The flat tree. Node i holds links[i]; its subtree consists of the nodes i to end[i] - 1, with the left
+	 * subtree starting at i + 1 and the right subtree starting at right[i] (equal to end[i] if it is empty).
+	 */
+	private static final class Tree {
+
+		final Link[] links;
+
+		// The position of the link of a node in the insertion order, which breaks ties.
+		final int[] order;
+
+		// The links in the insertion order.
+		final Link[] inserted;
 
-		// Handle reaching the end of the tree
-		if (n == null) return champion;
+		// The end points of the link of a node: x1, y1, x2, y2.
+		final double[] segments;
 
-		// Determine if the current Node's link beats the existing champion
-		if (n.link.distanceSq(p) < champion.distanceSq(p))
-			champion = n.link;
+		// The bounding box of the subtree of a node: minX, minY, maxX, maxY.
+		final double[] boxes;
+
+		final int[] right;
+
+		final int[] end;
+
+		// The largest number of nodes waiting to be searched: a pending sibling for every level of the tree
+		// above the searched node plus its two children.
+		final int stackSize;
+
+		// Stacks of nodes to search, one per thread, so that a search does not allocate.
+		private final ThreadLocal<int[]> stacks;
+
+		Tree(List<Link> insertedLinks) {
+			int n = insertedLinks.size();
+			links = new Link[n];
+			order = new int[n];
+			inserted = insertedLinks.toArray(new Link[0]);
+			segments = new double[4 * n];
+			boxes = new double[4 * n];
+			right = new int[n];
+			end = new int[n];
+
+			Integer[] indices = new Integer[n];
+			double[] centers = new double[2 * n];
+			for (int i = 0; i < n; i++) {
+				Link link = insertedLinks.get(i);
+				indices[i] = i;
+				centers[2 * i] = (link.minX + link.maxX) / 2;
+				centers[2 * i + 1] = (link.minY + link.maxY) / 2;
+			}
+			int depth = build(insertedLinks, indices, centers, 0, n, 0);
+			stackSize = depth + 2;
+			stacks = ThreadLocal.withInitial(() -> new int[stackSize]);
+		}
 
 		/**
-		 * Calculate the distance from the search point to the current
-		 * Node's partition band.
-		 * 
-		 * Primarily, the sign of this calculation is useful in determining
-		 * which side of the Node to traverse next.
-		 * 
-		 * Additionally, the magnitude to toPartitionLine is useful for pruning.
-		 * 
-		 * Specifically, if we find a champion whose distance is shorter than
-		 * to a previous partition band, then we know we don't have to check any
-		 * of the links on the other side of that partition band, because none
-		 * can be closer.
+		 * Build the subtree of the links indices[from..to) as the nodes from node on.
+		 * @return the depth of the subtree
 		 */
-		double toPartitionLine = distancePointToBand(p, n, evenLevel);
+		private int build(List<Link> insertedLinks, Integer[] indices, double[] centers, int from, int to, int node) {
+			if (from == to) {
+				return 0;
+			}
+			// split along the axis in which the centers spread more
+			double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				int index = indices[i];
+				minX = Math.min(minX, centers[2 * index]);
+				maxX = Math.max(maxX, centers[2 * index]);
+				minY = Math.min(minY, centers[2 * index + 1]);
+				maxY = Math.max(maxY, centers[2 * index + 1]);
+			}
+			int axis = maxX - minX >= maxY - minY ? 0 : 1;
+			Arrays.sort(indices, from, to, (a, b) -> {
+				int c = Double.compare(centers[2 * a + axis], centers[2 * b + axis]);
+				return c != 0 ? c : Integer.compare(a, b);
+			});
+			int mid = (from + to) >>> 1;
+
+			int index = indices[mid];
+			Link link = insertedLinks.get(index);
+			links[node] = link;
+			order[node] = index;
+			segments[4 * node] = link.from.getX();
+			segments[4 * node + 1] = link.from.getY();
+			segments[4 * node + 2] = link.to.getX();
+			segments[4 * node + 3] = link.to.getY();
+
+			int leftDepth = build(insertedLinks, indices, centers, from, mid, node + 1);
+			right[node] = node + 1 + (mid - from);
+			int rightDepth = build(insertedLinks, indices, centers, mid + 1, to, right[node]);
+			end[node] = node + (to - from);
+
+			// the bounding box of the subtree
+			boxes[4 * node] = link.minX;
+			boxes[4 * node + 1] = link.minY;
+			boxes[4 * node + 2] = link.maxX;
+			boxes[4 * node + 3] = link.maxY;
+			if (mid > from) {
+				extendBox(node, node + 1);
+			}
+			if (to > mid + 1) {
+				extendBox(node, right[node]);
+			}
+			return 1 + Math.max(leftDepth, rightDepth);
+		}
+
+		// extend the bounding box of a node by the bounding box of its child
+		private void extendBox(int node, int child) {
+			boxes[4 * node] = Math.min(boxes[4 * node], boxes[4 * child]);
+			boxes[4 * node + 1] = Math.min(boxes[4 * node + 1], boxes[4 * child + 1]);
+			boxes[4 * node + 2] = Math.max(boxes[4 * node + 2], boxes[4 * child + 2]);
+			boxes[4 * node + 3] = Math.max(boxes[4 * node + 3], boxes[4 * child + 3]);
+		}
 
 		/**
-		 * Handle the search point being to the left of or below
-		 * the current Node's partition band.
+		 * @return the node of the nearest link to point (x, y); -1 if the tree is empty
 		 */
-		if (toPartitionLine < 0) {
-			champion = nearest(n.lb, p, champion, !evenLevel);
-
-			// Since champion may have changed, recalculate distance
-			if (champion.distanceSq(p) >=
-					toPartitionLine * toPartitionLine) {
-				champion = nearest(n.rt, p, champion, !evenLevel);
+		int nearest(double x, double y) {
+			if (links.length == 0) {
+				return -1;
 			}
+			int[] stack = stacks.get();
+			int top = 0;
+			stack[top++] = 0;
+			int best = -1;
+			double bestDistanceSq = Double.POSITIVE_INFINITY;
+			while (top > 0) {
+				int node = stack[--top];
+				if (distanceToBox(node, x, y) > bestDistanceSq) {
+					continue;
+				}
+				double distanceSq = distanceSq(node, x, y);
+				if (best < 0 || LinkHeap.isNearer(distanceSq, order[node], bestDistanceSq, order[best])) {
+					best = node;
+					bestDistanceSq = distanceSq;
+				}
+				top = pushChildren(node, x, y, stack, top);
+			}
+			return best;
 		}
 
 		/**
-		 * Handle the search link being to the right of or above
-		 * the current Node's partition band.
-		 * 
-		 * Note that, since insert() above breaks link comparison ties
-		 * by placing the inserted link on the right branch of the current
-		 * Node, traversal must also break ties by going to the right branch
-		 * of the current Node (i.e. to the right or top, depending on
-		 * the level of the current Node).
+		 * @return the k nearest links to point (x, y), nearest first
 		 */
-		else {
-			champion = nearest(n.rt, p, champion, !evenLevel);
-
-			// Since champion may have changed, recalculate distance
-			if (champion.distanceSq(p) >=
-					toPartitionLine * toPartitionLine) {
-				champion = nearest(n.lb, p, champion, !evenLevel);
+		List<Link> kNearest(double x, double y, int k) {
+			LinkHeap heap = new LinkHeap(Math.min(k, links.length));
+			if (links.length > 0) {
+				int[] stack = stacks.get();
+				int top = 0;
+				stack[top++] = 0;
+				while (top > 0) {
+					int node = stack[--top];
+					if (distanceToBox(node, x, y) > heap.boundSq()) {
+						continue;
+					}
+					heap.offer(order[node], distanceSq(node, x, y));
+					top = pushChildren(node, x, y, stack, top);
+				}
 			}
+			return linksInOrder(heap.drain());
 		}
 
-		return champion;
-	}
-
-	/**
-	 * The direction from the given link to the given Node's partition band.
-	 * 
-	 * If the sign of the returned integer is -1, then the given link
-	 * lies or should lie on the left branch of the given Node.
-	 * 
-	 * Otherwise, the given link lies or should lie on the right branch of the given Node.
-	 * 
-	 * @param link the link in question
-	 * @param n the Node in question
-	 * @param evenLevel is the current level even?  If so, then the Node's
-	 *        partition band is vertical, so the link will be to the left
-	 *        or right of the Node's partition band. If not, then the Node's 
-	 *        partition band is horizontal, so the link will be above or 
-	 *        below the Node's partition band.
-	 * @return -1 if the link is to the left of the node's partition band; 
-	 *         1 right; 
-	 *         0 if the link intersects the node's partition band.
-	 */
-	private int directionLinkToBand(Link link, Node n, boolean evenLevel) {
-		if (evenLevel) { // compare x coordinates
-			if (link.maxX <= n.minX)
-				return -1;
-			if (link.minX >= n.maxX)
-				return 1;
-			else 
-				return 0;
+		/**
+		 * @return the links within a squared distance of point (x, y), nearest first
+		 */
+		List<Link> withinRadius(double x, double y, double radiusSq) {
+			LinkHeap heap = LinkHeap.unbounded();
+			if (links.length > 0) {
+				int[] stack = stacks.get();
+				int top = 0;
+				stack[top++] = 0;
+				while (top > 0) {
+					int node = stack[--top];
+					if (distanceToBox(node, x, y) > radiusSq) {
+						continue;
+					}
+					double distanceSq = distanceSq(node, x, y);
+					if (distanceSq <= radiusSq) {
+						heap.offer(order[node], distanceSq);
+					}
+					top = pushChildren(node, x, y, stack, top);
+				}
+			}
+			return linksInOrder(heap.drain());
 		}
-		else { // compare y coordinates
-			if (link.maxY <= n.minY)
-				return -1;
-			if (link.minY >= n.maxY)
-				return 1;
-			else 
-				return 0;		
+
+		private List<Link> linksInOrder(int[] positions) {
+			Link[] result = new Link[positions.length];
+			for (int i = 0; i < positions.length; i++) {
+				result[i] = inserted[positions[i]];
+			}
+			return Arrays.asList(result);
 		}
-	}
-	
-	/**
-	 * The distance and direction from the given point to the given Node's partition band.
-	 * 
-	 * If the sign of the returned double is negative, then the given point
-	 * lies or should lie on the left branch of the given Node.
-	 * 
-	 * Otherwise (including where the difference is exactly 0), then the
-	 * given point lies or should lie on the right branch of the given Node.
-	 * 
-	 * @param p the point in question
-	 * @param n the Node in question
-	 * @param evenLevel is the current level even?  If so, then the Node's
-	 *        partition band is vertical, so the point will be to the left
-	 *        or right of the Node's partition band. If not, then the Node's 
-	 *        partition band is horizontal, so the point will be above or 
-	 *        below the Node's partition band.
-	 * @return -1 if the point is to the left of the node's partition band; 
-	 *         1 right; 
-	 *         0 if the point is inside the node's partition band.
-	 */	
-	private double distancePointToBand(Point2D p, Node n, boolean evenLevel) {
-		if (evenLevel) { // compare x coordinates
-			if (p.getX() <= n.minX || p.getX() >= n.maxX) 
-				return p.getX() - n.minX;
-			else 
-				return 0;
+
+		/**
+		 * Push the children of a node onto the stack, the nearer one last so that it is searched first.
+		 * @return the new top of the stack
+		 */
+		private int pushChildren(int node, double x, double y, int[] stack, int top) {
+			int left = node + 1;
+			int rightChild = right[node];
+			boolean hasLeft = left < rightChild;
+			boolean hasRight = rightChild < end[node];
+			if (hasLeft && hasRight) {
+				if (distanceToBox(left, x, y) <= distanceToBox(rightChild, x, y)) {
+					stack[top++] = rightChild;
+					stack[top++] = left;
+				} else {
+					stack[top++] = left;
+					stack[top++] = rightChild;
+				}
+			} else if (hasLeft) {
+				stack[top++] = left;
+			} else if (hasRight) {
+				stack[top++] = rightChild;
+			}
+			return top;
 		}
-		else { // compare y coordinates
-			if (p.getY() <= n.minY || p.getY() >= n.maxY) 
-				return p.getY() - n.minY;
-			else 
-				return 0;
-		}		
-	}
 
-	/**
-	 * The data structure from which a KdTree is created.
-	 */
-	private static class Node {
-
-		private final Link link;
-		private double minX;
-		private double minY;
-		private double maxX;
-		private double maxY;
-
-		// the left/bottom subtree
-		private Node lb;
-
-		// the right/top subtree
-		private Node rt;
-
-		private Node(Link link) {
-		
-			this.link = link;
-			minX = link.minX;
-			minY = link.minY;
-			maxX = link.maxX;
-			maxY = link.maxY;
-			lb = null;
-			rt = null;
-			
+		// the squared distance between point (x, y) and the link of a node
+		private double distanceSq(int node, double x, double y) {
+			return KdTree.distanceSq(segments[4 * node], segments[4 * node + 1], segments[4 * node + 2],
+					segments[4 * node + 3], x, y);
 		}
 
-		public void extendRange(Link link) {
-			minX = Math.min(minX, link.minX);
-			minY = Math.min(minY, link.minY);
-			maxX = Math.max(maxX, link.maxX);
-			maxY = Math.max(maxY, link.maxY);			
+		private double distanceToBox(int node, double x, double y) {
+			return boxDistanceSq(boxes[4 * node], boxes[4 * node + 1], boxes[4 * node + 2], boxes[4 * node + 3], x, y);
 		}
 	}
-}
\ No newline at end of file
+}
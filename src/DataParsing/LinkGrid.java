@@ -0,0 +1,448 @@
+package DataParsing;
+
+import COMSETsystem.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid of square cells over the bounding box of the links of a map. Every cell lists the links whose
+ * bounding boxes overlap it. A search visits rings of cells around the cell of the point, nearest ring first,
+ * and stops once the cells not visited yet are farther away than the links found.
+ *
+ * For the nearest link, every cell also lists its candidates, i.e., the links that are the nearest link of some
+ * point in the cell: the links no farther from the cell than the farthest point of the cell is from the nearest
+ * link of its center. The nearest link of a point in the grid is then found by measuring the candidates of its
+ * cell, which on a dense urban map are a handful of links, in constant time.
+ *
+ * By default, the cells are sized so that there are about CELLS_PER_LINK cells per link. The lists are stored in flat
+ * arrays, the links of a list in the order of the list the grid is built from.
+ */
+public class LinkGrid implements SpatialIndex {
+
+	// The largest number of cells of a grid.
+	private static final int MAX_CELLS = 1 << 24;
+
+	// The number of cells per link of a grid whose cell size is chosen from the number of links.
+	private static final int CELLS_PER_LINK = 4;
+
+	// The links in the order of the list the grid is built from.
+	private final Link[] links;
+
+	// The end points of every link: x1, y1, x2, y2.
+	private final double[] segments;
+
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+
+	// The links of cell (column, row) are cellLinks[cellStart[c]] to cellLinks[cellStart[c + 1] - 1] where
+	// c = row * columns + column.
+	private final int[] cellStart;
+	private final int[] cellLinks;
+
+	// The candidates of cell c are candidateLinks[candidateStart[c]] to candidateLinks[candidateStart[c + 1] - 1].
+	private final int[] candidateStart;
+	private final int[] candidateLinks;
+
+	// The marks of the links visited by a search, one array per thread; a link is visited if its mark is the
+	// number of the search.
+	private final ThreadLocal<Marks> marks;
+
+	/**
+	 * Construct a grid with about CELLS_PER_LINK cells per link.
+	 *
+	 * @param links the links in the grid
+	 */
+	public LinkGrid(List<Link> links) {
+		this(links, 0);
+	}
+
+	/**
+	 * Construct a grid with cells of a given size.
+	 *
+	 * @param links the links in the grid
+	 * @param cellSize the width of a cell in meters; 0 to choose it from the number of links
+	 */
+	public LinkGrid(List<Link> links, double cellSize) {
+		if (cellSize < 0) {
+			throw new IllegalArgumentException("The cell size must not be negative");
+		}
+		this.links = links.toArray(new Link[0]);
+		int n = this.links.length;
+		segments = new double[4 * n];
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			Link link = this.links[i];
+			segments[4 * i] = link.from.getX();
+			segments[4 * i + 1] = link.from.getY();
+			segments[4 * i + 2] = link.to.getX();
+			segments[4 * i + 3] = link.to.getY();
+			minX = Math.min(minX, link.minX);
+			minY = Math.min(minY, link.minY);
+			maxX = Math.max(maxX, link.maxX);
+			maxY = Math.max(maxY, link.maxY);
+		}
+		if (n == 0) {
+			minX = minY = maxX = maxY = 0;
+		}
+		double width = maxX - minX;
+		double height = maxY - minY;
+		if (cellSize == 0) {
+			cellSize = Math.sqrt(width * height / Math.max(1, (double) CELLS_PER_LINK * n));
+		}
+		// at least one cell in every direction and not too many cells
+		cellSize = Math.max(cellSize, Math.max(width, height) / (MAX_CELLS / 2));
+		cellSize = Math.max(cellSize, Math.sqrt(width * height / MAX_CELLS));
+		if (!(cellSize > 0)) {
+			cellSize = 1;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(height / cellSize));
+
+		// count the links of every cell, then place them
+		cellStart = new int[columns * rows + 1];
+		for (Link link : this.links) {
+			for (int row = row(link.minY); row <= row(link.maxY); row++) {
+				for (int column = column(link.minX); column <= column(link.maxX); column++) {
+					cellStart[row * columns + column + 1]++;
+				}
+			}
+		}
+		for (int c = 0; c < columns * rows; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellLinks = new int[cellStart[columns * rows]];
+		int[] next = Arrays.copyOf(cellStart, columns * rows);
+		for (int i = 0; i < n; i++) {
+			Link link = this.links[i];
+			for (int row = row(link.minY); row <= row(link.maxY); row++) {
+				for (int column = column(link.minX); column <= column(link.maxX); column++) {
+					cellLinks[next[row * columns + column]++] = i;
+				}
+			}
+		}
+		marks = ThreadLocal.withInitial(() -> new Marks(n));
+
+		// the candidates of every cell
+		candidateStart = new int[columns * rows + 1];
+		int[] candidates = new int[Math.max(16, n)];
+		int count = 0;
+		Marks visited = marks.get();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int cell = row * columns + column;
+				if (n > 0) {
+					double cellMinX = minX + column * cellSize;
+					double cellMinY = minY + row * cellSize;
+					double cellMaxX = cellMinX + cellSize;
+					double cellMaxY = cellMinY + cellSize;
+					int centerLink = nearestByRings(cellMinX + cellSize / 2, cellMinY + cellSize / 2);
+					double boundSq = 0;
+					for (int corner = 0; corner < 4; corner++) {
+						boundSq = Math.max(boundSq, distanceSq(centerLink, (corner & 1) == 0 ? cellMinX : cellMaxX,
+								(corner & 2) == 0 ? cellMinY : cellMaxY));
+					}
+					// a margin for rounding; measuring more candidates than needed is harmless
+					boundSq = boundSq * (1 + 1e-9) + 1e-9;
+					double bound = Math.sqrt(boundSq);
+					int mark = visited.next();
+					for (int r = row(cellMinY - bound); r <= row(cellMaxY + bound); r++) {
+						for (int c = column(cellMinX - bound); c <= column(cellMaxX + bound); c++) {
+							int near = r * columns + c;
+							for (int i = cellStart[near]; i < cellStart[near + 1]; i++) {
+								int link = cellLinks[i];
+								if (visited.marks[link] != mark) {
+									visited.marks[link] = mark;
+									if (boxDistanceSq(link, cellMinX, cellMinY, cellMaxX, cellMaxY) <= boundSq) {
+										if (count == candidates.length) {
+											candidates = Arrays.copyOf(candidates, 2 * count);
+										}
+										candidates[count++] = link;
+									}
+								}
+							}
+						}
+					}
+					// in the order of the links, like the cell lists
+					Arrays.sort(candidates, candidateStart[cell], count);
+				}
+				candidateStart[cell + 1] = count;
+			}
+		}
+		candidateLinks = Arrays.copyOf(candidates, count);
+	}
+
+	@Override
+	public int size() {
+		return links.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return links.length == 0;
+	}
+
+	@Override
+	public Link nearest(double x, double y) {
+		if (links.length == 0) {
+			return null;
+		}
+		if (x < minX || y < minY || x > minX + columns * cellSize || y > minY + rows * cellSize) {
+			// outside the cells
+			return links[nearestByRings(x, y)];
+		}
+		int cell = row(y) * columns + column(x);
+		int best = -1;
+		double bestDistanceSq = Double.POSITIVE_INFINITY;
+		for (int i = candidateStart[cell]; i < candidateStart[cell + 1]; i++) {
+			int link = candidateLinks[i];
+			double distanceSq = distanceSq(link, x, y);
+			if (best < 0 || LinkHeap.isNearer(distanceSq, link, bestDistanceSq, best)) {
+				best = link;
+				bestDistanceSq = distanceSq;
+			}
+		}
+		return links[best];
+	}
+
+	/**
+	 * @return the position of the nearest link to point (x, y), searching rings of cells
+	 */
+	private int nearestByRings(double x, double y) {
+		int centerColumn = column(x);
+		int centerRow = row(y);
+		int best = -1;
+		double bestDistanceSq = Double.POSITIVE_INFINITY;
+		for (int ring = 0; ; ring++) {
+			int rowBegin = Math.max(0, centerRow - ring);
+			int rowEnd = Math.min(rows - 1, centerRow + ring);
+			for (int row = rowBegin; row <= rowEnd; row++) {
+				boolean fullRow = row == centerRow - ring || row == centerRow + ring;
+				int step = fullRow ? 1 : 2 * ring;
+				for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+					if (column < 0 || column >= columns) {
+						continue;
+					}
+					int cell = row * columns + column;
+					for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+						int link = cellLinks[i];
+						// a link in several cells is just measured again
+						double distanceSq = distanceSq(link, x, y);
+						if (best < 0 || LinkHeap.isNearer(distanceSq, link, bestDistanceSq, best)) {
+							best = link;
+							bestDistanceSq = distanceSq;
+						}
+					}
+				}
+			}
+			double beyond = distanceBeyondRing(x, y, centerColumn, centerRow, ring);
+			if (beyond * beyond > bestDistanceSq) {
+				return best;
+			}
+		}
+	}
+
+	@Override
+	public List<Link> kNearest(double x, double y, int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("The number of neighbors must not be negative");
+		}
+		LinkHeap heap = new LinkHeap(Math.min(k, links.length));
+		if (k == 0 || links.length == 0) {
+			return new ArrayList<>();
+		}
+		Marks visited = marks.get();
+		int mark = visited.next();
+		int centerColumn = column(x);
+		int centerRow = row(y);
+		for (int ring = 0; ; ring++) {
+			int rowBegin = Math.max(0, centerRow - ring);
+			int rowEnd = Math.min(rows - 1, centerRow + ring);
+			for (int row = rowBegin; row <= rowEnd; row++) {
+				boolean fullRow = row == centerRow - ring || row == centerRow + ring;
+				int step = fullRow ? 1 : 2 * ring;
+				for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+					if (column < 0 || column >= columns) {
+						continue;
+					}
+					int cell = row * columns + column;
+					for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+						int link = cellLinks[i];
+						if (visited.marks[link] != mark) {
+							visited.marks[link] = mark;
+							heap.offer(link, distanceSq(link, x, y));
+						}
+					}
+				}
+			}
+			double beyond = distanceBeyondRing(x, y, centerColumn, centerRow, ring);
+			if (beyond * beyond > heap.boundSq()) {
+				return linksOf(heap.drain());
+			}
+		}
+	}
+
+	@Override
+	public List<Link> withinRadius(double x, double y, double radius) {
+		if (radius < 0) {
+			throw new IllegalArgumentException("The radius must not be negative");
+		}
+		double radiusSq = radius * radius;
+		LinkHeap heap = LinkHeap.unbounded();
+		if (links.length > 0) {
+			Marks visited = marks.get();
+			int mark = visited.next();
+			for (int row = row(y - radius); row <= row(y + radius); row++) {
+				for (int column = column(x - radius); column <= column(x + radius); column++) {
+					int cell = row * columns + column;
+					for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+						int link = cellLinks[i];
+						if (visited.marks[link] != mark) {
+							visited.marks[link] = mark;
+							double distanceSq = distanceSq(link, x, y);
+							if (distanceSq <= radiusSq) {
+								heap.offer(link, distanceSq);
+							}
+						}
+					}
+				}
+			}
+		}
+		return linksOf(heap.drain());
+	}
+
+	/**
+	 * A lower bound of the distance from point (x, y) to the links in no cell within a ring around a cell, i.e.,
+	 * outside the square of cells from (column - ring, row - ring) to (column + ring, row + ring). Such a link lies
+	 * entirely beyond one of the sides of the square that do not lie on the border of the grid.
+	 *
+	 * @return the lower bound; +infinity if the square covers the grid
+	 */
+	private double distanceBeyondRing(double x, double y, int column, int row, int ring) {
+		double distance = Double.POSITIVE_INFINITY;
+		if (column - ring > 0) {
+			distance = Math.min(distance, Math.max(0, x - (minX + (column - ring) * cellSize)));
+		}
+		if (column + ring < columns - 1) {
+			distance = Math.min(distance, Math.max(0, minX + (column + ring + 1) * cellSize - x));
+		}
+		if (row - ring > 0) {
+			distance = Math.min(distance, Math.max(0, y - (minY + (row - ring) * cellSize)));
+		}
+		if (row + ring < rows - 1) {
+			distance = Math.min(distance, Math.max(0, minY + (row + ring + 1) * cellSize - y));
+		}
+		return distance;
+	}
+
+	private int column(double x) {
+		return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - minX) / cellSize)));
+	}
+
+	private int row(double y) {
+		return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - minY) / cellSize)));
+	}
+
+	private double distanceSq(int link, double x, double y) {
+		return KdTree.distanceSq(segments[4 * link], segments[4 * link + 1], segments[4 * link + 2],
+				segments[4 * link + 3], x, y);
+	}
+
+	/**
+	 * The squared distance between a link and a box; 0 if they intersect. Otherwise, the distance is attained at an
+	 * end point of the link or at a corner of the box.
+	 */
+	private double boxDistanceSq(int link, double boxMinX, double boxMinY, double boxMaxX, double boxMaxY) {
+		double x1 = segments[4 * link];
+		double y1 = segments[4 * link + 1];
+		double x2 = segments[4 * link + 2];
+		double y2 = segments[4 * link + 3];
+		if (intersects(x1, y1, x2, y2, boxMinX, boxMinY, boxMaxX, boxMaxY)) {
+			return 0;
+		}
+		double distanceSq = Math.min(pointBoxDistanceSq(x1, y1, boxMinX, boxMinY, boxMaxX, boxMaxY),
+				pointBoxDistanceSq(x2, y2, boxMinX, boxMinY, boxMaxX, boxMaxY));
+		distanceSq = Math.min(distanceSq, KdTree.distanceSq(x1, y1, x2, y2, boxMinX, boxMinY));
+		distanceSq = Math.min(distanceSq, KdTree.distanceSq(x1, y1, x2, y2, boxMaxX, boxMinY));
+		distanceSq = Math.min(distanceSq, KdTree.distanceSq(x1, y1, x2, y2, boxMinX, boxMaxY));
+		return Math.min(distanceSq, KdTree.distanceSq(x1, y1, x2, y2, boxMaxX, boxMaxY));
+	}
+
+	private static double pointBoxDistanceSq(double x, double y, double minX, double minY, double maxX, double maxY) {
+		double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0.0);
+		double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0.0);
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Whether the segment from (x1, y1) to (x2, y2) intersects a box, by clipping the segment to the box
+	 * (Liang-Barsky).
+	 */
+	private static boolean intersects(double x1, double y1, double x2, double y2,
+									  double minX, double minY, double maxX, double maxY) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double[] p = {-dx, dx, -dy, dy};
+		double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+		double enter = 0;
+		double leave = 1;
+		for (int i = 0; i < 4; i++) {
+			if (p[i] == 0) {
+				if (q[i] < 0) {
+					return false;
+				}
+			} else {
+				double t = q[i] / p[i];
+				if (p[i] < 0) {
+					if (t > leave) {
+						return false;
+					}
+					enter = Math.max(enter, t);
+				} else {
+					if (t < enter) {
+						return false;
+					}
+					leave = Math.min(leave, t);
+				}
+			}
+		}
+		return true;
+	}
+
+	private List<Link> linksOf(int[] positions) {
+		Link[] result = new Link[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			result[i] = links[positions[i]];
+		}
+		return Arrays.asList(result);
+	}
+
+	/**
+	 * The marks of the links visited by the searches of a thread.
+	 */
+	private static final class Marks {
+		final int[] marks;
+		private int search;
+
+		Marks(int size) {
+			marks = new int[size];
+		}
+
+		// the mark of a new search
+		int next() {
+			if (++search == 0) {
+				Arrays.fill(marks, 0);
+				search = 1;
+			}
+			return search;
+		}
+	}
+}
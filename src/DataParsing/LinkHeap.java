@@ -0,0 +1,123 @@
+package DataParsing;
+
+import java.util.Arrays;
+
+/**
+ * A max-heap of the nearest links found so far by a search of a SpatialIndex. A link is identified by its position
+ * in the list the index was built from, which also breaks ties of distance: the link that comes first is the
+ * nearer one. For a k-nearest search, the heap keeps the k nearest links offered and has the farthest of them on
+ * top, so that a search can skip everything farther away once the heap is full. For a radius search, an unbounded
+ * heap grows to keep every link offered, so that the links found are sorted without boxing them into a list.
+ */
+final class LinkHeap {
+
+	private static final int INITIAL_UNBOUNDED_CAPACITY = 16;
+
+	private int[] links;
+
+	private double[] distancesSq;
+
+	private int size;
+
+	// Whether the heap grows rather than keeping only the nearest links once it is full.
+	private final boolean unbounded;
+
+	/**
+	 * @param capacity the number of nearest links to keep
+	 */
+	LinkHeap(int capacity) {
+		this(capacity, false);
+	}
+
+	private LinkHeap(int capacity, boolean unbounded) {
+		links = new int[capacity];
+		distancesSq = new double[capacity];
+		this.unbounded = unbounded;
+	}
+
+	/**
+	 * @return an empty heap that keeps all links offered
+	 */
+	static LinkHeap unbounded() {
+		return new LinkHeap(INITIAL_UNBOUNDED_CAPACITY, true);
+	}
+
+	boolean isFull() {
+		return !unbounded && size == links.length;
+	}
+
+	/**
+	 * @return the squared distance of the farthest link kept; +infinity if the heap is not full
+	 */
+	double boundSq() {
+		return isFull() && size > 0 ? distancesSq[0] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Keep a link if it is among the nearest ones. A link must not be offered twice.
+	 * @param link the position of the link
+	 * @param distanceSq the squared distance of the link
+	 */
+	void offer(int link, double distanceSq) {
+		if (unbounded && size == links.length) {
+			links = Arrays.copyOf(links, 2 * links.length);
+			distancesSq = Arrays.copyOf(distancesSq, 2 * distancesSq.length);
+		}
+		if (size < links.length) {
+			siftUp(size++, link, distanceSq);
+		} else if (size > 0 && isNearer(distanceSq, link, distancesSq[0], links[0])) {
+			siftDown(link, distanceSq);
+		}
+	}
+
+	/**
+	 * Empty the heap.
+	 * @return the positions of the kept links, nearest first
+	 */
+	int[] drain() {
+		int[] nearest = new int[size];
+		while (size > 0) {
+			nearest[size - 1] = links[0];
+			size--;
+			if (size > 0) {
+				siftDown(links[size], distancesSq[size]);
+			}
+		}
+		return nearest;
+	}
+
+	static boolean isNearer(double distanceSq, int link, double otherDistanceSq, int otherLink) {
+		return distanceSq < otherDistanceSq || (distanceSq == otherDistanceSq && link < otherLink);
+	}
+
+	private void siftUp(int index, int link, double distanceSq) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!isNearer(distancesSq[parent], links[parent], distanceSq, link)) break;
+			links[index] = links[parent];
+			distancesSq[index] = distancesSq[parent];
+			index = parent;
+		}
+		links[index] = link;
+		distancesSq[index] = distanceSq;
+	}
+
+	// replace the top of the heap and restore the heap
+	private void siftDown(int link, double distanceSq) {
+		int index = 0;
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < size && isNearer(distancesSq[child], links[child], distancesSq[right], links[right])) {
+				child = right;
+			}
+			if (!isNearer(distanceSq, link, distancesSq[child], links[child])) break;
+			links[index] = links[child];
+			distancesSq[index] = distancesSq[child];
+			index = child;
+		}
+		links[index] = link;
+		distancesSq[index] = distanceSq;
+	}
+}
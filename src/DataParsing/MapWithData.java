@@ -2,8 +2,11 @@ package DataParsing;
 
 import COMSETsystem.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * The MapWithData class is responsible for loading a resource dataset file,
@@ -18,7 +21,7 @@ public class MapWithData {
 	private final String resourceFile;
 
 	// Priority queue of events
-	public PriorityQueue<Event> events;
+	public EventScheduler events;
 
 	// The earliest resource introduction time. The time is used to determine the time at which
 	// agents are to be deployed. The agents are to be deployed at time earliestResourceTime - 1.
@@ -36,6 +39,12 @@ public class MapWithData {
 
 	private ArrayList<Resource> resourcesParsed;
 
+	// The number of resources of a streamed dataset that are map-matched together.
+	private static final int MATCH_CHUNK_SIZE = 1 << 14;
+
+	// The map-matched resources if they are streamed into the simulation rather than loaded; null otherwise.
+	private ResourceSpool spool;
+
 	/**
 	 * Constructor of MapWithData
 	 * @param map reference to the map
@@ -43,10 +52,21 @@ public class MapWithData {
 	 * @param agentPlacementRandomSeed Seed for randome number that generates agent placements
 	 */
 	public MapWithData(CityMap map, String resourceFile, long agentPlacementRandomSeed) {
+		this(map, resourceFile, agentPlacementRandomSeed, new EventQueue());
+	}
+
+	/**
+	 * Constructor of MapWithData
+	 * @param map reference to the map
+	 * @param resourceFile full path to the resource file
+	 * @param agentPlacementRandomSeed Seed for randome number that generates agent placements
+	 * @param events the empty queue to add the agent and resource events to
+	 */
+	public MapWithData(CityMap map, String resourceFile, long agentPlacementRandomSeed, EventScheduler events) {
 		this.map = map;
 		this.resourceFile = resourceFile;
 		this.agentPlacementRandomSeed = agentPlacementRandomSeed;
-		events = new PriorityQueue<>();
+		this.events = events;
 		zoneId = map.computeZoneId();
 	}
 
@@ -68,16 +88,15 @@ public class MapWithData {
 		CSVNewYorkParser parser = new CSVNewYorkParser(resourceFile, zoneId);
 		resourcesParsed = parser.parse(Configuration.timeResolution);
 		try {
-            for (Resource resource : resourcesParsed) {
-				// map matching
-				LocationOnRoad pickupMatch = mapMatch(resource.getPickupLon(), resource.getPickupLat());
-				LocationOnRoad dropoffMatch = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+			// map matching
+			long[] staticTripTimes = matchResources(resourcesParsed, simulator);
+			for (int i = 0; i < resourcesParsed.size(); i++) {
+				Resource resource = resourcesParsed.get(i);
+				LocationOnRoad pickupMatch = resource.getPickupLocation();
+				LocationOnRoad dropoffMatch = resource.getDropoffLocation();
 
 				// TODO: won't need trip time
-				long staticTripTime = simulator.mapForAgents.travelTimeBetween(pickupMatch, dropoffMatch);
-
-				resource.setPickupLocation(pickupMatch);
-				resource.setDropoffLocation(dropoffMatch);
+				long staticTripTime = staticTripTimes[i];
 
 				ResourceEvent ev = new ResourceEvent(pickupMatch, dropoffMatch, resource.getTime(), staticTripTime,
 						simulator, fleetManager, configuration.resourceMaximumLifeTime);
@@ -101,9 +120,114 @@ public class MapWithData {
 		return latestResourceTime;
 	}
 
+	/**
+	 * Map-match the resources like createMapWithData, but rather than creating their events, write them to a
+	 * temporary spool file to be streamed into the simulation by streamResources. Only the statistics needed
+	 * before the simulation starts are kept in memory, i.e., the earliest and latest resource times; the traffic
+	 * pattern is built from the spool. The resources are map-matched in chunks of MATCH_CHUNK_SIZE.
+	 *
+	 * @param configuration configuration object containing run-time parameters
+	 * @param simulator Simulator object whose map computes the trip times
+	 * @return long the latest resource time
+	 */
+	public long spoolMapWithData(Configuration configuration, Simulator simulator) {
+		try {
+			spool = ResourceSpool.create();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to create the resource spool", e);
+		}
+		final long resourceMaximumLifeTime = configuration.resourceMaximumLifeTime;
+
+		CSVNewYorkParser parser = new CSVNewYorkParser(resourceFile, zoneId);
+		ArrayList<Resource> chunk = new ArrayList<>(MATCH_CHUNK_SIZE);
+		parser.parse(Configuration.timeResolution, resource -> {
+			chunk.add(resource);
+			if (chunk.size() == MATCH_CHUNK_SIZE) {
+				spoolResources(chunk, simulator, resourceMaximumLifeTime);
+				chunk.clear();
+			}
+		});
+		try {
+			spoolResources(chunk, simulator, resourceMaximumLifeTime);
+			spool.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to write the resource spool", e);
+		}
+
+		return latestResourceTime;
+	}
+
+	/**
+	 * Map-match a chunk of resources and write them to the spool in the order of the chunk.
+	 */
+	private void spoolResources(List<Resource> resources, Simulator simulator, long resourceMaximumLifeTime) {
+		long[] staticTripTimes = matchResources(resources, simulator);
+		for (int i = 0; i < resources.size(); i++) {
+			Resource resource = resources.get(i);
+			LocationOnRoad pickupMatch = resource.getPickupLocation();
+			LocationOnRoad dropoffMatch = resource.getDropoffLocation();
+			long staticTripTime = staticTripTimes[i];
+			try {
+				spool.write(resource.getPickupTime(), resource.getDropoffTime(), staticTripTime,
+						pickupMatch.road.id, pickupMatch.getDistanceFromStartIntersection(),
+						dropoffMatch.road.id, dropoffMatch.getDistanceFromStartIntersection());
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to write the resource spool", e);
+			}
+
+			//  track earliestResourceTime and latestResourceTime
+			if (resource.getTime() < earliestResourceTime) {
+				earliestResourceTime = resource.getTime();
+			}
+			if (resource.getTime() + resourceMaximumLifeTime + staticTripTime > latestResourceTime) {
+				latestResourceTime = resource.getTime() + resourceMaximumLifeTime + staticTripTime;
+			}
+		}
+	}
+
+	/**
+	 * Map-match the pickup and drop off locations of resources in parallel, set them, and compute the shortest
+	 * travel times of the trips. A resource is matched on its own against the read-only map, so that the results
+	 * do not depend on the number of threads, and the caller creates the events in the order of the resources.
+	 *
+	 * @param resources the resources to match
+	 * @param simulator Simulator object whose map computes the trip times
+	 * @return the shortest travel times of the trips in the order of the resources
+	 */
+	private long[] matchResources(List<Resource> resources, Simulator simulator) {
+		long[] staticTripTimes = new long[resources.size()];
+		IntStream.range(0, resources.size()).parallel().forEach(i -> {
+			Resource resource = resources.get(i);
+			LocationOnRoad pickupMatch = mapMatch(resource.getPickupLon(), resource.getPickupLat());
+			LocationOnRoad dropoffMatch = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+			resource.setPickupLocation(pickupMatch);
+			resource.setDropoffLocation(dropoffMatch);
+			staticTripTimes[i] = simulator.mapForAgents.travelTimeBetween(pickupMatch, dropoffMatch);
+		});
+		return staticTripTimes;
+	}
+
+	/**
+	 * Start streaming the resources spooled by spoolMapWithData in the order of their times. The stream owns the
+	 * spool and deletes it when it is closed.
+	 *
+	 * @return the stream of resources
+	 */
+	public ResourceStream streamResources() {
+		if (spool == null) {
+			throw new IllegalStateException("No resources are spooled");
+		}
+		ResourceStream stream = new ResourceStream(spool, map);
+		spool = null;
+		return stream;
+	}
+
 	public TrafficPattern getTrafficPattern(long trafficPatternEpoch, long trafficPatternStep,
 											boolean dynamicTrafficEnabled) {
 		System.out.println("Building traffic patterns...");
+		if (spool != null) {
+			return buildSlidingTrafficPattern(spool, trafficPatternEpoch, trafficPatternStep, dynamicTrafficEnabled);
+		}
 		return buildSlidingTrafficPattern(resourcesParsed, trafficPatternEpoch, trafficPatternStep,
 				dynamicTrafficEnabled);
 
@@ -118,17 +242,8 @@ public class MapWithData {
 		double [] snapResult = snap(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(), xy[0], xy[1]);
 		double distanceFromStartVertex = this.distance(snapResult[0], snapResult[1], link.from.getX(), link.from.getY());
 
-		// find the begin distance of link
-		double distanceFromStartIntersection = 0;
-		for (Link aLink : link.road.links) {
-			if (aLink.id == link.id) {
-				distanceFromStartIntersection += distanceFromStartVertex;
-				break;
-			} else {
-				distanceFromStartIntersection += aLink.length;
-			}
-		}
-		return new LocationOnRoad(link.road, distanceFromStartIntersection);
+		double distanceFromStartIntersection = link.getRoad().linkOffset(link) + distanceFromStartVertex;
+		return new LocationOnRoad(link.getRoad(), distanceFromStartIntersection);
 	}
 
 	/**
@@ -198,7 +313,7 @@ public class MapWithData {
 		for (int i = 0; i < numberOfAgents; i++) {
 			int road_id = generator.nextInt(map.roads().size());
 			Road road = map.roads().get(road_id);
-			double distanceFromStartIntersection = generator.nextDouble() * road.length;
+			double distanceFromStartIntersection = generator.nextDouble() * road.getLength();
 			LocationOnRoad locationOnRoad = new LocationOnRoad(road, distanceFromStartIntersection);
 
 			AgentEvent ev = new AgentEvent(locationOnRoad, deployTime, simulator, fleetManager);
@@ -211,7 +326,7 @@ public class MapWithData {
 	 * 
 	 * @return events
 	 */
-	public PriorityQueue<Event> getEvents() {
+	public EventScheduler getEvents() {
 		return events;
 	}
 
@@ -240,51 +355,30 @@ public class MapWithData {
 													 boolean dynamicTraffic) {
 		// sort resources by pickup
 		resources.sort(Comparator.comparingLong(TimestampAbstract::getTime));
-		TrafficPattern trafficPattern = new TrafficPattern(step);
-		long epochBeginTime = resources.get(0).getPickupTime();
-		int beginResourceIndex = 0;
-		double lastKnownSpeedFactor = 0.3; // default to 0.3 if no trip data available
-		while (true) {
-			ArrayList<Resource> epochResources = new ArrayList<>();
-			long epochEndTime = epochBeginTime + epoch;
-			int resourceIndex = beginResourceIndex;
-			while (resourceIndex < resources.size() && resources.get(resourceIndex).getPickupTime() < epochEndTime) {
-				if (resources.get(resourceIndex).getDropoffTime() < epochEndTime) {
-					epochResources.add(resources.get(resourceIndex));
-				}
-				resourceIndex += 1;
-			}
-
-			if (dynamicTraffic) {
-				if (epochResources.size() == 0) {
-					// use the previous epoch if available
-					trafficPattern.addTrafficPatternItem(epochBeginTime, lastKnownSpeedFactor);
-				} else {
-					double speedFactor = getSpeedFactor(epochResources);
-					if (speedFactor < 0.0) { // didn't get a valid speed factor
-						trafficPattern.addTrafficPatternItem(epochBeginTime, lastKnownSpeedFactor);
-					} else {
-						if (speedFactor > 1.0) { // cap speed factor to 1
-							speedFactor = 1.0;
-						}
-						trafficPattern.addTrafficPatternItem(epochBeginTime, speedFactor);
-						lastKnownSpeedFactor = speedFactor;
-					}
-				}
-			} else {
-				trafficPattern.addTrafficPatternItem(epochBeginTime, 1.0);
-			}
-
-			epochBeginTime += step;
-			while (beginResourceIndex < resources.size() && resources.get(beginResourceIndex).getPickupTime() < epochBeginTime) {
-				beginResourceIndex += 1;
-			}
+		TrafficPatternBuilder builder = new TrafficPatternBuilder(resources.get(0).getPickupTime(),
+				resources.get(resources.size() - 1).getPickupTime(), epoch, step);
+		for (Resource r : resources) {
+			builder.addTrip(r.getPickupTime(), r.getDropoffTime(),
+					map.travelTimeBetween(r.getPickupLocation(), r.getDropoffLocation()));
+		}
+		return builder.build(dynamicTraffic);
+	}
 
-			if (resourceIndex == resources.size()) {
-				break;
+	/**
+	 * Build the traffic pattern of buildSlidingTrafficPattern from spooled resources.
+	 */
+	private TrafficPattern buildSlidingTrafficPattern(ResourceSpool spool, long epoch, long step,
+													  boolean dynamicTraffic) {
+		TrafficPatternBuilder builder = new TrafficPatternBuilder(spool.firstPickupTime(), spool.lastPickupTime(),
+				epoch, step);
+		try (ResourceSpool.Reader reader = spool.read()) {
+			while (reader.next()) {
+				builder.addTrip(reader.pickupTime, reader.dropoffTime, reader.staticTripTime);
 			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read the resource spool", e);
 		}
-		return trafficPattern;
+		return builder.build(dynamicTraffic);
 	}
 
 	/**
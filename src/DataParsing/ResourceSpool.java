@@ -0,0 +1,165 @@
+package DataParsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A temporary file of map-matched resources in the order of the dataset, written by MapWithData.spoolMapWithData
+ * and read back by the traffic pattern builder and ResourceStream. A resource is a fixed-size record of
+ *
+ *   long pickupTime, long dropoffTime, long staticTripTime,
+ *   long pickupRoadId, double pickupDistance, long dropoffRoadId, double dropoffDistance
+ *
+ * where a location is the id of its road and its distance from the start intersection of the road.
+ *
+ * Besides the records, the spool keeps the statistics that the simulation needs before it starts: the range of
+ * pickup times and the disorder of the pickup times, i.e., the largest amount by which a pickup time is earlier
+ * than a pickup time before it in the dataset.
+ */
+final class ResourceSpool implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Path file;
+
+	private DataOutputStream out;
+
+	private long count;
+
+	private long firstPickupTime = Long.MAX_VALUE;
+
+	private long lastPickupTime = Long.MIN_VALUE;
+
+	private long maxDisorder;
+
+	private ResourceSpool(Path file) throws IOException {
+		this.file = file;
+		out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+	}
+
+	/**
+	 * @return an empty spool in a new temporary file
+	 * @throws IOException if the file cannot be created
+	 */
+	static ResourceSpool create() throws IOException {
+		Path file = Files.createTempFile("comset-resources", ".spool");
+		file.toFile().deleteOnExit();
+		return new ResourceSpool(file);
+	}
+
+	void write(long pickupTime, long dropoffTime, long staticTripTime, long pickupRoadId, double pickupDistance,
+			   long dropoffRoadId, double dropoffDistance) throws IOException {
+		out.writeLong(pickupTime);
+		out.writeLong(dropoffTime);
+		out.writeLong(staticTripTime);
+		out.writeLong(pickupRoadId);
+		out.writeDouble(pickupDistance);
+		out.writeLong(dropoffRoadId);
+		out.writeDouble(dropoffDistance);
+
+		count++;
+		firstPickupTime = Math.min(firstPickupTime, pickupTime);
+		if (lastPickupTime != Long.MIN_VALUE) {
+			maxDisorder = Math.max(maxDisorder, lastPickupTime - pickupTime);
+		}
+		lastPickupTime = Math.max(lastPickupTime, pickupTime);
+	}
+
+	/**
+	 * Flush the written records; records are read only after this.
+	 */
+	void finish() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	long count() {
+		return count;
+	}
+
+	long firstPickupTime() {
+		return firstPickupTime;
+	}
+
+	long lastPickupTime() {
+		return lastPickupTime;
+	}
+
+	long maxDisorder() {
+		return maxDisorder;
+	}
+
+	/**
+	 * @return a reader of the records from the beginning
+	 * @throws IOException if the file cannot be opened
+	 */
+	Reader read() throws IOException {
+		finish();
+		return new Reader(new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)));
+	}
+
+	/**
+	 * Delete the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Reads the records one after another into its fields.
+	 */
+	static final class Reader implements Closeable {
+
+		private final DataInputStream in;
+
+		long pickupTime;
+		long dropoffTime;
+		long staticTripTime;
+		long pickupRoadId;
+		double pickupDistance;
+		long dropoffRoadId;
+		double dropoffDistance;
+
+		private Reader(DataInputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * Read the next record into the fields.
+		 * @return false if there are no more records
+		 */
+		boolean next() throws IOException {
+			try {
+				pickupTime = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			dropoffTime = in.readLong();
+			staticTripTime = in.readLong();
+			pickupRoadId = in.readLong();
+			pickupDistance = in.readDouble();
+			dropoffRoadId = in.readLong();
+			dropoffDistance = in.readDouble();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
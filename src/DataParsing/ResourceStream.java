@@ -0,0 +1,188 @@
+package DataParsing;
+
+import COMSETsystem.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The resources of a streaming simulation (comset.stream_resources) in the order of the times at which they
+ * become available, read from the spool written by MapWithData.spoolMapWithData while the simulation runs.
+ *
+ * A producer thread reads the spool, restores the map-matched locations of the resources and puts them into time
+ * order with a reorder buffer: a resource is released once no later record of the spool can be earlier, which
+ * the disorder of the pickup times measured while spooling tells. Resources with the same time keep the order of
+ * the dataset. The released resources are handed to the simulator thread through a bounded queue, so that the
+ * producer runs at most QUEUE_CAPACITY resources ahead. The simulator creates the resource events and gives a
+ * resource the id it would get if all resources were loaded at once, which is why a resource carries its index
+ * in the dataset.
+ *
+ * The reorder buffer is not bounded: it holds the resources whose pickup times are within the largest disorder of
+ * the dataset of the latest pickup time read. On a dataset sorted by pickup time, like the TLC data, it holds the
+ * resources of a single second. A single record that is much earlier than the records before it, however, makes
+ * the buffer hold everything read in that span of time, and a record that is hours out of place can make it hold
+ * most of the dataset, as much memory as loading all resources. Such a dataset is better sorted beforehand.
+ */
+public final class ResourceStream implements Closeable {
+
+	private static final int QUEUE_CAPACITY = 4096;
+
+	// Marks the end of the stream in the queue.
+	private static final StreamedResource END = new StreamedResource(null, null, Long.MAX_VALUE, 0, Long.MAX_VALUE);
+
+	private final ResourceSpool spool;
+
+	private final Map<Long, Road> roads = new HashMap<>();
+
+	private final BlockingQueue<StreamedResource> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	private final Thread producer;
+
+	// The failure of the producer, if any; read after END is taken from the queue.
+	private volatile Exception failure;
+
+	// The next resource of the stream; null if it is not taken from the queue yet.
+	private StreamedResource head;
+
+	ResourceStream(ResourceSpool spool, CityMap map) {
+		this.spool = spool;
+		for (Road road : map.roads()) {
+			roads.put(road.id, road);
+		}
+		producer = new Thread(this::produce, "resource-stream");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * @return the number of resources of the stream
+	 */
+	public long size() {
+		return spool.count();
+	}
+
+	/**
+	 * @return whether there are more resources
+	 */
+	public boolean hasNext() {
+		return head() != END;
+	}
+
+	/**
+	 * @return the time at which the next resource becomes available; Long.MAX_VALUE if there are no more resources
+	 */
+	public long peekTime() {
+		return head().time;
+	}
+
+	/**
+	 * @return the next resource
+	 */
+	public StreamedResource next() {
+		StreamedResource next = head();
+		if (next == END) {
+			throw new NoSuchElementException();
+		}
+		head = null;
+		return next;
+	}
+
+	private StreamedResource head() {
+		if (head == null) {
+			try {
+				head = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for resources", e);
+			}
+			if (head == END && failure != null) {
+				throw new IllegalStateException("Failed to read the spooled resources", failure);
+			}
+		}
+		return head;
+	}
+
+	private void produce() {
+		PriorityQueue<StreamedResource> reorder = new PriorityQueue<>(Comparator
+				.comparingLong((StreamedResource resource) -> resource.time).thenComparingLong(resource -> resource.index));
+		try {
+			try (ResourceSpool.Reader reader = spool.read()) {
+				long index = 0;
+				long latestTime = Long.MIN_VALUE;
+				while (reader.next()) {
+					reorder.add(new StreamedResource(new LocationOnRoad(road(reader.pickupRoadId), reader.pickupDistance),
+							new LocationOnRoad(road(reader.dropoffRoadId), reader.dropoffDistance),
+							reader.pickupTime, reader.staticTripTime, index++));
+					latestTime = Math.max(latestTime, reader.pickupTime);
+					// no later record is earlier than latestTime - maxDisorder
+					while (!reorder.isEmpty() && reorder.peek().time <= latestTime - spool.maxDisorder()) {
+						queue.put(reorder.poll());
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				failure = e;
+				reorder.clear();
+			}
+			while (!reorder.isEmpty()) {
+				queue.put(reorder.poll());
+			}
+			queue.put(END);
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	private Road road(long id) {
+		Road road = roads.get(id);
+		if (road == null) {
+			throw new IllegalStateException("Spooled resource on unknown road " + id);
+		}
+		return road;
+	}
+
+	/**
+	 * Stop the producer and delete the spool.
+	 */
+	@Override
+	public void close() throws IOException {
+		producer.interrupt();
+		try {
+			producer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		spool.close();
+	}
+
+	/**
+	 * A map-matched resource on its way to the simulator.
+	 */
+	public static final class StreamedResource {
+		// The location at which the resource is introduced.
+		public final LocationOnRoad pickupLoc;
+		// The destination of the resource.
+		public final LocationOnRoad dropoffLoc;
+		// The time at which the resource is introduced.
+		public final long time;
+		// The shortest travel time from pickupLoc to dropoffLoc.
+		public final long staticTripTime;
+		// The position of the resource in the dataset.
+		public final long index;
+
+		StreamedResource(LocationOnRoad pickupLoc, LocationOnRoad dropoffLoc, long time, long staticTripTime,
+						 long index) {
+			this.pickupLoc = pickupLoc;
+			this.dropoffLoc = dropoffLoc;
+			this.time = time;
+			this.staticTripTime = staticTripTime;
+			this.index = index;
+		}
+	}
+}
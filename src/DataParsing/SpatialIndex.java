@@ -0,0 +1,50 @@
+package DataParsing;
+
+import COMSETsystem.Link;
+
+import java.util.List;
+
+/**
+ * An index of the links of a map in the projected xy plane of its GeoProjector, used for map matching. The
+ * implementations are KdTree, a tree of bounding boxes, and LinkGrid, a uniform grid of cells; which one a
+ * simulation uses is chosen by comset.spatial_index.
+ *
+ * Distances are Euclidean in meters, and among links at the same distance from a point, the link that comes
+ * first in the list the index was built from is the nearer one, so that all implementations give the same answers.
+ * The queries may run on several threads at once.
+ */
+public interface SpatialIndex {
+
+	/**
+	 * @return the number of links in the index
+	 */
+	int size();
+
+	/**
+	 * @return whether the index has no links
+	 */
+	boolean isEmpty();
+
+	/**
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @return the nearest link to point (x, y); null if the index is empty
+	 */
+	Link nearest(double x, double y);
+
+	/**
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @param k the number of links
+	 * @return the min(k, size()) nearest links to point (x, y), nearest first
+	 */
+	List<Link> kNearest(double x, double y, int k);
+
+	/**
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @param radius the distance in meters
+	 * @return the links whose distance to point (x, y) is at most radius, nearest first
+	 */
+	List<Link> withinRadius(double x, double y, double radius);
+}
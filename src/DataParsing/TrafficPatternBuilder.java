@@ -0,0 +1,113 @@
+package DataParsing;
+
+import COMSETsystem.TrafficPattern;
+
+/**
+ * Builds the sliding traffic pattern described at MapWithData.buildSlidingTrafficPattern one trip at a time. The
+ * pattern has a speed factor for every step from the earliest pickup time on; the factor of the step beginning at
+ * time b is derived from the trips that are picked up at or after b and dropped off before b + epoch, and the last
+ * step is the first one whose epoch covers the latest pickup time.
+ *
+ * The steps whose epoch includes a trip form a contiguous range, so that a trip is recorded in difference arrays
+ * with one entry per step rather than kept. The memory is thus independent of the number of trips, which allows
+ * building the pattern while the trips are streamed, and a trip takes constant time rather than one visit per
+ * step it falls into.
+ */
+final class TrafficPatternBuilder {
+
+	// The speed factor of the steps before the first step that has trips.
+	private static final double DEFAULT_SPEED_FACTOR = 0.3;
+
+	private final long firstPickupTime;
+	private final long epoch;
+	private final long step;
+
+	// Difference arrays over the steps of the number of trips and of their actual and simulated travel times.
+	private final long[] trips;
+	private final long[] actualTravelTimes;
+	private final long[] simulatedTravelTimes;
+
+	/**
+	 * @param firstPickupTime the earliest pickup time of all trips
+	 * @param lastPickupTime the latest pickup time of all trips
+	 * @param epoch the length of the time window of a step in simulation time units
+	 * @param step the length of a step in simulation time units
+	 */
+	TrafficPatternBuilder(long firstPickupTime, long lastPickupTime, long epoch, long step) {
+		if (step <= 0) {
+			throw new IllegalArgumentException("The traffic pattern step must be positive");
+		}
+		this.firstPickupTime = firstPickupTime;
+		this.epoch = epoch;
+		this.step = step;
+		// the last step is the first one with lastPickupTime < begin + epoch
+		long steps = Math.max(0, Math.floorDiv(lastPickupTime - firstPickupTime - epoch, step) + 1) + 1;
+		if (steps >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many traffic pattern steps: " + steps);
+		}
+		trips = new long[(int) steps + 1];
+		actualTravelTimes = new long[(int) steps + 1];
+		simulatedTravelTimes = new long[(int) steps + 1];
+	}
+
+	/**
+	 * @param pickupTime the pickup time of the trip
+	 * @param dropoffTime the drop off time of the trip
+	 * @param simulatedTravelTime the shortest travel time from the pickup location to the drop off location
+	 */
+	void addTrip(long pickupTime, long dropoffTime, long simulatedTravelTime) {
+		int lastStep = trips.length - 2;
+		// steps that begin at or before the pickup
+		long high = Math.min(Math.floorDiv(pickupTime - firstPickupTime, step), lastStep);
+		// steps whose epoch ends after both the pickup and the drop off
+		long low = Math.max(0, Math.floorDiv(Math.max(pickupTime, dropoffTime) - firstPickupTime - epoch, step) + 1);
+		if (low > high) {
+			return;
+		}
+		add(trips, (int) low, (int) high, 1);
+		add(actualTravelTimes, (int) low, (int) high, dropoffTime - pickupTime);
+		add(simulatedTravelTimes, (int) low, (int) high, simulatedTravelTime);
+	}
+
+	private static void add(long[] differences, int low, int high, long value) {
+		differences[low] += value;
+		differences[high + 1] -= value;
+	}
+
+	/**
+	 * @param dynamicTraffic whether the speed factors are derived from the trips; all factors are 1 otherwise
+	 * @return the traffic pattern
+	 */
+	TrafficPattern build(boolean dynamicTraffic) {
+		TrafficPattern trafficPattern = new TrafficPattern(step);
+		double lastKnownSpeedFactor = DEFAULT_SPEED_FACTOR;
+		long tripCount = 0;
+		long totalActualTravelTime = 0;
+		long totalSimulatedTravelTime = 0;
+		for (int i = 0; i < trips.length - 1; i++) {
+			tripCount += trips[i];
+			totalActualTravelTime += actualTravelTimes[i];
+			totalSimulatedTravelTime += simulatedTravelTimes[i];
+			long epochBeginTime = firstPickupTime + i * step;
+
+			if (!dynamicTraffic) {
+				trafficPattern.addTrafficPatternItem(epochBeginTime, 1.0);
+			} else if (tripCount == 0 || totalActualTravelTime == 0) {
+				// use the previous epoch if available
+				trafficPattern.addTrafficPatternItem(epochBeginTime, lastKnownSpeedFactor);
+			} else {
+				double speedFactor = ((double) totalSimulatedTravelTime) / totalActualTravelTime;
+				if (speedFactor < 0.0) { // didn't get a valid speed factor
+					trafficPattern.addTrafficPatternItem(epochBeginTime, lastKnownSpeedFactor);
+				} else {
+					if (speedFactor > 1.0) { // cap speed factor to 1
+						speedFactor = 1.0;
+					}
+					trafficPattern.addTrafficPatternItem(epochBeginTime, speedFactor);
+					lastKnownSpeedFactor = speedFactor;
+				}
+			}
+		}
+		return trafficPattern;
+	}
+}
@@ -4,7 +4,9 @@ import COMSETsystem.FleetManager;
 import COMSETsystem.Simulator;
 
 import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
+import java.util.logging.Logger;
 import java.util.Random;
 import java.util.Properties;
 import java.io.FileInputStream;
@@ -111,8 +113,62 @@ public class Main {
                 agentPlacementSeed = random.nextLong();
             }
 
+            int pathTableThreads = 0; // use all available processors
+            String pathTableThreadsArg = prop.getProperty("comset.path_table_threads");
+            if (pathTableThreadsArg != null) {
+                pathTableThreads = Integer.parseInt(pathTableThreadsArg.trim());
+            }
+
+            String pathTableCacheDir = prop.getProperty("comset.path_table_cache_dir");
+            if (pathTableCacheDir != null) {
+                pathTableCacheDir = pathTableCacheDir.trim();
+                if (pathTableCacheDir.isEmpty()) {
+                    pathTableCacheDir = null;
+                }
+            }
+
+            Configuration.PathTableBackend pathTableBackend = Configuration.PathTableBackend.HEAP;
+            String pathTableBackendArg = prop.getProperty("comset.path_table_backend");
+            if (pathTableBackendArg != null) {
+                pathTableBackend = Configuration.PathTableBackend.valueOf(pathTableBackendArg.trim().toUpperCase());
+            }
+
+            Configuration.EventSchedulerType eventScheduler = Configuration.EventSchedulerType.HEAP;
+            String eventSchedulerArg = prop.getProperty("comset.event_scheduler");
+            if (eventSchedulerArg != null) {
+                eventScheduler = Configuration.EventSchedulerType.valueOf(eventSchedulerArg.trim().toUpperCase());
+            }
+
+            int navigationThreads = 1; // process events sequentially
+            String navigationThreadsArg = prop.getProperty("comset.navigation_threads");
+            if (navigationThreadsArg != null) {
+                navigationThreads = Integer.parseInt(navigationThreadsArg.trim());
+            }
+
+            String traceFile = prop.getProperty("comset.trace_file");
+            if (traceFile != null) {
+                traceFile = traceFile.trim();
+                if (traceFile.isEmpty()) {
+                    traceFile = null;
+                }
+            }
+
+            boolean streamResources = false;
+            String streamResourcesArg = prop.getProperty("comset.stream_resources");
+            if (streamResourcesArg != null) {
+                streamResources = Boolean.parseBoolean(streamResourcesArg.trim());
+            }
+
+            Configuration.SpatialIndexType spatialIndex = Configuration.SpatialIndexType.KDTREE;
+            String spatialIndexArg = prop.getProperty("comset.spatial_index");
+            if (spatialIndexArg != null) {
+                spatialIndex = Configuration.SpatialIndexType.valueOf(spatialIndexArg.trim().toUpperCase());
+            }
+
             if (!displayLogging) {
                 LogManager.getLogManager().reset();
+                // reset() leaves the root logger at INFO; turn it off so that messages are not even formatted
+                Logger.getLogger("").setLevel(Level.OFF);
             }
 
             Class<?> fleetManagerClass = Class.forName(agentClassName);
@@ -120,7 +176,9 @@ public class Main {
             Configuration.make((Class<? extends FleetManager>) fleetManagerClass,
                     mapJSONFile, datasetFile, numberOfAgents, boundingPolygonKMLFile,
                     resourceMaximumLifeTime, agentPlacementSeed, dynamicTraffic, trafficPatternEpoch,
-                    trafficPatternStep);
+                    trafficPatternStep, pathTableThreads, pathTableCacheDir,
+                    pathTableBackend, eventScheduler, navigationThreads, traceFile,
+                    streamResources, spatialIndex);
 
             Simulator simulator = new Simulator(Configuration.get());
 
@@ -3,6 +3,8 @@ package MapCreation;
 import COMSETsystem.*;
 import DataParsing.GeoProjector;
 import DataParsing.KdTree;
+import DataParsing.LinkGrid;
+import DataParsing.SpatialIndex;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -81,6 +83,9 @@ public class MapCreator {
 	// Used to project from lat,lon to x,y in meters
 	GeoProjector projector;
 
+	// The kind of index of the links used for map matching.
+	Configuration.SpatialIndexType spatialIndex;
+
 	// The bounding polygon for cropping the map.
 	// Created from boundingPolygonKMLFile
 	static List<double[]> boundingPolygon;
@@ -97,6 +102,7 @@ public class MapCreator {
 	 */
 	public MapCreator(Configuration configuration) {
 
+		spatialIndex = configuration.spatialIndex;
 		boundingPolygon = getPolygonFromKML(configuration.boundingPolygonKMLFile);
 
 		// Initialize intersections to be a TreeMap
@@ -450,15 +456,12 @@ public class MapCreator {
 		for (Intersection intersection : intersections.values()) {
 			Vertex vertex = intersection.vertex;
 			for (Link link : vertex.linksMapFrom.values()) {
-				// create a new road
-				Road road = new Road();
-				road.from = intersection;
-
 				// extend the road by visiting non-intersection vertices one by one until
 				// an intersection is reached
+				List<Link> roadLinks = new ArrayList<>();
 				Link currentLink = link;
 				while (currentLink.to.intersection == null) {
-					road.addLink(currentLink);
+					roadLinks.add(currentLink);
 					for (Link linkFrom : currentLink.to.linksMapFrom.values()) {
 						if (linkFrom.to != currentLink.from) {
 							currentLink = linkFrom;
@@ -467,15 +470,20 @@ public class MapCreator {
 					}
 				}
 				// add the link that connects to the end intersection
-				road.addLink(currentLink);
-				road.to = currentLink.to.intersection;
+				roadLinks.add(currentLink);
+
+				// create a new road
+				Road road = new Road(intersection, currentLink.to.intersection);
+				for (Link roadLink : roadLinks) {
+					road.addLink(roadLink);
+				}
 
 				// check if there is duplicate from-to pair
 				// in the case of duplicate, keep the shorter road
 				Road toAbandon = null;
 				for (Road aRoad : intersection.roadsMapFrom.values()) {
 					if (aRoad.to.id == road.to.id) {
-						if (road.travelTime >= aRoad.travelTime) {
+						if (road.getTravelTime() >= aRoad.getTravelTime()) {
 							// abandon new road
 							toAbandon = road;
 						} else {
@@ -674,12 +682,12 @@ public class MapCreator {
 	 * @return an instance of CityMap
 	 */
 	public CityMap outputCityMap() {
-		KdTree kdTree = new KdTree();
+		List<Link> links = new ArrayList<>();
 		for (Vertex vertex : vertices.values()) {
-			for (Link link : vertex.getLinksFrom()) {
-				kdTree.insert(link);	
-			}			
+			links.addAll(vertex.getLinksFrom());
 		}
+		SpatialIndex linkIndex = spatialIndex == Configuration.SpatialIndexType.GRID
+				? new LinkGrid(links) : new KdTree(links);
 		List<Road> roads = new ArrayList<>();
 		for (Intersection inter : intersections.values()) {
 			roads.addAll(inter.getRoadsFrom());
@@ -688,7 +696,7 @@ public class MapCreator {
 		for (Road road : roads) {
 			road.setSpeed();
 		}
-		return new CityMap(intersections, roads, projector, kdTree);
+		return new CityMap(intersections, roads, projector, linkIndex);
 	}
 
 	public List<double[]> boundingPolygon() {
@@ -8,6 +8,7 @@ import java.time.LocalDateTime;
 public class GlobalParameters {
     public static final int timeInterval = 5;
     public static final int timeHorizon = 20;
+    public static final int speedProfileIntervals = 24; // the number of time intervals of a predicted speed profile
     public static final int numOfTimeIntervalsPerDay = 288;
     public static final int numOfIntersectionTimeIntervalPerDay = 48;
     public static final int cruising_threshold = 600;
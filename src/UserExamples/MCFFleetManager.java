@@ -19,10 +19,16 @@ public class MCFFleetManager extends FleetManager {
     private final Set<Long> occupiedAgent = new TreeSet<>(Comparator.comparingLong((Long id) -> id));
     private final Map<Long, Random> agentRnd = new HashMap<>();
     private final Map<Long, Resource> assignmentForOccupied = new HashMap<>();
-    Map<Long, LinkedList<Intersection>> agentRoutes = new HashMap<>();
+    // The destination of the route of every agent; routes are followed one next hop at a time
+    Map<Long, Intersection> agentDestinations = new HashMap<>();
+    // The route of every agent toward its destination, kept only when the map has no next hop table
+    private final Map<Long, Route> agentRoutes = new HashMap<>();
 
     TemporalUtils temporalUtils;
     TrafficPatternPred trafficPatternPred;
+    // Predicted speed profiles keyed by the begin time of the time interval they start with; only the profiles
+    // that overlap the latest one are kept
+    Map<Long, SpeedProfile> speedProfiles = new HashMap<>();
     H3Core h3;
     Map<Long, Long> agentStartSearchTime = new HashMap<>();
     List<Region> regionList = new ArrayList<>();
@@ -56,7 +62,7 @@ public class MCFFleetManager extends FleetManager {
 //            Long assignedAgent = getNearestAvailableAgent(resource, time);
             if (assignedAgent != null) {
                 resourceAssignment.put(assignedAgent, resource);
-                agentRoutes.put(assignedAgent, new LinkedList<>());
+                agentDestinations.remove(assignedAgent);
                 availableAgent.remove(assignedAgent);
                 candidateAgents.remove(assignedAgent);
                 action = AgentAction.assignTo(assignedAgent, resource.id);
@@ -81,10 +87,7 @@ public class MCFFleetManager extends FleetManager {
                     if(assignmentForOccupied.values().contains(res))
                         continue;
 
-                    long travelTime = map.travelTimeBetween(currentLoc, res.pickupLoc);
-
-                    double speedFactor = getSpeedFactor(time);
-                    long adjustedTravelTime = (long) (travelTime / speedFactor);
+                    long adjustedTravelTime = getTravelTimeBetween(currentLoc, res.pickupLoc, time);
 
                     // if the resource is reachable before expiration
                     long arriveTime = time + adjustedTravelTime;
@@ -115,14 +118,14 @@ public class MCFFleetManager extends FleetManager {
             waitingResources.remove(resource);
             removeResourceFromRegion(resource);
             if (resource.assignedAgentId != -1) {
-                agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
+                agentDestinations.remove(resource.assignedAgentId);
                 availableAgent.add(resource.assignedAgentId);
                 addAgentToRegion(resource.assignedAgentId, currentLoc);
                 agentStartSearchTime.put(resource.assignedAgentId, time);
                 resourceAssignment.remove(resource.assignedAgentId);
             }
         } else if (state == ResourceState.PICKED_UP) {
-            agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
+            agentDestinations.remove(resource.assignedAgentId);
             occupiedAgent.add(resource.assignedAgentId);
         }
 
@@ -155,13 +158,13 @@ public class MCFFleetManager extends FleetManager {
             hasRepositioned[timeIndex] = true;
         }
 
-        LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
-        if (route.isEmpty()) {
-            route = planRoute(agentId, currentLoc, time);
-            agentRoutes.put(agentId, route);
+        Intersection destination = agentDestinations.get(agentId);
+        if (destination == null || destination == currentLoc.road.to) {
+            destination = planRoute(agentId, currentLoc, time);
+            agentDestinations.put(agentId, destination);
         }
 
-        Intersection nextLocation = route.poll();
+        Intersection nextLocation = nextHop(agentId, currentLoc.road.to, destination);
         Road nextRoad = currentLoc.road.to.roadTo(nextLocation);
         LocationOnRoad locationOnRoad = LocationOnRoad.createFromRoadStart(nextRoad);
         agentLastLocation.put(agentId, locationOnRoad);
@@ -171,15 +174,15 @@ public class MCFFleetManager extends FleetManager {
     @Override
     public Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc, Resource resource) {
         agentLastAppearTime.put(agentId, time);
-        LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
+        Intersection destination = agentDestinations.get(agentId);
 
-        if (route.isEmpty()) {
-            route = planRouteToTarget(resource.pickupLoc, resource.dropOffLoc);
-            agentRoutes.put(agentId, route);
+        if (destination == null || destination == currentLoc.road.to) {
+            destination = resource.dropOffLoc.road.from;
+            agentDestinations.put(agentId, destination);
         }
 
 
-        Intersection nextLocation = route.poll();
+        Intersection nextLocation = nextHop(agentId, currentLoc.road.to, destination);
         Road nextRoad = currentLoc.road.to.roadTo(nextLocation);
         LocationOnRoad locationOnRoad = LocationOnRoad.createFromRoadStart(nextRoad);
         agentLastLocation.put(agentId, locationOnRoad);
@@ -204,28 +207,48 @@ public class MCFFleetManager extends FleetManager {
         readIntersectionResourceFile(GlobalParameters.intersectionResourceFile);
     }
 
-    LinkedList<Intersection> planRoute(long agentId, LocationOnRoad currentLocation, long time) {
+    /**
+     * Plan the route of an agent, which is the shortest path from the end of the agent's current road to the
+     * returned destination. The route is followed with nextHop().
+     */
+    Intersection planRoute(long agentId, LocationOnRoad currentLocation, long time) {
         Resource assignedRes = resourceAssignment.get(agentId);
 
         if (assignedRes != null) {
-            Intersection sourceIntersection = currentLocation.road.to;
-            Intersection destinationIntersection = assignedRes.pickupLoc.road.from;
-            LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                    destinationIntersection);
-            shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-            return shortestTravelTimePath;
+            return assignedRes.pickupLoc.road.from;
         } else {
             return getSTPRoute(agentId, currentLocation, time);
         }
     }
 
-    LinkedList<Intersection> planRouteToTarget(LocationOnRoad source, LocationOnRoad destination) {
-        Intersection sourceIntersection = source.road.to;
-        Intersection destinationIntersection = destination.road.from;
-        LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                destinationIntersection);
-        shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-        return shortestTravelTimePath;
+    /**
+     * The shortest path an agent follows and the destination it leads to.
+     */
+    private static final class Route {
+        final IntersectionPath path = new IntersectionPath();
+        Intersection destination;
+    }
+
+    /**
+     * Get the intersection an agent goes to next on its route. With a next hop table in the map this is a
+     * lookup; otherwise the path is searched once when the destination changes and kept until it is driven
+     * to its end, so that not every hop runs a search.
+     * @param agentId the unique id of the agent
+     * @param current the intersection the agent is at
+     * @param destination the destination of the agent's route
+     * @return the next intersection on the route; null if current is the destination
+     */
+    private Intersection nextHop(long agentId, Intersection current, Intersection destination) {
+        if (map.hasNextHopTable()) {
+            return map.nextHop(current, destination);
+        }
+        Route route = agentRoutes.computeIfAbsent(agentId, id -> new Route());
+        if (route.destination != destination || route.path.peek() != current) {
+            map.shortestTravelTimePath(current, destination, route.path);
+            route.destination = destination;
+        }
+        route.path.poll();
+        return route.path.peek();
     }
 
     /**
@@ -233,9 +256,9 @@ public class MCFFleetManager extends FleetManager {
      * @param agentId the unique id of the agent
      * @param currentLocation current location of agent
      * @param time current simulation time
-     * @return the search route for idle agent
+     * @return the destination of the search route for idle agent
      */
-    LinkedList<Intersection> getSTPRoute(long agentId, LocationOnRoad currentLocation, long time) {
+    Intersection getSTPRoute(long agentId, LocationOnRoad currentLocation, long time) {
         Intersection sourceIntersection = currentLocation.road.to;
 
         Random rnd = agentRnd.getOrDefault(agentId, new Random(agentId));
@@ -263,16 +286,13 @@ public class MCFFleetManager extends FleetManager {
                     sourceIntersection.roadsMapFrom.values().toArray(new Road[0]);
             destinationIntersection = roadsFrom[0].to;
         }
-        LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                destinationIntersection);
-        shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-        return shortestTravelTimePath;
+        return destinationIntersection;
     }
 
     // Convert location to latitude and longtitude
     private double[] getLocationLatLon(LocationOnRoad location){
         double[] latLon = new double[2];
-        double proportion = ((double) location.getStaticTravelTimeOnRoad()) / location.road.travelTime;
+        double proportion = ((double) location.getStaticTravelTimeOnRoad()) / location.road.getTravelTime();
 
         if(proportion < 0)
             proportion = 0;
@@ -407,21 +427,46 @@ public class MCFFleetManager extends FleetManager {
         return trafficPatternPred.getSpeedFactor(index);
     }
 
-    // To get the estimated travel time using the predicted speed factor
+    /**
+     * Call this method to get the predicted speed factors from the time interval of current time on. Trips
+     * longer than the profile use the speed factor of its last time interval. When a profile is created, the
+     * profiles that end before it begins are dropped, since the simulation time only moves forward and the times
+     * asked for lie within a trip of it.
+     * @param time current simulation time
+     * @return the predicted speed profile
+     */
+    private SpeedProfile getSpeedProfile(long time){
+        long step = GlobalParameters.timeInterval * 60 * Configuration.timeResolution;
+        long beginTime = time - Math.floorMod(time, step);
+        SpeedProfile profile = speedProfiles.get(beginTime);
+        if (profile != null) {
+            return profile;
+        }
+        long oldestBeginTime = beginTime - (GlobalParameters.speedProfileIntervals - 1) * step;
+        speedProfiles.keySet().removeIf(t -> t < oldestBeginTime);
+        return speedProfiles.computeIfAbsent(beginTime, t -> {
+            double[] speedFactors = new double[GlobalParameters.speedProfileIntervals];
+            for (int i = 0; i < speedFactors.length; i++) {
+                int index = temporalUtils.findTimeIntervalIndex(t + i * step);
+                speedFactors[i] = trafficPatternPred.getSpeedFactor(Math.min(index, trafficPatternPred.size() - 1));
+            }
+            return new SpeedProfile(t, step, speedFactors);
+        });
+    }
+
+    // To get the estimated travel time by integrating the predicted speed factors along the trip
     private long getTravelTimeBetween(LocationOnRoad source, LocationOnRoad destination, long time){
-        long travelTime = map.travelTimeBetween(source, destination);
-        return (long) (travelTime / getSpeedFactor(time));
+        return map.travelTimeBetween(source, destination, time, getSpeedProfile(time));
     }
 
     private long getTravelTimeBetween(Intersection source, Intersection destination, long time){
-        double travelTime = map.travelTimeBetween(source, destination);
-        return (long) (travelTime / getSpeedFactor(time));
+        return (long) map.travelTimeBetween(source, destination, time, getSpeedProfile(time));
     }
 
     private long getTravelTimeBetween(LocationOnRoad source, Intersection destination, long time){
         double travelTime =
-                map.travelTimeBetween(source.road.to, destination) + source.road.travelTime - source.getStaticTravelTimeOnRoad();
-        return (long) (travelTime / getSpeedFactor(time));
+                map.travelTimeBetween(source.road.to, destination) + source.road.getTravelTime() - source.getStaticTravelTimeOnRoad();
+        return (long) getSpeedProfile(time).travelTime(time, travelTime);
     }
 
     // return the region of intersection
@@ -744,10 +789,7 @@ public class MCFFleetManager extends FleetManager {
                     sourceIntersection.roadsMapFrom.values().toArray(new Road[0]);
             destinationIntersection = roadsFrom[0].to;
         }
-        LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                destinationIntersection);
-        shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-        agentRoutes.put(agent, shortestTravelTimePath);
+        agentDestinations.put(agent, destinationIntersection);
     }
 
     private Intersection getDestination(Region region, long time){
@@ -29,4 +29,8 @@ public class TrafficPatternPred {
     public double getSpeedFactor(int index){
         return speed_factor_pred.get(index);
     }
+
+    public int size(){
+        return speed_factor_pred.size();
+    }
 }
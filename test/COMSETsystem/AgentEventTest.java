@@ -56,7 +56,7 @@ public class AgentEventTest {
     @Test
     public void testTrigger_cruising() throws Exception {
         long stubTravelTime = 10;
-        double initTimeFromStartIntersection = testMap.roadFrom1to2.travelTime / 2;
+        double initTimeFromStartIntersection = testMap.roadFrom1to2.getTravelTime() / 2;
         // Construction agent reaching intersection2
         LocationOnRoad locAtMiddleOfRoad = new LocationOnRoad(testMap.roadFrom1to2, initTimeFromStartIntersection);
 
@@ -112,7 +112,7 @@ public class AgentEventTest {
         // Create an agentEvent that has a pickup upon reaching intersection2 the beginning of
         // roadFrom2to3
         LocationOnRoad locAtReachedIntersection = new LocationOnRoad(testMap.roadFrom1to2,
-                testMap.roadFrom1to2.travelTime);
+                testMap.roadFrom1to2.getTravelTime());
         AgentEvent agentEvent = new AgentEvent(locAtReachedIntersection, TRIGGER_TIME,
                 mockSimulator, mockFleetManager);
 
@@ -203,7 +203,7 @@ public class AgentEventTest {
 
     @Test
     public void testNavigate_withPickUp() throws Exception {
-        LocationOnRoad locationOnRoad = spy(new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime));
+        LocationOnRoad locationOnRoad = spy(new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.getTravelTime()));
         when(locationOnRoad.toString()).thenReturn("123,45t");
 
 
@@ -231,7 +231,7 @@ public class AgentEventTest {
 
     @Test
     public void testExpiration_withAssignedAgent() throws Exception {
-        LocationOnRoad locationOnRoad = spy(new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime));
+        LocationOnRoad locationOnRoad = spy(new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.getTravelTime()));
         when(locationOnRoad.toString()).thenReturn("123,45t");
 
         ResourceEvent resource = new ResourceEvent(
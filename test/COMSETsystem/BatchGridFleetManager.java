@@ -0,0 +1,145 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A GridFleetManager that decides for groups of agents and resources, one member after another, and records the
+ * groups it is called for, and the calls for a single agent or for a single resource that becomes available,
+ * which the simulator should not make. A group of agents also records what the fleet manager was told of before
+ * at the same time, which tells why it is not part of an earlier group at that time.
+ */
+public class BatchGridFleetManager extends GridFleetManager implements BatchFleetManager {
+
+    /**
+     * A call of the fleet manager for a group.
+     */
+    public static class Group {
+        public final long time;
+        public final List<Long> ids = new ArrayList<>();
+        // The agents of which the fleet manager was told before at the same time; for a group of agents.
+        public final Set<Long> agentsBefore;
+        // Whether the fleet manager was told of something else since the last group at the same time; for a group
+        // of agents.
+        public final boolean afterOtherCall;
+
+        Group(long time, Set<Long> agentsBefore, boolean afterOtherCall) {
+            this.time = time;
+            this.agentsBefore = agentsBefore;
+            this.afterOtherCall = afterOtherCall;
+        }
+    }
+
+    public final List<Group> arrivalGroups = new ArrayList<>();
+    public final List<Group> resourceGroups = new ArrayList<>();
+    public final List<String> singleCalls = new ArrayList<>();
+
+    private boolean inGroup;
+
+    // The time of the last call, the agents of which the fleet manager was told at that time, and whether it was
+    // told of something other than a group of agents since the last such group.
+    private long time = Long.MIN_VALUE;
+    private final Set<Long> agents = new HashSet<>();
+    private boolean otherCall;
+
+    private void told(long time, long agentId, boolean group) {
+        if (time != this.time) {
+            this.time = time;
+            agents.clear();
+        }
+        if (agentId >= 0) {
+            agents.add(agentId);
+        }
+        otherCall = !group;
+    }
+
+    public BatchGridFleetManager(CityMap map) {
+        super(map);
+    }
+
+    @Override
+    public List<Intersection> onReachIntersections(long time, List<IntersectionArrival> arrivals) {
+        boolean afterOtherCall = otherCall;
+        told(time, -1, true);
+        Group group = new Group(time, new HashSet<>(agents), afterOtherCall);
+        List<Intersection> next = new ArrayList<>();
+        inGroup = true;
+        for (IntersectionArrival arrival : arrivals) {
+            told(time, arrival.agentId, true);
+            group.ids.add(arrival.agentId);
+            next.add(arrival.resource == null ? onReachIntersection(arrival.agentId, time, arrival.currentLoc)
+                    : onReachIntersectionWithResource(arrival.agentId, time, arrival.currentLoc, arrival.resource));
+        }
+        inGroup = false;
+        arrivalGroups.add(group);
+        return next;
+    }
+
+    @Override
+    public List<AgentAction> onResourcesAvailable(long time, List<Resource> resources) {
+        told(time, -1, false);
+        Group group = new Group(time, null, false);
+        List<AgentAction> actions = new ArrayList<>();
+        inGroup = true;
+        for (Resource resource : resources) {
+            group.ids.add(resource.id);
+            actions.add(onResourceAvailabilityChange(resource, ResourceState.AVAILABLE, resource.pickupLoc, time));
+        }
+        inGroup = false;
+        resourceGroups.add(group);
+        return actions;
+    }
+
+    @Override
+    public void onAgentIntroduced(long agentId, LocationOnRoad currentLoc, long time) {
+        told(time, agentId, false);
+        super.onAgentIntroduced(agentId, currentLoc, time);
+    }
+
+    @Override
+    public AgentAction onResourceAvailabilityChange(Resource resource, ResourceState state, LocationOnRoad currentLoc,
+                                                    long time) {
+        if (!inGroup) {
+            told(time, resource.assignedAgentId, false);
+        }
+        if (state == ResourceState.AVAILABLE && !inGroup) {
+            singleCalls.add("resource " + resource.id);
+        }
+        return super.onResourceAvailabilityChange(resource, state, currentLoc, time);
+    }
+
+    @Override
+    public Intersection onReachIntersection(long agentId, long time, LocationOnRoad currentLoc) {
+        if (!inGroup) {
+            singleCalls.add("agent " + agentId);
+        }
+        return super.onReachIntersection(agentId, time, currentLoc);
+    }
+
+    @Override
+    public Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc,
+                                                        Resource resource) {
+        if (!inGroup) {
+            singleCalls.add("agent " + agentId);
+        }
+        return super.onReachIntersectionWithResource(agentId, time, currentLoc, resource);
+    }
+
+    /**
+     * A BatchGridFleetManager that leaves out the decision for the last agent of a group of more than one.
+     */
+    public static class Incomplete extends BatchGridFleetManager {
+
+        public Incomplete(CityMap map) {
+            super(map);
+        }
+
+        @Override
+        public List<Intersection> onReachIntersections(long time, List<IntersectionArrival> arrivals) {
+            List<Intersection> next = super.onReachIntersections(time, arrivals);
+            return next.size() > 1 ? next.subList(0, next.size() - 1) : next;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CalendarQueueTest {
+
+    /**
+     * A CalendarQueue and an EventQueue driven by the same operations. An event is in at most one queue, so
+     * each queue gets its own copy of every event; the copies are created in pairs so that they are ordered
+     * alike.
+     */
+    private static class Pair {
+        final CalendarQueue calendar;
+        final EventQueue heap = new EventQueue();
+        final Map<Event, Event> copies = new IdentityHashMap<>();
+        final List<Event> queued = new ArrayList<>();
+        final List<Event> idle = new ArrayList<>();
+
+        Pair(long width) {
+            calendar = new CalendarQueue(width);
+        }
+
+        void add(long time) {
+            Event event = new TestEvent(time);
+            copies.put(event, new TestEvent(time));
+            add(event);
+        }
+
+        void add(Event event) {
+            calendar.add(event);
+            heap.add(copies.get(event));
+            queued.add(event);
+        }
+
+        // change the time of an event that is in no queue and add it again
+        void readd(Random random, long time) {
+            Event event = idle.remove(random.nextInt(idle.size()));
+            event.setTime(time);
+            copies.get(event).setTime(time);
+            add(event);
+        }
+
+        void remove(Random random) {
+            Event event = queued.remove(random.nextInt(queued.size()));
+            assertTrue(calendar.contains(event));
+            assertTrue(calendar.remove(event));
+            assertTrue(heap.remove(copies.get(event)));
+            assertFalse(calendar.contains(event));
+            assertFalse(calendar.remove(event));
+            idle.add(event);
+        }
+
+        void poll() {
+            Event expected = heap.poll();
+            Event event = calendar.poll();
+            assertSame(expected, event == null ? null : copies.get(event));
+            if (event != null) {
+                assertFalse(calendar.contains(event));
+                queued.remove(event);
+                idle.add(event);
+            }
+        }
+
+        void assertSameState() {
+            assertEquals(heap.size(), calendar.size());
+            assertEquals(heap.isEmpty(), calendar.isEmpty());
+            Event first = calendar.peek();
+            assertSame(heap.peek(), first == null ? null : copies.get(first));
+        }
+
+        void drain() {
+            while (!heap.isEmpty()) {
+                poll();
+                assertSameState();
+            }
+            poll();
+        }
+    }
+
+    // run random operations whose times are drawn around a moving current time
+    private static void runRandomOperations(long seed, long width, int operations, long spread) {
+        Random random = new Random(seed);
+        Pair pair = new Pair(width);
+        long now = -spread;
+        for (int i = 0; i < operations; i++) {
+            // grow to a few thousand events and shrink again, so that buckets are doubled and halved
+            boolean growing = (i / (operations / 4)) % 2 == 0;
+            int operation = random.nextInt(10);
+            long time;
+            if (random.nextInt(100) == 0) {
+                // far beyond a year of buckets
+                time = now + spread * 1000 + random.nextInt(1000);
+            } else {
+                time = now + (long) (random.nextDouble() * spread);
+            }
+            if (operation < (growing ? 6 : 2) || pair.queued.isEmpty()) {
+                if (operation == 0 && !pair.idle.isEmpty()) {
+                    pair.readd(random, time);
+                } else {
+                    pair.add(time);
+                }
+            } else if (operation < 5) {
+                pair.remove(random);
+            } else {
+                Event first = pair.calendar.peek();
+                pair.poll();
+                now = first.getTime();
+            }
+            pair.assertSameState();
+        }
+        pair.drain();
+    }
+
+    @Test
+    public void testRandomOperations_matchEventQueue() {
+        runRandomOperations(1, 1, 40000, 100);
+        runRandomOperations(2, 1000, 40000, 3600);
+        runRandomOperations(3, 7, 40000, 5);
+    }
+
+    @Test
+    public void testRandomOperations_negativeTimes() {
+        runRandomOperations(4, 10, 20000, 1000000);
+        Random random = new Random(5);
+        Pair pair = new Pair(3);
+        for (int i = 0; i < 1000; i++) {
+            pair.add(random.nextInt(2001) - 1000);
+        }
+        pair.assertSameState();
+        pair.drain();
+    }
+
+    @Test
+    public void testPeek_noEventWithinAYear() {
+        Pair pair = new Pair(1);
+        pair.add(0);
+        pair.add(1000000000000L);
+        pair.add(-1000000000000L);
+        pair.add(1000000000001L);
+        pair.poll();
+        pair.poll();
+        pair.assertSameState();
+        // an event earlier than the last polled one moves the search back
+        pair.add(-5);
+        pair.add(500);
+        pair.assertSameState();
+        pair.drain();
+
+        // many events, each in a separate year
+        for (int i = 0; i < 100; i++) {
+            pair.add((long) i * 1000000 * ((i & 1) == 0 ? 1 : -1));
+        }
+        pair.drain();
+    }
+
+    @Test
+    public void testPoll_fifoAmongEqualTimes() {
+        CalendarQueue queue = new CalendarQueue(10);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(new TestEvent(42));
+        }
+        for (Event event : events) {
+            queue.add(event);
+        }
+        for (Event event : events) {
+            assertSame(event, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+    }
+}
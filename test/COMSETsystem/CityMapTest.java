@@ -4,6 +4,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -15,9 +22,9 @@ public class CityMapTest {
     public void testTravelTimeBetween_sameLocation() {
         CityMap map = new CityMap();
         SimpleMap simpleMap = new SimpleMap();
-        simpleMap.roadFrom1to2.speed = 1; // m/s
+        assertEquals(1.0, simpleMap.roadFrom1to2.getSpeed(), 0.0); // m/s
         LocationOnRoad location1 = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom1to2, 0.2);
-        assertEquals(1000.0, simpleMap.roadFrom1to2.length, 0.0);
+        assertEquals(1000.0, simpleMap.roadFrom1to2.getLength(), 0.0);
         assertEquals(200, location1.getStaticTravelTimeOnRoad());
         assertEquals(0, map.travelTimeBetween(location1, location1));
     }
@@ -26,7 +33,7 @@ public class CityMapTest {
     public void testTravelTimeBetween_differentLocationOnSameRoad() {
         CityMap map = new CityMap();
         SimpleMap simpleMap = new SimpleMap();
-        simpleMap.roadFrom1to2.speed = 1; // m/s
+        assertEquals(1.0, simpleMap.roadFrom1to2.getSpeed(), 0.0); // m/s
         LocationOnRoad origin = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom1to2, 0.2);
         LocationOnRoad destination = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom1to2, 0.3);
         assertEquals(100, map.travelTimeBetween(origin, destination));
@@ -36,7 +43,7 @@ public class CityMapTest {
     public void testTravelTimeBetween_pastDestinationOnSameRoad() {
         CityMap spyMap = spy(new CityMap());
         SimpleMap simpleMap = new SimpleMap();
-        simpleMap.roadFrom1to2.speed = 1; // m/s
+        assertEquals(1.0, simpleMap.roadFrom1to2.getSpeed(), 0.0); // m/s
         LocationOnRoad origin = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom1to2, 0.31);
         LocationOnRoad destination = SimpleMap.makeLocationFromRoad(simpleMap.roadFrom1to2, 0.3);
 
@@ -52,7 +59,7 @@ public class CityMapTest {
     public void testTravelTimeBetween_pastDestinationOnButReallyCloseSameRoad() {
         CityMap spyMap = spy(new CityMap());
         SimpleMap simpleMap = new SimpleMap();
-        simpleMap.roadFrom1to2.speed = 1; // m/s
+        assertEquals(1.0, simpleMap.roadFrom1to2.getSpeed(), 0.0); // m/s
 
         // The two locations are so close that rounding error causes the travel time in the
         // converted StaticLocationOnRoad object to be the same but because travelTimeBetween
@@ -68,5 +75,254 @@ public class CityMapTest {
         // 3600 + 300 + (1000-Round(300.05)) = 4600
         assertEquals(4600, (long)(spyMap.travelTimeBetween(origin, destination)));
     }
-}
 
+    private static final Configuration.PathTableBackend[] TABLE_BACKENDS = {
+            Configuration.PathTableBackend.HEAP, Configuration.PathTableBackend.MAPPED};
+
+    // the path from a source to a destination taken one next hop at a time
+    private static List<Intersection> nextHops(CityMap map, Intersection source, Intersection destination) {
+        List<Intersection> path = new ArrayList<>();
+        Intersection current = source;
+        while (current != null) {
+            path.add(current);
+            assertTrue("nextHop() loops", path.size() <= map.intersections().size());
+            current = map.nextHop(current, destination);
+        }
+        return path;
+    }
+
+    // assert that a path leads from the source to the destination over roads in the shortest travel time
+    private static void assertShortestPath(RoadNetwork network, int source, int destination,
+                                           List<Intersection> path) {
+        assertSame(network.intersections[source], path.get(0));
+        assertSame(network.intersections[destination], path.get(path.size() - 1));
+        double travelTime = 0;
+        for (int i = 1; i < path.size(); i++) {
+            Road road = path.get(i - 1).roadsMapFrom.get(path.get(i));
+            assertNotNull("no road from " + path.get(i - 1) + " to " + path.get(i), road);
+            travelTime += road.getTravelTime();
+        }
+        assertEquals(network.map.travelTimeBetween(network.intersections[source],
+                network.intersections[destination]), travelTime, 1e-9);
+    }
+
+    // assert that every path from the table is a shortest path, that following next hops yields the same path,
+    // and that the path from the second intersection of a path is the rest of the path
+    private static void assertConsistentPaths(RoadNetwork network) {
+        CityMap map = network.map;
+        int size = network.intersections.length;
+        for (int source = 0; source < size; source++) {
+            for (int destination = 0; destination < size; destination++) {
+                Intersection from = network.intersections[source];
+                Intersection to = network.intersections[destination];
+                if (map.travelTimeBetween(from, to) == Double.MAX_VALUE) {
+                    assertNotEquals(source, destination);
+                    continue;
+                }
+                List<Intersection> path = map.shortestTravelTimePath(from, to);
+                assertShortestPath(network, source, destination, path);
+                assertEquals(path, nextHops(map, from, to));
+                if (path.size() > 1) {
+                    assertEquals(path.subList(1, path.size()), map.shortestTravelTimePath(path.get(1), to));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPath_equalCostAlternatives() {
+        // 0 -> 1 -> 3 and 0 -> 2 -> 3 take the same time
+        int[][] roads = {{0, 1}, {0, 2}, {1, 3}, {2, 3}, {3, 4}, {2, 4}, {1, 2}};
+        double[] travelTimes = {10, 10, 10, 10, 5, 20, 0};
+        for (Configuration.PathTableBackend backend : TABLE_BACKENDS) {
+            RoadNetwork network = new RoadNetwork(5, roads, travelTimes);
+            network.map.calcTravelTimes(1, backend, null);
+            assertEquals(25.0, network.map.travelTimeBetween(network.intersections[0], network.intersections[4]),
+                    0.0);
+            assertConsistentPaths(network);
+        }
+    }
+
+    @Test
+    public void testShortestPath_zeroTravelTimes() {
+        // 0, 1 and 2 are connected both ways by roads taking no time
+        int[][] roads = {{0, 1}, {1, 0}, {1, 2}, {2, 1}, {0, 2}, {2, 0}, {2, 3}, {3, 0}};
+        double[] travelTimes = {0, 0, 0, 0, 0, 0, 1, 1};
+        for (Configuration.PathTableBackend backend : TABLE_BACKENDS) {
+            RoadNetwork network = new RoadNetwork(4, roads, travelTimes);
+            network.map.calcTravelTimes(1, backend, null);
+            assertConsistentPaths(network);
+        }
+    }
+
+    @Test
+    public void testShortestPath_randomNetworks() {
+        for (long seed = 0; seed < 5; seed++) {
+            for (Configuration.PathTableBackend backend : TABLE_BACKENDS) {
+                RoadNetwork network = RoadNetwork.random(40, seed);
+                network.map.calcTravelTimes(2, backend, null);
+                assertConsistentPaths(network);
+            }
+        }
+    }
+
+    // assert that an attempt to change a frozen map is rejected
+    private static void assertRejected(Runnable change) {
+        try {
+            change.run();
+            fail("a frozen map was changed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFreeze_rejectsChanges() {
+        RoadNetwork network = new RoadNetwork(3, new int[][] {{0, 1}, {1, 2}}, new double[] {10, 20});
+        CityMap map = network.map;
+        Road road = network.road(0, 1);
+        Intersection from = network.intersections[0];
+        Intersection to = network.intersections[2];
+        Link link = new Link(from.vertex, to.vertex, 5, 1);
+        map.freeze();
+        assertTrue(map.isFrozen());
+
+        assertRejected(() -> road.addLink(link));
+        assertRejected(road::setSpeed);
+        assertRejected(() -> road.links.add(link));
+        assertRejected(() -> road.links.remove(0));
+        assertRejected(() -> map.roads().add(new Road(from, to)));
+        assertRejected(() -> map.intersections().remove(0L));
+        assertRejected(() -> from.roadsMapFrom.put(to, road));
+        assertRejected(() -> to.roadsMapTo.clear());
+        assertRejected(() -> from.vertex.linksMapFrom.put(to.vertex, link));
+        assertRejected(() -> network.intersections[1].vertex.linksMapTo.clear());
+
+        // the map is unchanged
+        assertEquals(1, road.links.size());
+        assertEquals(10.0, road.getLength(), 0.0);
+        assertEquals(1.0, road.getSpeed(), 0.0);
+        assertNull(link.getRoad());
+        assertEquals(2, map.roads().size());
+        assertEquals(1, from.roadsMapFrom.size());
+    }
+
+    @Test
+    public void testTravelTimeBetween_speedProfile() {
+        RoadNetwork network = new RoadNetwork(3, new int[][] {{0, 1}, {1, 2}}, new double[] {10, 20});
+        CityMap map = network.map;
+        map.calcTravelTimes(1, Configuration.PathTableBackend.HEAP, null);
+        Intersection[] intersections = network.intersections;
+        SpeedProfile profile = new SpeedProfile(0, 15, new double[] {1, 0.5});
+
+        // 10 s until the second step begins, and the remaining 20 s of the route at half the speed
+        assertEquals(50.0, map.travelTimeBetween(intersections[0], intersections[2], 5, profile), 0.0);
+        assertEquals(profile.travelTime(5, map.travelTimeBetween(intersections[0], intersections[2])),
+                map.travelTimeBetween(intersections[0], intersections[2], 5, profile), 0.0);
+        assertEquals(0.0, map.travelTimeBetween(intersections[1], intersections[1], 5, profile), 0.0);
+        assertEquals(Double.MAX_VALUE, map.travelTimeBetween(intersections[2], intersections[0], 5, profile), 0.0);
+
+        // 6 s to the end of the first road and 6 s into the second road: 5 s, then 7 s at half the speed
+        LocationOnRoad source = new LocationOnRoad(network.road(0, 1), 4);
+        LocationOnRoad destination = new LocationOnRoad(network.road(1, 2), 6);
+        assertEquals(19, map.travelTimeBetween(source, destination, 10, profile));
+        // on the same road
+        LocationOnRoad start = new LocationOnRoad(network.road(1, 2), 2);
+        LocationOnRoad end = new LocationOnRoad(network.road(1, 2), 12);
+        assertEquals(15, map.travelTimeBetween(start, end, 10, profile));
+
+        // a constant speed factor of 1 gives the travel time at the speed limits
+        SpeedProfile constant = new SpeedProfile(0, 15, new double[] {1});
+        assertEquals(map.travelTimeBetween(source, destination), map.travelTimeBetween(source, destination, 10,
+                constant));
+        // traffic that comes to a halt before the destination is reached
+        SpeedProfile halted = new SpeedProfile(0, 15, new double[] {1, 0});
+        assertEquals(Long.MAX_VALUE, map.travelTimeBetween(source, destination, 10, halted));
+    }
+
+    // assert that the contraction hierarchy of a map finds the travel times of the path table and valid paths
+    private static void assertSameRoutes(Intersection[] intersections, CityMap table, CityMap hierarchy) {
+        for (Intersection source : intersections) {
+            for (Intersection destination : intersections) {
+                double travelTime = table.travelTimeBetween(source, destination);
+                assertEquals(travelTime, hierarchy.travelTimeBetween(source, destination), 1e-9);
+                if (travelTime == Double.MAX_VALUE) {
+                    try {
+                        hierarchy.shortestTravelTimePath(source, destination);
+                        fail("a path to an unreachable destination");
+                    } catch (IllegalArgumentException e) {
+                        // expected
+                    }
+                    continue;
+                }
+                List<Intersection> path = hierarchy.shortestTravelTimePath(source, destination);
+                assertSame(source, path.get(0));
+                assertSame(destination, path.get(path.size() - 1));
+                double pathTravelTime = 0;
+                for (int i = 1; i < path.size(); i++) {
+                    Road road = path.get(i - 1).roadsMapFrom.get(path.get(i));
+                    assertNotNull("no road from " + path.get(i - 1) + " to " + path.get(i), road);
+                    pathTravelTime += road.getTravelTime();
+                }
+                assertEquals(travelTime, pathTravelTime, 1e-9);
+                Intersection next = hierarchy.nextHop(source, destination);
+                assertSame(path.size() > 1 ? path.get(1) : null, next);
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchy_simpleMap() {
+        SimpleMap simpleMap = new SimpleMap();
+        Intersection[] intersections = {simpleMap.intersection1, simpleMap.intersection2,
+                simpleMap.intersection3, simpleMap.intersection4, simpleMap.intersection5};
+        Map<Long, Intersection> intersectionsById = new TreeMap<>();
+        for (Intersection intersection : intersections) {
+            intersectionsById.put(intersection.id, intersection);
+        }
+        List<Road> roads = Arrays.asList(simpleMap.roadFrom1to2, simpleMap.roadFrom2to3,
+                simpleMap.roadFrom3to4, simpleMap.roadFrom4to5);
+
+        CityMap table = new CityMap(intersectionsById, roads, null, null);
+        table.calcTravelTimes(1, Configuration.PathTableBackend.HEAP, null);
+        CityMap hierarchy = new CityMap(intersectionsById, roads, null, null);
+        hierarchy.calcTravelTimes(1, Configuration.PathTableBackend.CH, null);
+        // 1000 m at 1 m/s, 1200 m at 60 m/s and 800 m at 20 m/s
+        assertEquals(1060.0, hierarchy.travelTimeBetween(simpleMap.intersection1, simpleMap.intersection4), 1e-9);
+        assertSameRoutes(intersections, table, hierarchy);
+    }
+
+    // assert that a contraction hierarchy of a network routes like a path table of the same network
+    private static void assertSameRoutes(RoadNetwork network) {
+        CityMap table = new CityMap(new TreeMap<>(network.map.intersections()), network.roads, null, null);
+        table.calcTravelTimes(1, Configuration.PathTableBackend.HEAP, null);
+        network.map.calcTravelTimes(1, Configuration.PathTableBackend.CH, null);
+        assertSameRoutes(network.intersections, table, network.map);
+    }
+
+    @Test
+    public void testContractionHierarchy_randomNetworks() {
+        for (long seed = 0; seed < 5; seed++) {
+            // small integer travel times with many ties
+            assertSameRoutes(RoadNetwork.random(40, seed));
+
+            // arbitrary travel times
+            Random random = new Random(seed);
+            boolean[][] connected = new boolean[40][40];
+            List<int[]> roads = new ArrayList<>();
+            while (roads.size() < 120) {
+                int from = random.nextInt(40);
+                int to = random.nextInt(40);
+                if (from != to && !connected[from][to]) {
+                    connected[from][to] = true;
+                    roads.add(new int[] {from, to});
+                }
+            }
+            double[] travelTimes = new double[roads.size()];
+            for (int i = 0; i < travelTimes.length; i++) {
+                travelTimes[i] = random.nextDouble() * 100;
+            }
+            assertSameRoutes(new RoadNetwork(40, roads.toArray(new int[0][]), travelTimes));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class EventQueueTest {
+
+    // the order of Event.compareTo() for events of one class, which exits on an event compared to itself
+    static final Comparator<Event> ORDER = Comparator.comparingLong(Event::getTime).thenComparingLong(Event::getId);
+
+    // assert that an event is in no queue
+    private static void assertNotQueued(EventQueue queue, Event event) {
+        assertEquals(-1, event.queueIndex);
+        assertFalse(event.isQueued());
+        assertFalse(queue.contains(event));
+    }
+
+    @Test
+    public void testPoll_fifoAmongEqualTimes() {
+        EventQueue queue = new EventQueue(2);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(new TestEvent(100));
+        }
+        Event earlier = new TestEvent(50);
+        for (Event event : events) {
+            queue.add(event);
+        }
+        queue.add(earlier);
+        assertSame(earlier, queue.poll());
+        for (Event event : events) {
+            assertSame(event, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testPoll_equalTimesOrderedById() {
+        EventQueue queue = new EventQueue();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(new TestEvent(i % 3));
+        }
+        List<Event> shuffled = new ArrayList<>(events);
+        Collections.shuffle(shuffled, new Random(1));
+        for (Event event : shuffled) {
+            queue.add(event);
+        }
+        for (int time = 0; time < 3; time++) {
+            for (int i = time; i < events.size(); i += 3) {
+                assertSame(events.get(i), queue.poll());
+            }
+        }
+    }
+
+    @Test
+    public void testRemove_arbitraryEvent() {
+        Random random = new Random(2);
+        EventQueue queue = new EventQueue();
+        TreeSet<Event> expected = new TreeSet<>(ORDER);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Event event = new TestEvent(random.nextInt(50));
+            events.add(event);
+            expected.add(event);
+            queue.add(event);
+        }
+        Collections.shuffle(events, random);
+        for (Event event : events.subList(0, 100)) {
+            assertTrue(queue.remove(event));
+            expected.remove(event);
+            assertNotQueued(queue, event);
+            assertFalse(queue.remove(event));
+            assertEquals(expected.size(), queue.size());
+        }
+        for (Event event : events.subList(100, 200)) {
+            assertTrue(queue.contains(event));
+        }
+        for (Event event : expected) {
+            assertSame(event, queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testAdd_removedEventAgain() {
+        EventQueue queue = new EventQueue();
+        Event first = new TestEvent(10);
+        Event second = new TestEvent(20);
+        Event third = new TestEvent(30);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+
+        assertTrue(queue.remove(first));
+        first.setTime(40);
+        queue.add(first);
+        assertTrue(queue.contains(first));
+        assertSame(second, queue.poll());
+
+        Event polled = queue.poll();
+        assertSame(third, polled);
+        polled.setTime(5);
+        queue.add(polled);
+        assertSame(third, queue.poll());
+        assertSame(first, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testQueueIndex_resetAfterPollAndRemove() {
+        EventQueue queue = new EventQueue();
+        Event first = new TestEvent(1);
+        Event second = new TestEvent(2);
+        Event third = new TestEvent(3);
+        assertNotQueued(queue, first);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+        assertTrue(first.isQueued());
+        assertTrue(queue.contains(first));
+
+        assertSame(first, queue.poll());
+        assertNotQueued(queue, first);
+        assertFalse(queue.remove(first));
+        assertTrue(queue.remove(third));
+        assertNotQueued(queue, third);
+
+        // the remaining event keeps a valid position
+        assertTrue(queue.contains(second));
+        assertSame(second, queue.peek());
+
+        // an event is in at most one queue
+        EventQueue other = new EventQueue();
+        assertFalse(other.contains(second));
+        try {
+            other.add(second);
+            fail("a queued event was added to another queue");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(3);
+        EventQueue queue = new EventQueue(1);
+        TreeSet<Event> expected = new TreeSet<>(ORDER);
+        List<Event> queued = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int operation = random.nextInt(4);
+            if (operation <= 1 || queued.isEmpty()) {
+                Event event = new TestEvent(random.nextInt(1000) - 500);
+                queue.add(event);
+                expected.add(event);
+                queued.add(event);
+            } else if (operation == 2) {
+                Event event = queued.remove(random.nextInt(queued.size()));
+                assertTrue(queue.remove(event));
+                expected.remove(event);
+                assertNotQueued(queue, event);
+            } else {
+                Event event = queue.poll();
+                assertSame(expected.pollFirst(), event);
+                queued.remove(event);
+                assertNotQueued(queue, event);
+            }
+            assertEquals(expected.size(), queue.size());
+            assertSame(expected.isEmpty() ? null : expected.first(), queue.peek());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EventRegistryTest {
+
+    // a resource with the next event id
+    private static ResourceEvent resource() {
+        return new ResourceEvent(null, null, 0, 0, null, null, 600);
+    }
+
+    // an agent with the next event id
+    private static AgentEvent agent() {
+        return new AgentEvent(null, 0, null, null);
+    }
+
+    @Test
+    public void testRegister_outOfIdOrder() {
+        EventRegistry registry = new EventRegistry();
+        List<ResourceEvent> resources = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            resources.add(resource());
+        }
+        List<ResourceEvent> shuffled = new ArrayList<>(resources);
+        Collections.shuffle(shuffled, new Random(0));
+        for (ResourceEvent resource : shuffled) {
+            registry.register(resource);
+        }
+        for (ResourceEvent resource : resources) {
+            assertSame(resource, registry.resource(resource.id));
+            assertNull(registry.agent(resource.id));
+        }
+    }
+
+    @Test
+    public void testRegister_belowRange() {
+        EventRegistry registry = new EventRegistry();
+        ResourceEvent first = resource();
+        Event.reserveIds(5000);
+        ResourceEvent last = resource();
+        registry.register(last);
+        // an id far below the lowest id registered so far
+        registry.register(first);
+        assertSame(first, registry.resource(first.id));
+        assertSame(last, registry.resource(last.id));
+        assertNull(registry.resource(first.id + 1));
+        assertNull(registry.resource(last.id - 1));
+    }
+
+    @Test
+    public void testLookup_unknownIds() {
+        EventRegistry registry = new EventRegistry();
+        ResourceEvent unregistered = resource();
+        assertNull(registry.resource(unregistered.id));
+        assertNull(registry.agent(unregistered.id));
+
+        AgentEvent agent = agent();
+        ResourceEvent resource = resource();
+        registry.register(agent);
+        registry.register(resource);
+        assertSame(agent, registry.agent(agent.id));
+        assertSame(resource, registry.resource(resource.id));
+        assertNull(registry.resource(agent.id));
+        assertNull(registry.agent(resource.id));
+        assertNull(registry.resource(unregistered.id));
+        assertNull(registry.resource(resource.id + 1));
+        assertNull(registry.resource(-1));
+        assertNull(registry.resource(Long.MAX_VALUE));
+        assertNull(registry.resource(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testUnregister_retiredIds() {
+        EventRegistry registry = new EventRegistry();
+        ResourceEvent retired = resource();
+        ResourceEvent kept = resource();
+        registry.register(retired);
+        registry.register(kept);
+        registry.unregister(retired);
+        assertNull(registry.resource(retired.id));
+        assertSame(kept, registry.resource(kept.id));
+
+        // retiring a resource again, or one that was never registered, changes nothing
+        registry.unregister(retired);
+        registry.unregister(resource());
+        assertSame(kept, registry.resource(kept.id));
+
+        // a table that was emptied starts over at the next id
+        registry.unregister(kept);
+        assertNull(registry.resource(kept.id));
+        Event.reserveIds(5000);
+        ResourceEvent next = resource();
+        registry.register(next);
+        assertSame(next, registry.resource(next.id));
+        assertNull(registry.resource(kept.id));
+    }
+
+    @Test
+    public void testUnregister_slidingWindow() {
+        // streamed resources: registered in id order and retired roughly in id order, with a few in flight
+        EventRegistry registry = new EventRegistry();
+        Random random = new Random(1);
+        List<ResourceEvent> inFlight = new ArrayList<>();
+        List<ResourceEvent> retired = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            ResourceEvent resource = resource();
+            registry.register(resource);
+            inFlight.add(resource);
+            if (inFlight.size() > 100) {
+                // the lowest ids are retired first, but not always in id order
+                ResourceEvent done = inFlight.remove(random.nextInt(10));
+                registry.unregister(done);
+                retired.add(done);
+            }
+            if (i % 1000 == 0) {
+                for (ResourceEvent event : inFlight) {
+                    assertSame(event, registry.resource(event.id));
+                }
+            }
+        }
+        for (ResourceEvent event : inFlight) {
+            assertSame(event, registry.resource(event.id));
+        }
+        for (ResourceEvent event : retired) {
+            assertNull(registry.resource(event.id));
+        }
+        // the array slides along with the resources in flight rather than growing with all resources
+        assertTrue(registry.resourceCapacity() < 2048);
+    }
+
+    @Test
+    public void testRegister_randomOrder() {
+        // registrations and retirements in random order, compared with a map; the ids jump ahead at times
+        EventRegistry registry = new EventRegistry();
+        Random random = new Random(2);
+        Map<Long, ResourceEvent> registered = new HashMap<>();
+        List<ResourceEvent> created = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            if (random.nextBoolean()) {
+                Event.reserveIds(random.nextInt(3000));
+            }
+            List<ResourceEvent> batch = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                batch.add(resource());
+            }
+            created.addAll(batch);
+            Collections.shuffle(batch, random);
+            for (ResourceEvent resource : batch) {
+                registry.register(resource);
+                registered.put(resource.id, resource);
+            }
+            List<ResourceEvent> candidates = new ArrayList<>(registered.values());
+            Collections.shuffle(candidates, random);
+            for (ResourceEvent resource : candidates.subList(0, candidates.size() * 2 / 3)) {
+                registry.unregister(resource);
+                registered.remove(resource.id);
+            }
+            for (ResourceEvent resource : created) {
+                assertSame(registered.get(resource.id), registry.resource(resource.id));
+            }
+        }
+    }
+}
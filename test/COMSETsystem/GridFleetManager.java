@@ -0,0 +1,102 @@
+package COMSETsystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * A fleet manager for testing whose decisions depend on the order of the ids of agents and resources but not on
+ * their values, so that two simulations of a GridScenario in the same JVM, whose events get different ids, make
+ * the same decisions. An empty agent turns at an intersection by the time and the id of the intersection, so that
+ * agents that reach an intersection together go on together. A resource is assigned to the empty agent whose last
+ * reported location is nearest, or waits for the next agent that drops one off.
+ */
+public class GridFleetManager extends FleetManager {
+
+    // The locations of the empty agents by id, from which they were last reported to go on.
+    private final TreeMap<Long, LocationOnRoad> emptyAgents = new TreeMap<>();
+    // The resource that every agent on its way to a pickup is assigned.
+    private final Map<Long, Resource> assignments = new HashMap<>();
+    private final Queue<Resource> waitingResources = new ArrayDeque<>();
+
+    public GridFleetManager(CityMap map) {
+        super(map);
+    }
+
+    @Override
+    public void onAgentIntroduced(long agentId, LocationOnRoad currentLoc, long time) {
+        emptyAgents.put(agentId, currentLoc);
+    }
+
+    @Override
+    public AgentAction onResourceAvailabilityChange(Resource resource, ResourceState state, LocationOnRoad currentLoc,
+                                                    long time) {
+        switch (state) {
+            case AVAILABLE:
+                return assign(resource);
+            case DROPPED_OFF:
+                Resource next = waitingResources.poll();
+                if (next != null) {
+                    assignments.put(resource.assignedAgentId, next);
+                    return AgentAction.assignTo(resource.assignedAgentId, next.id);
+                }
+                emptyAgents.put(resource.assignedAgentId, currentLoc);
+                break;
+            case EXPIRED:
+                waitingResources.remove(resource);
+                if (resource.assignedAgentId != -1) {
+                    assignments.remove(resource.assignedAgentId);
+                    emptyAgents.put(resource.assignedAgentId, currentLoc);
+                }
+                break;
+            case PICKED_UP:
+                assignments.remove(resource.assignedAgentId);
+                break;
+        }
+        return AgentAction.doNothing();
+    }
+
+    AgentAction assign(Resource resource) {
+        Long nearest = null;
+        long nearestTravelTime = Long.MAX_VALUE;
+        for (Map.Entry<Long, LocationOnRoad> agent : emptyAgents.entrySet()) {
+            long travelTime = map.travelTimeBetween(agent.getValue(), resource.pickupLoc);
+            if (travelTime < nearestTravelTime) {
+                nearest = agent.getKey();
+                nearestTravelTime = travelTime;
+            }
+        }
+        if (nearest == null) {
+            waitingResources.add(resource);
+            return AgentAction.doNothing();
+        }
+        emptyAgents.remove(nearest);
+        assignments.put(nearest, resource);
+        return AgentAction.assignTo(nearest, resource.id);
+    }
+
+    @Override
+    public Intersection onReachIntersection(long agentId, long time, LocationOnRoad currentLoc) {
+        Intersection current = currentLoc.road.to;
+        Resource assigned = assignments.get(agentId);
+        Intersection next = assigned == null ? null : map.nextHop(current, assigned.pickupLoc.road.from);
+        if (next == null) {
+            List<Intersection> adjacent = new ArrayList<>(current.getAdjacentFrom());
+            next = adjacent.get((int) Math.floorMod(time + current.id, (long) adjacent.size()));
+        }
+        if (emptyAgents.containsKey(agentId)) {
+            emptyAgents.put(agentId, LocationOnRoad.createFromRoadStart(current.roadTo(next)));
+        }
+        return next;
+    }
+
+    @Override
+    public Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc,
+                                                        Resource resource) {
+        return map.nextHop(currentLoc.road.to, resource.dropOffLoc.road.from);
+    }
+}
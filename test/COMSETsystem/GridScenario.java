@@ -0,0 +1,134 @@
+package COMSETsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The files of a small simulation for testing: a map of a square grid of two-way streets in Midtown Manhattan,
+ * a bounding polygon around it and a dataset of random trips within it. The streets between the first two
+ * columns are fast enough to be crossed in less than a second, so that some moves take no time when the time
+ * resolution is one second.
+ */
+public class GridScenario {
+
+    // The south west corner of the grid and the distance between its intersections in degrees, about 60 meters.
+    private static final double LATITUDE = 40.7540;
+    private static final double LONGITUDE = -73.9900;
+    private static final double LATITUDE_STEP = 0.00054;
+    private static final double LONGITUDE_STEP = 0.00071;
+
+    private static final String TERTIARY = "\"highway\": \"tertiary\"";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LocalDateTime START = LocalDateTime.of(2016, 6, 1, 8, 0, 0);
+
+    public final String mapFile;
+    public final String boundingPolygonFile;
+    public final String datasetFile;
+
+    /**
+     * Write the files of a scenario into a folder.
+     * @param folder the folder of the files
+     * @param size the number of intersections on a side of the grid
+     * @param trips the number of trips of the dataset
+     * @param minutes the span of the pickup times of the trips
+     * @param seed the seed of the random trips
+     * @throws IOException if the files cannot be written
+     */
+    public GridScenario(File folder, int size, int trips, int minutes, long seed) throws IOException {
+        mapFile = new File(folder, "grid.json").getPath();
+        boundingPolygonFile = new File(folder, "grid.kml").getPath();
+        datasetFile = new File(folder, "trips.csv").getPath();
+
+        List<String> elements = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                elements.add(String.format(Locale.ROOT,
+                        "{\"type\": \"node\", \"id\": %d, \"lat\": %.7f, \"lon\": %.7f}", node(size, row, column),
+                        LATITUDE + row * LATITUDE_STEP, LONGITUDE + column * LONGITUDE_STEP));
+            }
+        }
+        long way = 1000000;
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                if (column + 1 < size) {
+                    // the streets from the first column to the second are fast
+                    elements.add(way(way++, node(size, row, column), node(size, row, column + 1),
+                            column == 0 ? "\"highway\": \"primary\", \"maxspeed\": \"300\"" : TERTIARY));
+                }
+                if (row + 1 < size) {
+                    elements.add(way(way++, node(size, row, column), node(size, row + 1, column), TERTIARY));
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(mapFile)) {
+            out.println("{\"elements\": [" + String.join(", ", elements) + "]}");
+        }
+
+        double margin = 0.5;
+        double south = LATITUDE - margin * LATITUDE_STEP;
+        double north = LATITUDE + (size - 1 + margin) * LATITUDE_STEP;
+        double west = LONGITUDE - margin * LONGITUDE_STEP;
+        double east = LONGITUDE + (size - 1 + margin) * LONGITUDE_STEP;
+        try (PrintWriter out = new PrintWriter(boundingPolygonFile)) {
+            out.println("<kml><Document><Placemark><Polygon><outerBoundaryIs><LinearRing>");
+            out.println("<coordinates>");
+            out.printf(Locale.ROOT, "%.7f,%.7f,0 %.7f,%.7f,0 %.7f,%.7f,0 %.7f,%.7f,0 %.7f,%.7f,0%n",
+                    west, south, east, south, east, north, west, north, west, south);
+            out.println("</coordinates>");
+            out.println("</LinearRing></outerBoundaryIs></Polygon></Placemark></Document></kml>");
+        }
+
+        Random random = new Random(seed);
+        double span = (size - 1) * 0.999;
+        try (PrintWriter out = new PrintWriter(datasetFile)) {
+            out.println("VendorID,tpep_pickup_datetime,tpep_dropoff_datetime,passenger_count,trip_distance,"
+                    + "pickup_longitude,pickup_latitude,RatecodeID,store_and_fwd_flag,dropoff_longitude,"
+                    + "dropoff_latitude,payment_type");
+            for (int i = 0; i < trips; i++) {
+                LocalDateTime pickup = START.plusSeconds((long) i * minutes * 60 / trips);
+                LocalDateTime dropoff = pickup.plusSeconds(15 + random.nextInt(30));
+                out.printf(Locale.ROOT, "2,%s,%s,1,0.5,%.7f,%.7f,1,N,%.7f,%.7f,1%n", pickup.format(TIMESTAMP),
+                        dropoff.format(TIMESTAMP),
+                        LONGITUDE + random.nextDouble() * span * LONGITUDE_STEP,
+                        LATITUDE + random.nextDouble() * span * LATITUDE_STEP,
+                        LONGITUDE + random.nextDouble() * span * LONGITUDE_STEP,
+                        LATITUDE + random.nextDouble() * span * LATITUDE_STEP);
+            }
+        }
+    }
+
+    private static long node(int size, int row, int column) {
+        return 1 + row * size + column;
+    }
+
+    private static String way(long id, long from, long to, String tags) {
+        return String.format(Locale.ROOT, "{\"type\": \"way\", \"id\": %d, \"nodes\": [%d, %d], \"tags\": {%s}}",
+                id, from, to, tags);
+    }
+
+    /**
+     * Make the configuration of a simulation of the scenario, replacing the current one.
+     * @param fleetManagerClass the fleet manager of the simulation
+     * @param agents the number of agents
+     * @param navigationThreads the number of threads that compute the moves of agents
+     * @param traceFile the file of the binary trace of the simulation; null for none
+     * @param streamResources whether resources are streamed
+     * @return the configuration
+     */
+    public Configuration configure(Class<? extends FleetManager> fleetManagerClass, long agents,
+                                   int navigationThreads, String traceFile, boolean streamResources) {
+        Configuration.singletonConfiguration = null;
+        Configuration.make(fleetManagerClass, mapFile, datasetFile, agents, boundingPolygonFile, 600, 1, true, 900,
+                60, 1, null, Configuration.PathTableBackend.HEAP, Configuration.EventSchedulerType.HEAP,
+                navigationThreads, traceFile, streamResources, Configuration.SpatialIndexType.KDTREE);
+        return Configuration.get();
+    }
+}
@@ -0,0 +1,175 @@
+package COMSETsystem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PathTableTest {
+
+    private static final int SIZE = 37;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] key(int seed) {
+        byte[] key = new byte[PathTableCache.KEY_LENGTH];
+        new Random(seed).nextBytes(key);
+        return key;
+    }
+
+    // fill a table with random entries, some destinations unreachable
+    private static void fill(PathTable table, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < table.size; i++) {
+            double[] travelTimes = new double[table.size];
+            int[] successors = new int[table.size];
+            for (int j = 0; j < table.size; j++) {
+                travelTimes[j] = random.nextInt(10) == 0 ? Double.MAX_VALUE : random.nextDouble() * 1000;
+                successors[j] = random.nextInt(10) == 0 ? PathTable.NO_SUCCESSOR : random.nextInt(table.size);
+            }
+            table.setTravelTimes(i, travelTimes);
+            table.setSuccessors(i, successors);
+        }
+    }
+
+    private static void assertSameEntries(PathTable expected, PathTable actual) {
+        assertEquals(expected.size, actual.size);
+        for (int source = 0; source < expected.size; source++) {
+            for (int destination = 0; destination < expected.size; destination++) {
+                assertEquals(Double.doubleToLongBits(expected.travelTime(source, destination)),
+                        Double.doubleToLongBits(actual.travelTime(source, destination)));
+                assertEquals(expected.successor(source, destination), actual.successor(source, destination));
+            }
+        }
+    }
+
+    private static MappedPathTable mapped(Path file, int size, long segmentBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new MappedPathTable(file, channel, FileChannel.MapMode.READ_WRITE, size, 0, segmentBytes);
+        }
+    }
+
+    @Test
+    public void testHeapTable_flatIndexing() {
+        HeapPathTable table = new HeapPathTable(3);
+        assertEquals(Double.MAX_VALUE, table.travelTime(2, 1), 0.0);
+        assertEquals(PathTable.NO_SUCCESSOR, table.successor(2, 1));
+        table.setTravelTimes(1, new double[] {1, 0, 2});
+        assertEquals(2.0, table.travelTimes[1 * 3 + 2], 0.0);
+        assertEquals(2.0, table.travelTime(1, 2), 0.0);
+        assertEquals(Double.MAX_VALUE, table.travelTime(0, 2), 0.0);
+        // the successors toward destination 1 are stored together
+        table.setSuccessors(1, new int[] {2, 1, 1});
+        assertEquals(2, table.successors[1 * 3 + 0]);
+        assertEquals(2, table.successor(0, 1));
+        assertEquals(1, table.successor(2, 1));
+        assertEquals(PathTable.NO_SUCCESSOR, table.successor(1, 0));
+    }
+
+    @Test
+    public void testMappedTable_smallSegments() throws IOException {
+        HeapPathTable heap = new HeapPathTable(SIZE);
+        fill(heap, 1);
+        // 3 rows per segment, so that the last segment is partial
+        MappedPathTable table = mapped(folder.newFile().toPath(), SIZE, 3L * SIZE * Double.BYTES + 1);
+        fill(table, 1);
+        assertSameEntries(heap, table);
+
+        // one row per segment
+        table = mapped(folder.newFile().toPath(), SIZE, 1);
+        fill(table, 1);
+        assertSameEntries(heap, table);
+    }
+
+    @Test
+    public void testCache_roundTrip() throws IOException {
+        HeapPathTable heap = new HeapPathTable(SIZE);
+        fill(heap, 2);
+        PathTableCache cache = new PathTableCache(folder.getRoot().toPath(), key(1));
+        assertNull(cache.load(SIZE));
+        cache.store(heap);
+
+        assertSameEntries(heap, cache.load(SIZE));
+        assertSameEntries(heap, cache.map(SIZE));
+
+        // a table computed in a mapped file reads back the same
+        PathTableCache other = new PathTableCache(folder.getRoot().toPath(), key(2));
+        MappedPathTable created = other.create(SIZE);
+        fill(created, 2);
+        other.commit(created);
+        assertSameEntries(heap, other.load(SIZE));
+        assertSameEntries(heap, other.map(SIZE));
+    }
+
+    @Test
+    public void testCache_littleEndianHeader() throws IOException {
+        PathTableCache cache = new PathTableCache(folder.getRoot().toPath(), key(1));
+        cache.store(new HeapPathTable(2));
+        byte[] bytes = Files.readAllBytes(cache.file());
+        assertEquals(PathTableCache.HEADER_LENGTH + 4 * (Double.BYTES + Integer.BYTES), bytes.length);
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(PathTableCache.MAGIC, header.getInt());
+        assertEquals(PathTableCache.VERSION, header.getInt());
+        assertEquals(2, header.getInt());
+        assertEquals(0x54, bytes[0]);
+    }
+
+    @Test
+    public void testCache_ignoresChangedHeader() throws IOException {
+        HeapPathTable heap = new HeapPathTable(SIZE);
+        fill(heap, 3);
+        PathTableCache cache = new PathTableCache(folder.getRoot().toPath(), key(1));
+        // magic, version, size and a byte of the key
+        for (int position : new int[] {0, 4, 8, 16, PathTableCache.HEADER_LENGTH - 1}) {
+            cache.store(heap);
+            try (RandomAccessFile file = new RandomAccessFile(cache.file().toFile(), "rw")) {
+                file.seek(position);
+                int b = file.read();
+                file.seek(position);
+                file.write(b ^ 1);
+            }
+            assertNull(cache.load(SIZE));
+            assertNull(cache.map(SIZE));
+        }
+
+        // a valid table stored under the file name of another key
+        cache.store(heap);
+        PathTableCache other = new PathTableCache(folder.getRoot().toPath(), key(2));
+        Files.copy(cache.file(), other.file());
+        assertNull(other.load(SIZE));
+        assertNotNull(cache.load(SIZE));
+    }
+
+    @Test
+    public void testCache_ignoresChangedLength() throws IOException {
+        HeapPathTable heap = new HeapPathTable(SIZE);
+        fill(heap, 4);
+        PathTableCache cache = new PathTableCache(folder.getRoot().toPath(), key(1));
+        cache.store(heap);
+        assertNull(cache.load(SIZE + 1));
+
+        try (RandomAccessFile file = new RandomAccessFile(cache.file().toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        assertNull(cache.load(SIZE));
+        assertNull(cache.map(SIZE));
+
+        cache.store(heap);
+        try (RandomAccessFile file = new RandomAccessFile(cache.file().toFile(), "rw")) {
+            file.setLength(file.length() + Integer.BYTES);
+        }
+        assertNull(cache.load(SIZE));
+    }
+}
@@ -0,0 +1,81 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A CityMap of intersections connected by roads of one link each, given by a list of roads, for testing
+ * routing. Intersection i has id and pathTableIndex i.
+ */
+public class RoadNetwork {
+
+    public final Intersection[] intersections;
+    public final List<Road> roads = new ArrayList<>();
+    public final CityMap map;
+
+    /**
+     * @param size the number of intersections
+     * @param roads the start and end intersection of every road
+     * @param travelTimes the travel time in seconds of every road
+     */
+    public RoadNetwork(int size, int[][] roads, double[] travelTimes) {
+        intersections = new Intersection[size];
+        Map<Long, Intersection> intersectionsById = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            Vertex vertex = new Vertex(i, i, i, i, i);
+            intersections[i] = new Intersection(vertex);
+            vertex.intersection = intersections[i];
+            intersectionsById.put((long) i, intersections[i]);
+        }
+        for (int r = 0; r < roads.length; r++) {
+            Intersection from = intersections[roads[r][0]];
+            Intersection to = intersections[roads[r][1]];
+            Link link = new Link(from.vertex, to.vertex, travelTimes[r], 1);
+            from.vertex.linksMapFrom.put(to.vertex, link);
+            to.vertex.linksMapTo.put(from.vertex, link);
+            Road road = new Road(from, to);
+            road.addLink(link);
+            road.setSpeed();
+            from.roadsMapFrom.put(to, road);
+            to.roadsMapTo.put(from, road);
+            this.roads.add(road);
+        }
+        map = new CityMap(intersectionsById, this.roads, null, null);
+    }
+
+    /**
+     * A random network in which most intersections are connected in both directions to a few others, with
+     * small integer travel times so that many shortest paths have equal travel times.
+     */
+    public static RoadNetwork random(int size, long seed) {
+        Random random = new Random(seed);
+        List<int[]> roads = new ArrayList<>();
+        List<Double> travelTimes = new ArrayList<>();
+        boolean[][] connected = new boolean[size][size];
+        for (int i = 0; i < 3 * size; i++) {
+            int from = random.nextInt(size);
+            int to = random.nextInt(size);
+            if (from == to || connected[from][to]) {
+                continue;
+            }
+            connected[from][to] = true;
+            roads.add(new int[] {from, to});
+            travelTimes.add((double) (1 + random.nextInt(3)));
+        }
+        double[] times = new double[travelTimes.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = travelTimes.get(i);
+        }
+        return new RoadNetwork(size, roads.toArray(new int[0][]), times);
+    }
+
+    /**
+     * @return the road from an intersection to another; null if there is none
+     */
+    public Road road(int from, int to) {
+        return intersections[from].roadsMapFrom.get(intersections[to]);
+    }
+}
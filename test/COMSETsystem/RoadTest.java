@@ -0,0 +1,56 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RoadTest {
+
+    // a road through the vertices of SimpleMap with links of length 1000, 1200, 800, 900 and 500
+    private static Road makeRoad(SimpleMap simpleMap) {
+        Road road = new Road(simpleMap.intersection1, simpleMap.intersection1);
+        road.addLink(new Link(simpleMap.vertex1, simpleMap.vertex2, 1000, 10));
+        road.addLink(new Link(simpleMap.vertex2, simpleMap.vertex3, 1200, 10));
+        road.addLink(new Link(simpleMap.vertex3, simpleMap.vertex4, 800, 10));
+        road.addLink(new Link(simpleMap.vertex4, simpleMap.vertex5, 900, 10));
+        road.addLink(new Link(simpleMap.vertex5, simpleMap.vertex1, 500, 10));
+        return road;
+    }
+
+    @Test
+    public void testLinkOffset() {
+        Road road = makeRoad(new SimpleMap());
+        double[] offsets = {0, 1000, 2200, 3000, 3900};
+        for (int i = 0; i < offsets.length; i++) {
+            Link link = road.links.get(i);
+            assertEquals(i, link.getIndex());
+            assertEquals(offsets[i], road.linkOffset(link), 0.0);
+        }
+        assertEquals(4400, road.getLength(), 0.0);
+    }
+
+    @Test
+    public void testLinkAt() {
+        Road road = makeRoad(new SimpleMap());
+        assertSame(road.links.get(0), road.linkAt(0));
+        assertSame(road.links.get(0), road.linkAt(999.9));
+        assertSame(road.links.get(1), road.linkAt(1000));
+        assertSame(road.links.get(2), road.linkAt(2500));
+        assertSame(road.links.get(4), road.linkAt(4400));
+    }
+
+    @Test
+    public void testLocationConversion() {
+        Road road = makeRoad(new SimpleMap());
+        LocationOnRoad location = new LocationOnRoad(road, 2500);
+        assertSame(road.links.get(2), location.getLink());
+
+        DistanceLocationOnLink locationOnLink = DistanceLocationOnLink.fromLocationOnRoad(location);
+        assertSame(road.links.get(2), locationOnLink.link);
+        assertEquals(300, locationOnLink.distanceFromStartVertex, 0.0);
+        assertEquals(2500, locationOnLink.toLocationOnRoad().getDistanceFromStartIntersection(), 0.0);
+
+        assertTrue(DistanceLocationOnLink.createFromRoadStart(road).upstreamTo(locationOnLink));
+        assertFalse(DistanceLocationOnLink.createFromRoadEnd(road).upstreamTo(locationOnLink));
+    }
+}
@@ -35,16 +35,14 @@ public class SimpleMap {
     }
 
     private static Road makeRoad(Intersection intersection1, Intersection intersection2) {
-        Road r = new Road();
-        r.from = intersection1;
-        r.to = intersection2;
+        Road r = new Road(intersection1, intersection2);
         r.to.roadsMapTo.put(r.from, r);
         r.from.roadsMapFrom.put(r.to, r);
         return r;
     }
 
     public static LocationOnRoad makeLocationFromRoad(Road road, double fraction) {
-        return new LocationOnRoad(road, road.length * fraction);
+        return new LocationOnRoad(road, road.getLength() * fraction);
     }
 
 
@@ -71,5 +69,9 @@ public class SimpleMap {
         roadFrom2to3.addLink(link2to3);
         roadFrom3to4.addLink(link3to4);
         roadFrom4to5.addLink(link4to5);
+        roadFrom1to2.setSpeed();
+        roadFrom2to3.setSpeed();
+        roadFrom3to4.setSpeed();
+        roadFrom4to5.setSpeed();
     }
 }
@@ -0,0 +1,135 @@
+package COMSETsystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SimulationTraceTest {
+
+    private static final int HEADER_LENGTH = 24;
+
+    private static final int RECORD_LENGTH = 33;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long timeResolution;
+
+    @Before
+    public void setUp() {
+        timeResolution = Configuration.timeResolution;
+        Configuration.timeResolution = 1000;
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.timeResolution = timeResolution;
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void assertHeader(ByteBuffer trace) {
+        assertEquals(0x52545445534D4F43L, trace.getLong(0));
+        // the magic number spells COMSETTR in the file
+        byte[] magic = new byte[8];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = trace.get(i);
+        }
+        assertEquals("COMSETTR", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(1, trace.getInt(8));
+        assertEquals(0, trace.getInt(12));
+        assertEquals(1000, trace.getLong(16));
+    }
+
+    private static void assertRecord(ByteBuffer trace, int index, SimulationTrace.Kind kind, long time, long first,
+                                     long second, long third) {
+        int offset = HEADER_LENGTH + index * RECORD_LENGTH;
+        assertEquals("kind of record " + index, kind.ordinal(), trace.get(offset));
+        assertEquals("time of record " + index, time, trace.getLong(offset + 1));
+        assertEquals("first of record " + index, first, trace.getLong(offset + 9));
+        assertEquals("second of record " + index, second, trace.getLong(offset + 17));
+        assertEquals("third of record " + index, third, trace.getLong(offset + 25));
+    }
+
+    @Test
+    public void testRecords_everyKind() throws IOException {
+        File file = folder.newFile();
+        SimulationTrace trace = SimulationTrace.open(file.getPath());
+        trace.agentMoved(1000, 7, 123456789012L, 61000);
+        trace.resourceAssigned(2000, 7, 8);
+        trace.resourcePickedUp(3000, 7, 8);
+        trace.resourceDroppedOff(4000, 7, 8);
+        trace.resourceAvailable(5000, 9, 42);
+        trace.resourceExpired(6000, 9, -1);
+        trace.resourceExpired(7000, 10, 7);
+        trace.close();
+
+        ByteBuffer bytes = read(file);
+        assertEquals(HEADER_LENGTH + 7 * RECORD_LENGTH, bytes.limit());
+        assertHeader(bytes);
+        assertRecord(bytes, 0, SimulationTrace.Kind.MOVE, 1000, 7, 123456789012L, 61000);
+        assertRecord(bytes, 1, SimulationTrace.Kind.ASSIGN, 2000, 7, 8, 0);
+        assertRecord(bytes, 2, SimulationTrace.Kind.PICKUP, 3000, 7, 8, 0);
+        assertRecord(bytes, 3, SimulationTrace.Kind.DROPOFF, 4000, 7, 8, 0);
+        assertRecord(bytes, 4, SimulationTrace.Kind.AVAILABLE, 5000, 9, 42, 0);
+        assertRecord(bytes, 5, SimulationTrace.Kind.EXPIRE, 6000, 9, -1, 0);
+        assertRecord(bytes, 6, SimulationTrace.Kind.EXPIRE, 7000, 10, 7, 0);
+    }
+
+    @Test
+    public void testKind_ordinals() {
+        // the kinds are written as their ordinals, which readers of trace files rely on
+        assertEquals(0, SimulationTrace.Kind.MOVE.ordinal());
+        assertEquals(1, SimulationTrace.Kind.ASSIGN.ordinal());
+        assertEquals(2, SimulationTrace.Kind.PICKUP.ordinal());
+        assertEquals(3, SimulationTrace.Kind.DROPOFF.ordinal());
+        assertEquals(4, SimulationTrace.Kind.AVAILABLE.ordinal());
+        assertEquals(5, SimulationTrace.Kind.EXPIRE.ordinal());
+    }
+
+    @Test
+    public void testRecords_moreThanBuffered()throws IOException {
+        // enough records to fill the buffer several times
+        int records = 10000;
+        File file = folder.newFile();
+        SimulationTrace trace = SimulationTrace.open(file.getPath());
+        for (int i = 0; i < records; i++) {
+            trace.agentMoved(i, Long.MAX_VALUE - i, i * 3L, -i);
+        }
+        trace.close();
+
+        ByteBuffer bytes = read(file);
+        assertEquals(HEADER_LENGTH + (long) records * RECORD_LENGTH, bytes.limit());
+        assertHeader(bytes);
+        for (int i = 0; i < records; i++) {
+            assertRecord(bytes, i, SimulationTrace.Kind.MOVE, i, Long.MAX_VALUE - i, i * 3L, -i);
+        }
+    }
+
+    @Test
+    public void testOpen_replacesFile() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), new byte[1000]);
+        SimulationTrace trace = SimulationTrace.open(file.getPath());
+        trace.resourceAvailable(5, 1, 2);
+        trace.close();
+
+        ByteBuffer bytes = read(file);
+        assertEquals(HEADER_LENGTH + RECORD_LENGTH, bytes.limit());
+        assertHeader(bytes);
+        assertRecord(bytes, 0, SimulationTrace.Kind.AVAILABLE, 5, 1, 2, 0);
+    }
+}
@@ -0,0 +1,224 @@
+package COMSETsystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class SimulatorTest {
+
+    private static final int HEADER_LENGTH = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long timeResolution;
+    private Level logLevel;
+
+    @Before
+    public void setUp() {
+        // whole seconds, so that many agents reach intersections at the same time
+        timeResolution = Configuration.timeResolution;
+        Configuration.timeResolution = 1;
+        logLevel = Logger.getLogger("").getLevel();
+        Logger.getLogger("").setLevel(Level.OFF);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.timeResolution = timeResolution;
+        Logger.getLogger("").setLevel(logLevel);
+        Configuration.singletonConfiguration = null;
+    }
+
+    /**
+     * The outcome of a simulation: its trace, with the ids of events relative to the first event and the ids of
+     * roads relative to the first road, its score, its fleet manager and what it printed to System.err.
+     */
+    private static class Outcome {
+        final List<List<Long>> records = new ArrayList<>();
+        final List<Long> score = new ArrayList<>();
+        long assignments;
+        long firstEventId;
+        FleetManager fleetManager;
+        String errors;
+    }
+
+    private Outcome simulate(GridScenario scenario, Class<? extends FleetManager> fleetManagerClass, long agents,
+                             int navigationThreads) throws IOException {
+        String traceFile = folder.newFile().getPath();
+        Configuration configuration = scenario.configure(fleetManagerClass, agents, navigationThreads, traceFile,
+                false);
+        long firstEventId = Event.reserveIds(0);
+        Simulator simulator = new Simulator(configuration);
+        long firstRoadId = Long.MAX_VALUE;
+        for (Road road : simulator.map.roads()) {
+            firstRoadId = Math.min(firstRoadId, road.id);
+        }
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(errors, true));
+        try {
+            simulator.run();
+        } finally {
+            System.setErr(err);
+        }
+
+        Outcome outcome = new Outcome();
+        outcome.firstEventId = firstEventId;
+        outcome.fleetManager = simulator.fleetManager;
+        outcome.errors = errors.toString();
+        ByteBuffer trace = ByteBuffer.wrap(Files.readAllBytes(Paths.get(traceFile))).order(ByteOrder.LITTLE_ENDIAN);
+        trace.position(HEADER_LENGTH);
+        while (trace.hasRemaining()) {
+            SimulationTrace.Kind kind = SimulationTrace.Kind.values()[trace.get()];
+            long time = trace.getLong();
+            long first = trace.getLong() - firstEventId;
+            long second = trace.getLong();
+            long third = trace.getLong();
+            switch (kind) {
+                case MOVE:
+                case AVAILABLE:
+                    second -= firstRoadId;
+                    break;
+                case EXPIRE:
+                    second = second < 0 ? second : second - firstEventId;
+                    break;
+                default:
+                    second -= firstEventId;
+                    break;
+            }
+            List<Long> record = new ArrayList<>();
+            record.add((long) kind.ordinal());
+            record.add(time);
+            record.add(first);
+            record.add(second);
+            record.add(third);
+            outcome.records.add(record);
+        }
+
+        ScoreInfo score = simulator.score;
+        outcome.score.add(score.totalResources);
+        outcome.score.add(score.getTotalResourceTripTime());
+        outcome.score.add(score.getTotalResourceWaitTime());
+        outcome.score.add(score.getTotalAgentSearchTime());
+        outcome.score.add(score.getTotalAgentCruiseTime());
+        outcome.score.add(score.getTotalAgentApproachTime());
+        outcome.score.add(score.getExpiredResources());
+        outcome.score.add(score.getTotalAssignments());
+        outcome.score.add(score.getTotalSearches());
+        outcome.score.add(score.getTotalAbortions());
+        outcome.assignments = score.getTotalAssignments();
+        return outcome;
+    }
+
+    @Test
+    public void testNavigationThreads_sameAsSequential() throws IOException {
+        GridScenario scenario = new GridScenario(folder.newFolder(), 8, 300, 10, 1);
+        Outcome sequential = simulate(scenario, GridFleetManager.class, 1500, 1);
+        Outcome parallel = simulate(scenario, GridFleetManager.class, 1500, 4);
+
+        // the scenario has batches of moves that are split among threads, moves that take no time, and trips
+        Map<Long, Integer> movesAtTime = new HashMap<>();
+        int instantMoves = 0;
+        for (List<Long> record : sequential.records) {
+            if (record.get(0) == SimulationTrace.Kind.MOVE.ordinal()) {
+                movesAtTime.merge(record.get(1), 1, Integer::sum);
+                if (record.get(4).equals(record.get(1))) {
+                    instantMoves++;
+                }
+            }
+        }
+        int largestBatch = 0;
+        for (int moves : movesAtTime.values()) {
+            largestBatch = Math.max(largestBatch, moves);
+        }
+        assertTrue(largestBatch >= 2 * Simulator.MIN_NAVIGATION_CHUNK);
+        assertTrue(instantMoves > 0);
+        assertTrue(sequential.assignments > 0);
+
+        assertEquals(sequential.records.size(), parallel.records.size());
+        for (int i = 0; i < sequential.records.size(); i++) {
+            assertEquals("record " + i, sequential.records.get(i), parallel.records.get(i));
+        }
+        assertEquals(sequential.score, parallel.score);
+    }
+
+    @Test
+    public void testBatchFleetManager_groups() throws IOException {
+        GridScenario scenario = new GridScenario(folder.newFolder(), 8, 300, 10, 2);
+        Outcome outcome = simulate(scenario, BatchGridFleetManager.class, 1500, 1);
+        BatchGridFleetManager fleetManager = (BatchGridFleetManager) outcome.fleetManager;
+        assertFalse(outcome.errors, outcome.errors.contains("Exception"));
+        assertEquals(Collections.emptyList(), fleetManager.singleCalls);
+        assertTrue(outcome.assignments > 0);
+
+        // one call for all the resources that become available at a time, in queue order
+        Map<Long, List<Long>> available = new LinkedHashMap<>();
+        for (List<Long> record : outcome.records) {
+            if (record.get(0) == SimulationTrace.Kind.AVAILABLE.ordinal()) {
+                available.computeIfAbsent(record.get(1), time -> new ArrayList<>()).add(record.get(2));
+            }
+        }
+        assertEquals(available.size(), fleetManager.resourceGroups.size());
+        int call = 0;
+        for (Map.Entry<Long, List<Long>> resources : available.entrySet()) {
+            BatchGridFleetManager.Group group = fleetManager.resourceGroups.get(call++);
+            assertEquals(resources.getKey().longValue(), group.time);
+            assertEquals(resources.getValue(), relative(group.ids, outcome.firstEventId));
+        }
+
+        // one call for the agents that directly follow each other in the queue at a time, in queue order; a later
+        // call at the same time follows another event, or is for agents that were moved on at that time
+        int largestGroup = 0;
+        BatchGridFleetManager.Group previous = null;
+        for (BatchGridFleetManager.Group group : fleetManager.arrivalGroups) {
+            for (int i = 1; i < group.ids.size(); i++) {
+                assertTrue(group.ids.get(i) > group.ids.get(i - 1));
+            }
+            if (previous != null) {
+                assertTrue(group.time >= previous.time);
+                if (group.time == previous.time) {
+                    assertTrue(group.afterOtherCall || group.agentsBefore.containsAll(group.ids));
+                }
+            }
+            largestGroup = Math.max(largestGroup, group.ids.size());
+            previous = group;
+        }
+        assertTrue(largestGroup > 1);
+    }
+
+    private static List<Long> relative(List<Long> ids, long firstId) {
+        List<Long> relative = new ArrayList<>();
+        for (long id : ids) {
+            relative.add(id - firstId);
+        }
+        return relative;
+    }
+
+    @Test
+    public void testBatchFleetManager_missingDecision() throws IOException {
+        GridScenario scenario = new GridScenario(folder.newFolder(), 8, 100, 5, 3);
+        Outcome outcome = simulate(scenario, BatchGridFleetManager.Incomplete.class, 500, 1);
+        assertTrue(outcome.errors.contains("FleetManager did not return a next location for every agent"));
+    }
+}
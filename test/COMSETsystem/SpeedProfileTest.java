@@ -0,0 +1,195 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpeedProfileTest {
+
+    private static final long BEGIN = 100;
+    private static final long STEP = 10;
+
+    // the speed factor of a profile at a time, with the first factor before the first step and the last one after
+    // the last step
+    private static double factorAt(double[] factors, double time) {
+        if (time < BEGIN) {
+            return factors[0];
+        }
+        return factors[(int) Math.min(Math.floor((time - BEGIN) / STEP), factors.length - 1)];
+    }
+
+    // the end of the step at a time, i.e., the next time at which the speed factor may change
+    private static double stepEnd(double[] factors, double time) {
+        if (time < BEGIN) {
+            return BEGIN;
+        }
+        long i = (long) Math.floor((time - BEGIN) / STEP);
+        return i >= factors.length - 1 ? Double.POSITIVE_INFINITY : BEGIN + (i + 1) * STEP;
+    }
+
+    // the travel time of a route found by traveling through the steps one after another
+    private static double integratedTravelTime(double[] factors, double departureTime, double staticTravelTime) {
+        if (staticTravelTime == 0) {
+            return 0;
+        }
+        double time = departureTime;
+        double remaining = staticTravelTime;
+        while (true) {
+            double factor = factorAt(factors, time);
+            double end = stepEnd(factors, time);
+            if (factor > 0 && factor * (end - time) >= remaining) {
+                return time + remaining / factor - departureTime;
+            }
+            if (end == Double.POSITIVE_INFINITY) {
+                return Double.POSITIVE_INFINITY;
+            }
+            remaining -= factor * (end - time);
+            time = end;
+        }
+    }
+
+    // the static travel time covered in a given time found by traveling through the steps one after another
+    private static double integratedStaticTravelTime(double[] factors, double departureTime, double travelTime) {
+        double time = departureTime;
+        double arrivalTime = departureTime + travelTime;
+        double covered = 0;
+        while (time < arrivalTime) {
+            double end = Math.min(stepEnd(factors, time), arrivalTime);
+            covered += factorAt(factors, time) * (end - time);
+            time = end;
+        }
+        return covered;
+    }
+
+    private static void assertIntegrated(double[] factors, double departureTime, double staticTravelTime) {
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, factors);
+        String message = "departure " + departureTime + ", static travel time " + staticTravelTime;
+        double travelTime = profile.travelTime(departureTime, staticTravelTime);
+        assertEquals(message, integratedTravelTime(factors, departureTime, staticTravelTime), travelTime, 1e-9);
+        if (travelTime != Double.POSITIVE_INFINITY) {
+            assertEquals(message, staticTravelTime, profile.staticTravelTime(departureTime, travelTime), 1e-9);
+            assertEquals(message, integratedStaticTravelTime(factors, departureTime, travelTime),
+                    profile.staticTravelTime(departureTime, travelTime), 1e-9);
+        }
+    }
+
+    @Test
+    public void testTravelTime_withinAndAcrossSteps() {
+        double[] factors = {1, 0.5, 2};
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, factors);
+        assertEquals(4, profile.travelTime(102, 4), 0);
+        // 8 in the first step, 5 in the second and 1 in the third
+        assertEquals(18.5, profile.travelTime(102, 14), 0);
+        assertIntegrated(factors, 102, 4);
+        assertIntegrated(factors, 102, 14);
+        assertIntegrated(factors, 115, 3);
+    }
+
+    @Test
+    public void testTravelTime_zeroStaticTravelTime() {
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, new double[] {0});
+        assertEquals(0, profile.travelTime(105, 0), 0);
+        assertEquals(0, profile.staticTravelTime(105, 0), 0);
+    }
+
+    @Test
+    public void testTravelTime_zeroSpeedFactors() {
+        double[] factors = {1, 0, 0, 2};
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, factors);
+        // the route is completed when the steps without progress begin, not when they end
+        assertEquals(10, profile.travelTime(100, 10), 0);
+        assertEquals(30.5, profile.travelTime(100, 11), 0);
+        // departing while traffic is halted
+        assertEquals(20.5, profile.travelTime(110, 1), 0);
+        assertEquals(15, profile.staticTravelTime(105, 30), 0);
+        assertIntegrated(factors, 100, 10);
+        assertIntegrated(factors, 100, 11);
+        assertIntegrated(factors, 110, 1);
+        assertIntegrated(factors, 125, 4);
+    }
+
+    @Test
+    public void testTravelTime_beforeFirstStep() {
+        double[] factors = {2, 1};
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, factors);
+        assertEquals(5, profile.travelTime(90, 10), 0);
+        // 20 before the first step, 20 in it and 5 after it
+        assertEquals(25, profile.travelTime(90, 45), 0);
+        assertEquals(20, profile.staticTravelTime(80, 10), 0);
+        assertIntegrated(factors, 90, 10);
+        assertIntegrated(factors, 90, 45);
+        assertIntegrated(factors, 50, 150);
+
+        // no progress before the first step
+        double[] halted = {0, 1};
+        assertEquals(25, new SpeedProfile(BEGIN, STEP, halted).travelTime(90, 5), 0);
+        assertIntegrated(halted, 90, 5);
+        assertIntegrated(halted, 90, 25);
+    }
+
+    @Test
+    public void testTravelTime_afterLastStep() {
+        double[] factors = {1, 2};
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, factors);
+        assertEquals(5, profile.travelTime(200, 10), 0);
+        // 20 in the last step and 20 after it
+        assertEquals(20, profile.travelTime(110, 40), 0);
+        assertIntegrated(factors, 200, 10);
+        assertIntegrated(factors, 110, 40);
+        assertIntegrated(factors, 95, 100);
+    }
+
+    @Test
+    public void testTravelTime_halted() {
+        double[] factors = {1, 0};
+        SpeedProfile profile = new SpeedProfile(BEGIN, STEP, factors);
+        assertEquals(10, profile.travelTime(100, 10), 0);
+        assertEquals(Double.POSITIVE_INFINITY, profile.travelTime(100, 11), 0);
+        assertEquals(Double.POSITIVE_INFINITY, profile.travelTime(150, 1), 0);
+        assertEquals(0, profile.staticTravelTime(150, 100), 0);
+        assertIntegrated(factors, 100, 11);
+        assertIntegrated(factors, 90, 25);
+    }
+
+    @Test
+    public void testTravelTime_randomProfiles() {
+        // factors, departure times and static travel times with few binary digits, so that both computations are
+        // exact and progress often ends exactly at the beginning of a step
+        double[] choices = {0, 0.25, 0.5, 1, 1.5, 2};
+        Random random = new Random(0);
+        for (int p = 0; p < 200; p++) {
+            double[] factors = new double[1 + random.nextInt(8)];
+            for (int i = 0; i < factors.length; i++) {
+                factors[i] = choices[random.nextInt(choices.length)];
+            }
+            for (int t = 0; t < 20; t++) {
+                double departureTime = BEGIN + (random.nextInt(4 * (factors.length + 4) * (int) STEP) - 4 * 2 * STEP)
+                        / 4.0;
+                double staticTravelTime = random.nextInt(4 * (factors.length + 2) * (int) STEP) / 4.0;
+                assertIntegrated(factors, departureTime, staticTravelTime);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_noSteps() {
+        new SpeedProfile(BEGIN, STEP, new double[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_zeroStep() {
+        new SpeedProfile(BEGIN, 0, new double[] {1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negativeSpeedFactor() {
+        new SpeedProfile(BEGIN, STEP, new double[] {1, -0.5});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_nanSpeedFactor() {
+        new SpeedProfile(BEGIN, STEP, new double[] {Double.NaN});
+    }
+}
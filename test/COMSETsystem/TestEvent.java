@@ -0,0 +1,22 @@
+package COMSETsystem;
+
+/**
+ * An event which does nothing when triggered, for testing event schedulers. Events with equal times are
+ * ordered by id, i.e., in the order of creation.
+ */
+public class TestEvent extends Event {
+
+    public TestEvent(long time) {
+        super(time);
+    }
+
+    @Override
+    Event trigger() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "TestEvent " + id + " at " + getTime();
+    }
+}
@@ -0,0 +1,188 @@
+package DataParsing;
+
+import MapCreation.MapCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CSVNewYorkParserTest {
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    private static final String HEADER = "VendorID,tpep_pickup_datetime,tpep_dropoff_datetime,passenger_count,"
+            + "trip_distance,pickup_longitude,pickup_latitude,RatecodeID,store_and_fwd_flag,dropoff_longitude,"
+            + "dropoff_latitude,payment_type";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the bounding polygon of MapCreator, which parse() crops the resources to; set by the map otherwise
+    private Field boundingPolygon;
+    private Object savedPolygon;
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        boundingPolygon = MapCreator.class.getDeclaredField("boundingPolygon");
+        boundingPolygon.setAccessible(true);
+        savedPolygon = boundingPolygon.get(null);
+        // a closed polygon around New York
+        boundingPolygon.set(null, new ArrayList<>(Arrays.asList(new double[] {-75, 40}, new double[] {-73, 40},
+                new double[] {-73, 42}, new double[] {-75, 42}, new double[] {-75, 40})));
+    }
+
+    @After
+    public void tearDown() throws ReflectiveOperationException {
+        boundingPolygon.set(null, savedPolygon);
+    }
+
+    private static double parseDouble(String number) {
+        byte[] bytes = ("," + number + ",").getBytes(StandardCharsets.ISO_8859_1);
+        return CSVNewYorkParser.parseDouble(bytes, 1, bytes.length - 1);
+    }
+
+    private static void assertParsedLikeJava(String number) {
+        assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                Double.doubleToLongBits(parseDouble(number)));
+    }
+
+    // a random decimal number of 1 to 18 digits, possibly signed and with a decimal point anywhere
+    private static String randomNumber(Random random) {
+        int digits = 1 + random.nextInt(18);
+        StringBuilder number = new StringBuilder();
+        int sign = random.nextInt(4);
+        if (sign == 0) {
+            number.append('-');
+        } else if (sign == 1) {
+            number.append('+');
+        }
+        int point = random.nextInt(digits + 1);
+        for (int i = 0; i < digits; i++) {
+            if (i == point && random.nextBoolean()) {
+                number.append('.');
+            }
+            number.append((char) ('0' + random.nextInt(10)));
+        }
+        return number.toString();
+    }
+
+    @Test
+    public void testParseDouble_randomNumbers() {
+        Random random = new Random(1);
+        for (int i = 0; i < 500000; i++) {
+            assertParsedLikeJava(randomNumber(random));
+        }
+    }
+
+    @Test
+    public void testParseDouble_coordinates() {
+        Random random = new Random(2);
+        for (int i = 0; i < 200000; i++) {
+            double longitude = -74.3 + random.nextDouble() * 0.6;
+            double latitude = 40.4 + random.nextDouble() * 0.6;
+            // TLC data has 17 significant digits, older files 6 decimals
+            assertParsedLikeJava(String.format("%.15f", longitude));
+            assertParsedLikeJava(String.format("%.15f", latitude));
+            assertParsedLikeJava(String.format("%.6f", longitude));
+            assertParsedLikeJava(Double.toString(latitude));
+        }
+        for (String number : new String[] {"-73.981742858886719", "40.765270233154297", "0", "-0", "0.0", "7",
+                "999999999999999999", "0.000000000000000001", "-0.5", "1e5", "1.5E-3", "Infinity", "-NaN"}) {
+            if (!number.endsWith("NaN")) {
+                assertParsedLikeJava(number);
+            }
+        }
+    }
+
+    @Test
+    public void testEpochSecond_daylightSavingTimeDays() {
+        CSVNewYorkParser parser = new CSVNewYorkParser("", NEW_YORK);
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        // the days of the transitions and the days around them, alternating so that the cached day changes
+        LocalDateTime[] days = {LocalDateTime.of(2016, 3, 12, 0, 0), LocalDateTime.of(2016, 3, 13, 0, 0),
+                LocalDateTime.of(2016, 3, 14, 0, 0), LocalDateTime.of(2016, 11, 5, 0, 0),
+                LocalDateTime.of(2016, 11, 6, 0, 0), LocalDateTime.of(2016, 11, 7, 0, 0)};
+        for (int second = 0; second < 24 * 3600; second++) {
+            // every second around the transitions at 2 am, and every 7th second otherwise
+            if (second > 4 * 3600 && second % 7 != 0) {
+                continue;
+            }
+            for (LocalDateTime day : days) {
+                String timestamp = format.format(day.plusSeconds(second));
+                byte[] bytes = timestamp.getBytes(StandardCharsets.ISO_8859_1);
+                assertEquals(timestamp, (long) parser.dateConversion(timestamp),
+                        parser.epochSecond(bytes, 0, bytes.length));
+            }
+        }
+    }
+
+    private static String randomLine(Random random, StringBuilder expected) {
+        String pickupTime = String.format("2016-%02d-%02d %02d:%02d:%02d", 1 + random.nextInt(12),
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60));
+        String dropoffTime = String.format("2016-11-06 01:%02d:%02d", random.nextInt(60), random.nextInt(60));
+        String[] coordinates = new String[4];
+        for (int i = 0; i < 4; i++) {
+            double value = (i % 2 == 0 ? -74.3 : 40.4) + random.nextDouble() * 0.6;
+            coordinates[i] = random.nextBoolean() ? String.format("%.15f", value) : String.format("%.6f", value);
+        }
+        expected.append(pickupTime).append(',').append(dropoffTime);
+        for (String coordinate : coordinates) {
+            expected.append(',').append(coordinate);
+        }
+        expected.append('\n');
+        return "2," + pickupTime + "," + dropoffTime + ",1,1.50," + coordinates[0] + "," + coordinates[1]
+                + ",1,N," + coordinates[2] + "," + coordinates[3] + ",1";
+    }
+
+    @Test
+    public void testParse_crlfAcrossWindows() throws IOException {
+        Random random = new Random(3);
+        StringBuilder file = new StringBuilder(HEADER).append("\r\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            file.append(randomLine(random, expected)).append("\r\n");
+            if (i % 100 == 0) {
+                file.append("\r\n");
+            }
+        }
+        // the last line has no line break
+        file.append(randomLine(random, expected));
+        Path path = folder.newFile().toPath();
+        Files.write(path, file.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        CSVNewYorkParser reference = new CSVNewYorkParser(path.toString(), NEW_YORK);
+        String[] lines = expected.toString().split("\n");
+        // windows as short as the longest line, the header, and longer, so that lines and line breaks, including
+        // the \r of a \r\n, cross the window boundary
+        for (int windowSize : new int[] {HEADER.length() + 2, HEADER.length() + 3, 257, 331, 1000, 1 << 20}) {
+            List<Resource> resources = new CSVNewYorkParser(path.toString(), NEW_YORK, windowSize).parse(1000);
+            assertEquals(lines.length, resources.size());
+            for (int i = 0; i < lines.length; i++) {
+                String[] fields = lines[i].split(",");
+                Resource resource = resources.get(i);
+                assertEquals(reference.dateConversion(fields[0]) * 1000, resource.getTime());
+                assertEquals(reference.dateConversion(fields[1]) * 1000, resource.getDropoffTime());
+                assertEquals(Double.parseDouble(fields[2]), resource.getPickupLon(), 0.0);
+                assertEquals(Double.parseDouble(fields[3]), resource.getPickupLat(), 0.0);
+                assertEquals(Double.parseDouble(fields[4]), resource.getDropoffLon(), 0.0);
+                assertEquals(Double.parseDouble(fields[5]), resource.getDropoffLat(), 0.0);
+            }
+        }
+    }
+}
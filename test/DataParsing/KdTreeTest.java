@@ -0,0 +1,162 @@
+package DataParsing;
+
+import COMSETsystem.Link;
+import COMSETsystem.Vertex;
+import org.junit.Test;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KdTreeTest {
+
+    /**
+     * Random links between vertices on an integer grid in [0, extent]^2, so that many links are at exactly the
+     * same distance from a point, including some duplicate and zero-length links.
+     */
+    static List<Link> randomLinks(Random random, int count, int extent) {
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(extent + 1);
+            int y = random.nextInt(extent + 1);
+            vertices.add(new Vertex(x, y, x, y, i));
+        }
+        List<Link> links = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Vertex from = vertices.get(random.nextInt(count));
+            Vertex to = random.nextInt(20) == 0 ? from : vertices.get(random.nextInt(count));
+            links.add(new Link(from, to, 1, 1));
+            if (random.nextInt(20) == 0) {
+                links.add(new Link(from, to, 1, 1));
+            }
+        }
+        return links;
+    }
+
+    /**
+     * The links ordered by their distance from point (x, y), ties broken by their position in the list, as
+     * defined by SpatialIndex.
+     */
+    static List<Link> byDistance(List<Link> links, double x, double y) {
+        List<Integer> order = new ArrayList<>();
+        double[] distanceSq = new double[links.size()];
+        for (int i = 0; i < links.size(); i++) {
+            Link link = links.get(i);
+            distanceSq[i] = KdTree.distanceSq(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(),
+                    x, y);
+            order.add(i);
+        }
+        order.sort(Comparator.<Integer>comparingDouble(i -> distanceSq[i]).thenComparingInt(i -> i));
+        List<Link> sorted = new ArrayList<>();
+        for (int i : order) {
+            sorted.add(links.get(i));
+        }
+        return sorted;
+    }
+
+    // the links of a list sorted by distance that are within a radius of point (x, y)
+    static List<Link> within(List<Link> sorted, double x, double y, double radius) {
+        List<Link> result = new ArrayList<>();
+        for (Link link : sorted) {
+            if (link.distanceSq(new Point2D.Double(x, y)) <= radius * radius) {
+                result.add(link);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Assert that an index answers all queries like a brute force search over its links, at random points
+     * inside and outside the bounds of the links and at the vertices of links.
+     */
+    static void assertSameAsBruteForce(List<Link> links, SpatialIndex index, Random random, int extent) {
+        assertEquals(links.size(), index.size());
+        for (int i = 0; i < 300; i++) {
+            double x, y;
+            if (i % 3 == 0) {
+                Link link = links.get(random.nextInt(links.size()));
+                x = link.from.getX();
+                y = link.from.getY();
+            } else if (i % 3 == 1) {
+                x = random.nextInt(extent + 1) + 0.5 * random.nextInt(2);
+                y = random.nextInt(extent + 1) + 0.5 * random.nextInt(2);
+            } else {
+                x = (random.nextDouble() * 3 - 1) * extent;
+                y = (random.nextDouble() * 3 - 1) * extent;
+            }
+            List<Link> sorted = byDistance(links, x, y);
+
+            assertSame(sorted.get(0), index.nearest(x, y));
+            assertEquals(Collections.singletonList(index.nearest(x, y)), index.kNearest(x, y, 1));
+            for (int k : new int[] {0, 2, 5, 17, links.size(), links.size() + 10}) {
+                assertEquals(sorted.subList(0, Math.min(k, links.size())), index.kNearest(x, y, k));
+            }
+            for (double radius : new double[] {0, 0.5, 1, extent / 10.0, random.nextDouble() * extent}) {
+                assertEquals(within(sorted, x, y, radius), index.withinRadius(x, y, radius));
+            }
+        }
+    }
+
+    @Test
+    public void testQueries_bruteForce() {
+        Random random = new Random(1);
+        for (int count : new int[] {1, 2, 10, 300}) {
+            List<Link> links = randomLinks(random, count, 20);
+            assertSameAsBruteForce(links, new KdTree(links), random, 20);
+        }
+        List<Link> links = randomLinks(random, 1000, 5000);
+        assertSameAsBruteForce(links, new KdTree(links), random, 5000);
+    }
+
+    @Test
+    public void testQueries_insertedLinks() {
+        Random random = new Random(2);
+        List<Link> links = randomLinks(random, 200, 50);
+        int half = links.size() / 2;
+        KdTree tree = new KdTree();
+        for (Link link : links.subList(0, half)) {
+            tree.insert(link);
+        }
+        assertSameAsBruteForce(links.subList(0, half), tree, random, 50);
+        // inserting after a search rebuilds the tree
+        for (Link link : links.subList(half, links.size())) {
+            tree.insert(link);
+        }
+        assertSameAsBruteForce(links, tree, random, 50);
+    }
+
+    @Test
+    public void testQueries_emptyTree() {
+        for (KdTree tree : new KdTree[] {new KdTree(), new KdTree(Collections.emptyList())}) {
+            assertTrue(tree.isEmpty());
+            assertEquals(0, tree.size());
+            assertNull(tree.nearest(1, 2));
+            assertEquals(Collections.emptyList(), tree.kNearest(1, 2, 0));
+            assertEquals(Collections.emptyList(), tree.kNearest(1, 2, 3));
+            assertEquals(Collections.emptyList(), tree.withinRadius(1, 2, 0));
+            assertEquals(Collections.emptyList(), tree.withinRadius(1, 2, 100));
+        }
+    }
+
+    @Test
+    public void testWithinRadius_zero() {
+        Vertex a = new Vertex(0, 0, 0, 0, 1);
+        Vertex b = new Vertex(10, 0, 10, 0, 2);
+        Vertex c = new Vertex(0, 10, 0, 10, 3);
+        Link ab = new Link(a, b, 10, 1);
+        Link ac = new Link(a, c, 10, 1);
+        Link bc = new Link(b, c, 14, 1);
+        KdTree tree = new KdTree(Arrays.asList(ab, ac, bc));
+        // only the links through a point are at distance 0
+        assertEquals(Arrays.asList(ab, ac), tree.withinRadius(0, 0, 0));
+        assertEquals(Collections.singletonList(ab), tree.withinRadius(5, 0, 0));
+        assertEquals(Collections.emptyList(), tree.withinRadius(1, 1, 0));
+        assertEquals(Arrays.asList(ab, bc), tree.withinRadius(10, 0, 0));
+    }
+}
@@ -0,0 +1,72 @@
+package DataParsing;
+
+import COMSETsystem.Link;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LinkGridTest {
+
+    /**
+     * Assert that a grid answers all queries like a KdTree of the same links, at random points inside and
+     * outside the bounds of the links.
+     */
+    private static void assertSameAsKdTree(List<Link> links, LinkGrid grid, Random random, int extent) {
+        KdTree tree = new KdTree(links);
+        assertEquals(tree.size(), grid.size());
+        for (int i = 0; i < 200; i++) {
+            double x, y;
+            if (i % 2 == 0) {
+                x = random.nextInt(extent + 1) + 0.5 * random.nextInt(2);
+                y = random.nextInt(extent + 1) + 0.5 * random.nextInt(2);
+            } else {
+                x = (random.nextDouble() * 4 - 1.5) * extent;
+                y = (random.nextDouble() * 4 - 1.5) * extent;
+            }
+            assertSame(tree.nearest(x, y), grid.nearest(x, y));
+            for (int k : new int[] {0, 1, 3, 10, links.size() + 1}) {
+                assertEquals(tree.kNearest(x, y, k), grid.kNearest(x, y, k));
+            }
+            for (double radius : new double[] {0, 1, extent / 8.0, random.nextDouble() * extent}) {
+                assertEquals(tree.withinRadius(x, y, radius), grid.withinRadius(x, y, radius));
+            }
+        }
+    }
+
+    @Test
+    public void testQueries_sameAsKdTree() {
+        Random random = new Random(1);
+        List<Link> links = KdTreeTest.randomLinks(random, 400, 100);
+        // the default size, cells smaller than most links, cells larger than the map, and a single cell
+        for (double cellSize : new double[] {0, 1.5, 25, 1000}) {
+            assertSameAsKdTree(links, new LinkGrid(links, cellSize), random, 100);
+        }
+        links = KdTreeTest.randomLinks(random, 1000, 10000);
+        for (double cellSize : new double[] {0, 400}) {
+            assertSameAsKdTree(links, new LinkGrid(links, cellSize), random, 10000);
+        }
+    }
+
+    @Test
+    public void testQueries_fewLinks() {
+        Random random = new Random(2);
+        for (int count : new int[] {1, 2, 5}) {
+            List<Link> links = KdTreeTest.randomLinks(random, count, 10);
+            assertSameAsKdTree(links, new LinkGrid(links), random, 10);
+            assertSameAsKdTree(links, new LinkGrid(links, 2), random, 10);
+        }
+    }
+
+    @Test
+    public void testQueries_emptyGrid() {
+        LinkGrid grid = new LinkGrid(Collections.emptyList());
+        assertTrue(grid.isEmpty());
+        assertNull(grid.nearest(0, 0));
+        assertEquals(Collections.emptyList(), grid.kNearest(0, 0, 3));
+        assertEquals(Collections.emptyList(), grid.withinRadius(0, 0, 10));
+    }
+}
@@ -0,0 +1,115 @@
+package DataParsing;
+
+import COMSETsystem.CityMap;
+import COMSETsystem.Configuration;
+import COMSETsystem.Event;
+import COMSETsystem.EventQueue;
+import COMSETsystem.GridFleetManager;
+import COMSETsystem.GridScenario;
+import COMSETsystem.LocationOnRoad;
+import COMSETsystem.ResourceEvent;
+import COMSETsystem.Simulator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class MapWithDataTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A resource map-matched one after another: its locations and the travel time of its trip.
+     */
+    private static class Match {
+        final long time;
+        final LocationOnRoad pickupLoc;
+        final LocationOnRoad dropoffLoc;
+        final long staticTripTime;
+
+        Match(long time, LocationOnRoad pickupLoc, LocationOnRoad dropoffLoc, long staticTripTime) {
+            this.time = time;
+            this.pickupLoc = pickupLoc;
+            this.dropoffLoc = dropoffLoc;
+            this.staticTripTime = staticTripTime;
+        }
+    }
+
+    private static void assertSameLocation(LocationOnRoad expected, LocationOnRoad actual) {
+        assertSame(expected.road, actual.road);
+        assertEquals(expected.getDistanceFromStartIntersection(), actual.getDistanceFromStartIntersection(), 0.0);
+    }
+
+    // map-match the resources of a dataset in Manhattan one after another, in the order of the dataset
+    private static List<Match> matchSequentially(MapWithData mapWD, String datasetFile) {
+        CityMap map = mapWD.map;
+        List<Match> matches = new ArrayList<>();
+        for (Resource resource : new CSVNewYorkParser(datasetFile, ZoneId.of("America/New_York"))
+                .parse(Configuration.timeResolution)) {
+            LocationOnRoad pickupLoc = mapWD.mapMatch(resource.getPickupLon(), resource.getPickupLat());
+            LocationOnRoad dropoffLoc = mapWD.mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+            matches.add(new Match(resource.getTime(), pickupLoc, dropoffLoc,
+                    map.travelTimeBetween(pickupLoc, dropoffLoc)));
+        }
+        return matches;
+    }
+
+    @Test
+    public void testMatchResources_sameAsSequential() throws IOException, InterruptedException, ExecutionException {
+        GridScenario scenario = new GridScenario(folder.newFolder(), 8, 3000, 10, 4);
+        Configuration configuration = scenario.configure(GridFleetManager.class, 10, 1, null, false);
+        Simulator simulator = new Simulator(configuration);
+        MapWithData mapWD = new MapWithData(simulator.mapForAgents, scenario.datasetFile, 0, new EventQueue());
+        List<Match> expected = matchSequentially(mapWD, scenario.datasetFile);
+        assertEquals(3000, expected.size());
+
+        // a parallel stream runs in the pool of the task that starts it
+        for (int parallelism : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> mapWD.createMapWithData(configuration, simulator, null)).get();
+                List<Event> events = new ArrayList<>();
+                long firstId = Long.MAX_VALUE;
+                while (!mapWD.events.isEmpty()) {
+                    Event event = mapWD.events.poll();
+                    events.add(event);
+                    firstId = Math.min(firstId, event.getId());
+                }
+                assertEquals(expected.size(), events.size());
+                // the events are created in the order of the dataset
+                for (Event event : events) {
+                    ResourceEvent resource = (ResourceEvent) event;
+                    Match match = expected.get((int) (resource.getId() - firstId));
+                    assertEquals(match.time, resource.getTime());
+                    assertSameLocation(match.pickupLoc, resource.pickupLoc);
+                    assertSameLocation(match.dropoffLoc, resource.dropoffLoc);
+                    assertEquals(match.staticTripTime, resource.staticTripTime);
+                }
+
+                pool.submit(() -> mapWD.spoolMapWithData(configuration, simulator)).get();
+                try (ResourceStream stream = mapWD.streamResources()) {
+                    assertEquals(expected.size(), stream.size());
+                    while (stream.hasNext()) {
+                        ResourceStream.StreamedResource resource = stream.next();
+                        Match match = expected.get((int) resource.index);
+                        assertEquals(match.time, resource.time);
+                        assertSameLocation(match.pickupLoc, resource.pickupLoc);
+                        assertSameLocation(match.dropoffLoc, resource.dropoffLoc);
+                        assertEquals(match.staticTripTime, resource.staticTripTime);
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
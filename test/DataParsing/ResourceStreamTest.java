@@ -0,0 +1,94 @@
+package DataParsing;
+
+import COMSETsystem.EventQueue;
+import COMSETsystem.LocationOnRoad;
+import COMSETsystem.ResourceEvent;
+import COMSETsystem.Road;
+import COMSETsystem.RoadNetwork;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ResourceStreamTest {
+
+    private static final long LIFETIME = 600;
+
+    /**
+     * Spool random resources whose pickup times are out of order by up to a given disorder, and assert that the
+     * stream yields them in the order, with the times and relative ids, of their events if they were all loaded
+     * into an event queue in the order of the dataset.
+     */
+    private static void assertStreamedLikePreloaded(long seed, int count, long disorder) throws IOException {
+        Random random = new Random(seed);
+        RoadNetwork network = new RoadNetwork(3, new int[][] {{0, 1}, {1, 2}, {2, 0}}, new double[] {100, 200, 300});
+        EventQueue preloaded = new EventQueue();
+        long firstId = -1;
+        try (ResourceSpool spool = ResourceSpool.create()) {
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                // several resources at the same time, and some earlier than the resources before them
+                time += random.nextInt(3);
+                long pickupTime = random.nextInt(10) == 0 ? time - random.nextInt((int) disorder + 1) : time;
+                Road pickupRoad = network.roads.get(random.nextInt(3));
+                Road dropoffRoad = network.roads.get(random.nextInt(3));
+                double pickupDistance = random.nextDouble() * pickupRoad.getLength();
+                double dropoffDistance = random.nextDouble() * dropoffRoad.getLength();
+                long staticTripTime = random.nextInt(1000);
+                spool.write(pickupTime, pickupTime + staticTripTime, staticTripTime, pickupRoad.id, pickupDistance,
+                        dropoffRoad.id, dropoffDistance);
+
+                ResourceEvent event = new ResourceEvent(new LocationOnRoad(pickupRoad, pickupDistance),
+                        new LocationOnRoad(dropoffRoad, dropoffDistance), pickupTime, staticTripTime, null, null,
+                        LIFETIME);
+                if (firstId < 0) {
+                    firstId = event.getId();
+                }
+                preloaded.add(event);
+            }
+            spool.finish();
+            assertTrue(spool.maxDisorder() <= disorder);
+
+            ResourceStream stream = new ResourceStream(spool, network.map);
+            assertEquals(count, stream.size());
+            int streamed = 0;
+            while (stream.hasNext()) {
+                long peekTime = stream.peekTime();
+                ResourceStream.StreamedResource resource = stream.next();
+                ResourceEvent expected = (ResourceEvent) preloaded.poll();
+                assertNotNull(expected);
+                assertEquals(expected.getId() - firstId, resource.index);
+                assertEquals(expected.getTime(), resource.time);
+                assertEquals(expected.getTime(), peekTime);
+                assertEquals(expected.staticTripTime, resource.staticTripTime);
+                assertSame(expected.pickupLoc.road, resource.pickupLoc.road);
+                assertEquals(expected.pickupLoc.getDistanceFromStartIntersection(),
+                        resource.pickupLoc.getDistanceFromStartIntersection(), 0.0);
+                assertSame(expected.dropoffLoc.road, resource.dropoffLoc.road);
+                assertEquals(expected.dropoffLoc.getDistanceFromStartIntersection(),
+                        resource.dropoffLoc.getDistanceFromStartIntersection(), 0.0);
+                streamed++;
+            }
+            assertEquals(count, streamed);
+            assertTrue(preloaded.isEmpty());
+            assertEquals(Long.MAX_VALUE, stream.peekTime());
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testStream_outOfOrderLikePreloaded() throws IOException {
+        assertStreamedLikePreloaded(1, 1000, 5);
+        // more resources than the queue between the threads holds
+        assertStreamedLikePreloaded(2, 20000, 50);
+        // disorder beyond the whole time span of the dataset
+        assertStreamedLikePreloaded(3, 5000, 100000);
+    }
+
+    @Test
+    public void testStream_sortedInput() throws IOException {
+        assertStreamedLikePreloaded(4, 5000, 0);
+    }
+}
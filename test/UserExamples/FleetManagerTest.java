@@ -36,7 +36,7 @@ public class FleetManagerTest {
     public void test_onReachIntersection_emptyRoute() {
         // Instantiate a FleetManager
         RandomDestinationFleetManager spyFleetManager = spy(new RandomDestinationFleetManager(mockMap));
-        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime);
+        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.getTravelTime());
         Intersection[] intersections  = {testMap.intersection3, testMap.intersection4};
         doReturn(new LinkedList<>(Arrays.asList(intersections)))
                 .when(spyFleetManager).getRandomRoute(1, currentLoc);
@@ -56,7 +56,7 @@ public class FleetManagerTest {
     @Test
     public void test_onReachIntersection_nonEmptyRoute() {
         RandomDestinationFleetManager spyFleetManager = spy(new RandomDestinationFleetManager(mockMap));
-        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime);
+        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.getTravelTime());
         Intersection[] intersections  = {testMap.intersection3, testMap.intersection4, testMap.intersection5};
         spyFleetManager.agentRoutes.put(1L, new LinkedList<>(Arrays.asList(intersections)));
 
@@ -77,7 +77,7 @@ public class FleetManagerTest {
     public void test_onReachIntersectionWithResource_emptyRoute() {
         // Instantiate a FleetManager
         RandomDestinationFleetManager spyFleetManager = spy(new RandomDestinationFleetManager(mockMap));
-        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime);
+        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.getTravelTime());
         Intersection[] intersections  = {testMap.intersection3, testMap.intersection4};
 
         // setup mockResource
@@ -101,7 +101,7 @@ public class FleetManagerTest {
     @Test
     public void test_onReachIntersectionWithResource_nonEmptyRoute() {
         RandomDestinationFleetManager spyFleetManager = spy(new RandomDestinationFleetManager(mockMap));
-        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime);
+        LocationOnRoad currentLoc = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.getTravelTime());
         Intersection[] intersections  = {testMap.intersection3, testMap.intersection4, testMap.intersection5};
         spyFleetManager.agentRoutes.put(1L, new LinkedList<>(Arrays.asList(intersections)));
 